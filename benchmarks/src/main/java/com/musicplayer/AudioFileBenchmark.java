@@ -0,0 +1,39 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extension matching as done for every file the scanner visits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AudioFileBenchmark {
+
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void createNames() {
+        names = SyntheticLibrary.fileNames(1024, 2);
+    }
+
+    @Benchmark
+    public boolean isAudioFile() {
+        return MusicPlayerApp.isAudioFile(names[next++ & 1023]);
+    }
+}
@@ -0,0 +1,147 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round-trip latency of control commands with many clients connected at
+ * once. An in-process {@link PlayerDaemon} plays short WAV tracks to a
+ * real-time discarding sink; each client is a virtual thread with its own
+ * connection sending a mix of mostly {@code status} with some seeks,
+ * volume changes, skips and enqueues, back to back.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.musicplayer.DaemonLoadTest [clients] [seconds]
+ * </pre>
+ */
+public final class DaemonLoadTest {
+
+    private static final int TRACKS = 8;
+    private static final int SAMPLE_RATE = 44100;
+    private static final String[] COMMANDS = {"status", "seek", "volume", "next", "enqueue"};
+    // Out of 100 commands
+    private static final int[] WEIGHTS = {80, 8, 8, 2, 2};
+
+    private DaemonLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path dir = Files.createTempDirectory("daemon-load");
+        Path socket = dir.resolve("player.sock");
+        PlayerDaemon daemon = new PlayerDaemon(socket, AudioSink.discard(true));
+        try {
+            List<Song> songs = createTracks(dir);
+            daemon.addAll(songs);
+            daemon.start();
+            try (DaemonClient client = DaemonClient.connect(socket)) {
+                client.send("play");
+            }
+            run(socket, songs, clients, 2, false);
+            run(socket, songs, clients, seconds, true);
+        } finally {
+            daemon.close();
+            SyntheticLibrary.deleteTree(dir);
+        }
+    }
+
+    private static void run(Path socket, List<Song> songs, int clients, int seconds, boolean report)
+            throws InterruptedException {
+        Metrics.Histogram[] latencies = new Metrics.Histogram[COMMANDS.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Metrics.Histogram();
+        }
+        Metrics.Histogram all = new Metrics.Histogram();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch connected = new CountDownLatch(clients);
+        CountDownLatch done = new CountDownLatch(clients);
+        AtomicLong end = new AtomicLong(Long.MAX_VALUE);
+
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            Thread.ofVirtual().start(() -> {
+                try (DaemonClient client = DaemonClient.connect(socket)) {
+                    connected.countDown();
+                    connected.await();
+                    while (System.nanoTime() < end.get()) {
+                        int kind = pick(random.nextInt(100));
+                        String command = switch (COMMANDS[kind]) {
+                            case "seek" -> "seek " + random.nextInt(4);
+                            case "volume" -> String.format(Locale.ROOT, "volume %.2f", random.nextDouble());
+                            case "enqueue" -> "enqueue " + songs.get(random.nextInt(songs.size())).getFilePath();
+                            default -> COMMANDS[kind];
+                        };
+                        long start = System.nanoTime();
+                        String reply = client.send(command);
+                        long nanos = System.nanoTime() - start;
+                        latencies[kind].record(nanos);
+                        all.record(nanos);
+                        if (!reply.startsWith("OK") && errors.getAndIncrement() == 0) {
+                            System.err.println(command + ": " + reply);
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    if (errors.getAndIncrement() == 0) {
+                        System.err.println("Client failed: " + e);
+                    }
+                    connected.countDown();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        connected.await();
+        end.set(System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds));
+        done.await();
+        if (!report) return;
+
+        System.out.printf("%d clients, %d s: %d commands, %.0f/s, %d errors%n", clients, seconds, all.getCount(),
+                all.getCount() / (double) seconds, errors.get());
+        print("all", all);
+        for (int i = 0; i < COMMANDS.length; i++) {
+            print(COMMANDS[i], latencies[i]);
+        }
+    }
+
+    private static int pick(int roll) {
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            roll -= WEIGHTS[i];
+            if (roll < 0) return i;
+        }
+        return 0;
+    }
+
+    private static void print(String label, Metrics.Histogram histogram) {
+        System.out.printf("  %-8s n=%-8d p50=%7.1f us  p99=%8.1f us  p99.9=%8.1f us  max=%8.1f us%n", label,
+                histogram.getCount(), histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    /** Four-second tones, so skips and seeks have somewhere to go. */
+    private static List<Song> createTracks(Path dir) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        int frames = SAMPLE_RATE * 4;
+        for (int t = 0; t < TRACKS; t++) {
+            ByteBuffer data = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int f = 0; f < frames; f++) {
+                short sample = (short) (6000 * Math.sin(2 * Math.PI * (220 + 55 * t) * f / SAMPLE_RATE));
+                data.putShort(sample).putShort(sample);
+            }
+            Path file = dir.resolve("tone" + t + ".wav");
+            Files.write(file, SyntheticLibrary.wav(data.array(), SAMPLE_RATE));
+            songs.add(new Song(file.toString()));
+        }
+        return songs;
+    }
+}
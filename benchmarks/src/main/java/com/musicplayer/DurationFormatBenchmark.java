@@ -0,0 +1,55 @@
+package com.musicplayer;
+
+import javafx.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time label formatting on the playback position path. {@code -prof gc}
+ * shows the allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurationFormatBenchmark {
+
+    private Duration[] positions;
+    private int next;
+
+    @Setup
+    public void createPositions() {
+        positions = new Duration[1024];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = Duration.millis(i * 397L);
+        }
+    }
+
+    @Benchmark
+    public String formatDuration() {
+        return MusicPlayerApp.formatDuration(positions[next++ & 1023]);
+    }
+
+    @Benchmark
+    public String timeFormatSeconds() {
+        return TimeFormat.format(next++ & 1023);
+    }
+
+    @Benchmark
+    public String stringFormatBaseline() {
+        int totalSeconds = (int) positions[next++ & 1023].toSeconds();
+        return String.format("%d:%02d", totalSeconds / 60, totalSeconds % 60);
+    }
+}
@@ -0,0 +1,64 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full scan of a synthetic tree, from {@code start} until {@code onFinished}.
+ * The tree is built once per trial in the temp directory; the first
+ * warmup iteration also warms the OS directory cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LibraryScanBenchmark {
+
+    @Param("100000")
+    public int files;
+
+    private Path root;
+
+    @Setup
+    public void createTree() throws IOException {
+        root = Files.createTempDirectory("scan-bench");
+        SyntheticLibrary.createTree(root, files);
+    }
+
+    @TearDown
+    public void deleteTree() throws IOException {
+        SyntheticLibrary.deleteTree(root);
+    }
+
+    @Benchmark
+    public long scan() throws InterruptedException {
+        LibraryScanner scanner = new LibraryScanner();
+        AtomicLong songs = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        scanner.setOnBatch(batch -> songs.addAndGet(batch.size()));
+        scanner.setOnFinished(done::countDown);
+        scanner.start(List.of(root));
+        done.await();
+        return songs.get();
+    }
+}
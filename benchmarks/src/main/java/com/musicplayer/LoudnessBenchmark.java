@@ -0,0 +1,102 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loudness analysis throughput in tracks per second: one track on the
+ * calling thread, and a whole library through {@link LoudnessPipeline} on
+ * every core. Tracks are 16-bit stereo WAVs of {@code seconds} each, so
+ * real-time speed is the score times that length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoudnessBenchmark {
+
+    private static final int TRACKS = 32;
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param("30")
+    public int seconds;
+
+    private Path dir;
+    private final List<String> paths = new ArrayList<>();
+    private List<Song> songs;
+
+    @Setup
+    public void createLibrary() throws IOException {
+        dir = Files.createTempDirectory("loudness-bench");
+        Random random = new Random(15);
+        int frames = SAMPLE_RATE * seconds;
+        for (int t = 0; t < TRACKS; t++) {
+            ByteBuffer data = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+            double amplitude = 2000 + random.nextInt(20000);
+            for (int f = 0; f < frames; f++) {
+                short sample = (short) (amplitude * Math.sin(2 * Math.PI * 440 * f / SAMPLE_RATE)
+                        + random.nextGaussian() * 500);
+                data.putShort(sample).putShort(sample);
+            }
+            Path file = dir.resolve("track" + t + ".wav");
+            Files.write(file, SyntheticLibrary.wav(data.array(), SAMPLE_RATE));
+            paths.add(file.toString());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void freshSongs() {
+        TrackStore store = new TrackStore();
+        songs = new ArrayList<>(TRACKS);
+        for (String path : paths) {
+            songs.add(new Song(store, path));
+        }
+    }
+
+    @TearDown
+    public void deleteLibrary() throws IOException {
+        SyntheticLibrary.deleteTree(dir);
+    }
+
+    @Benchmark
+    public double analyzeTrack() throws IOException {
+        return LoudnessAnalyzer.analyze(Path.of(paths.get(0))).integratedLufs();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACKS)
+    public long analyzeLibrary() throws InterruptedException {
+        CountDownLatch idle = new CountDownLatch(1);
+        LoudnessPipeline pipeline = new LoudnessPipeline(Runtime.getRuntime().availableProcessors(), Runnable::run);
+        pipeline.setOnIdle(idle::countDown);
+        pipeline.submit(songs);
+        idle.await();
+        pipeline.shutdown();
+        return pipeline.getAnalyzed();
+    }
+}
@@ -0,0 +1,143 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first audio and seek latency on a large WAV file, through the
+ * mapped reader and through a javax.sound stream (reopen and skip, the
+ * only way such a stream seeks backwards). The file is sparse, so it takes
+ * no disk space and measures the I/O path rather than the disk.
+ *
+ * <p>The {@code period} benchmarks take one period at half volume, as
+ * playback does below full volume: copied out of the mapping and then
+ * scaled, against scaled while the sink makes its staging copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedPcmBenchmark {
+
+    private static final int CHANNELS = 2;
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_SIZE = 4;
+    // One 10 ms period of 44.1 kHz stereo 16-bit audio
+    private static final int PERIOD_BYTES = 441 * FRAME_SIZE;
+    private static final int PERIODS_CYCLED = 1000;
+
+    @Param("4000")
+    public long megabytes;
+
+    private Path file;
+    private long frames;
+    private final Random random = new Random(6);
+    private final byte[] period = new byte[PERIOD_BYTES];
+    private MappedPcmReader playing;
+    private long periodsRead;
+
+    @Setup
+    public void createFile() throws IOException {
+        file = Files.createTempFile("mapped-bench", ".wav");
+        long dataBytes = megabytes * 1_000_000L / FRAME_SIZE * FRAME_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (36 + dataBytes));
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '}).putInt(16);
+        header.putShort((short) 1).putShort((short) CHANNELS).putInt(SAMPLE_RATE);
+        header.putInt(SAMPLE_RATE * FRAME_SIZE).putShort((short) FRAME_SIZE).putShort((short) 16);
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataBytes);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.write(header.array());
+            raf.setLength(44 + dataBytes);
+        }
+        frames = dataBytes / FRAME_SIZE;
+        playing = MappedPcmReader.open(file);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        playing.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int firstAudioMapped() throws IOException {
+        try (MappedPcmReader reader = MappedPcmReader.open(file)) {
+            return reader.read(PERIOD_BYTES).remaining();
+        }
+    }
+
+    @Benchmark
+    public int firstAudioStream() throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file.toFile())) {
+            return in.read(period);
+        }
+    }
+
+    @Benchmark
+    public int seekMapped() throws IOException {
+        try (MappedPcmReader reader = MappedPcmReader.open(file)) {
+            reader.seekFrame(randomFrame());
+            return reader.read(PERIOD_BYTES).remaining();
+        }
+    }
+
+    @Benchmark
+    public int seekStream() throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file.toFile())) {
+            in.skipNBytes(randomFrame() * FRAME_SIZE);
+            return in.read(period);
+        }
+    }
+
+    @Benchmark
+    public byte[] periodCopyThenScale() throws IOException {
+        ByteBuffer slice = nextPeriod();
+        int n = slice.remaining();
+        slice.get(period, 0, n);
+        PcmAudioEngine.applyGain(period, n, 0.5f);
+        return period;
+    }
+
+    @Benchmark
+    public byte[] periodScaledCopy() throws IOException {
+        PcmAudioEngine.copyWithGain(nextPeriod(), period, 0.5f);
+        return period;
+    }
+
+    /** Cycles through the first ten seconds, which stay resident, so the copy is measured and not page faults. */
+    private ByteBuffer nextPeriod() throws IOException {
+        if (++periodsRead % PERIODS_CYCLED == 0) {
+            playing.seekFrame(0);
+        }
+        return playing.read(PERIOD_BYTES);
+    }
+
+    private long randomFrame() {
+        return (long) (random.nextDouble() * (frames - 441));
+    }
+}
@@ -0,0 +1,72 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying metadata to songs, from the media player's metadata map and
+ * from parsed tags, and parsing the tags themselves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private List<Song> songs;
+    private MetadataReader.TrackMetadata metadata;
+    private Path mp3;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        songs = SyntheticLibrary.songs(new TrackStore(), 1024, 3);
+        metadata = new MetadataReader.TrackMetadata("River of Gold", "Artist 7", "Album 3", 215_000);
+        mp3 = Files.createTempFile("metadata-bench", ".mp3");
+        Files.write(mp3, SyntheticLibrary.mp3("River of Gold", "Artist 7", "Album 3", 200));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(mp3);
+    }
+
+    @Benchmark
+    public Song applyMetadataEntries() {
+        Song song = songs.get(next++ & 1023);
+        FxAudioEngine.applyMetadataEntry(song, "title", "River of Gold");
+        FxAudioEngine.applyMetadataEntry(song, "artist", "Artist 7");
+        FxAudioEngine.applyMetadataEntry(song, "album", "Album 3");
+        FxAudioEngine.applyMetadataEntry(song, "year", 1999);
+        return song;
+    }
+
+    @Benchmark
+    public Song applyParsedMetadata() {
+        Song song = songs.get(next++ & 1023);
+        MetadataPipeline.apply(song, metadata);
+        return song;
+    }
+
+    @Benchmark
+    public MetadataReader.TrackMetadata readTags() throws IOException {
+        return MetadataReader.read(mp3);
+    }
+}
@@ -0,0 +1,98 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tag extraction throughput in files per second: a corpus of tagged MP3s
+ * and untagged WAVs through {@link MetadataPipeline} with its default
+ * parallelism, from submitting every file until the last result has been
+ * applied. The files stay in the page cache between invocations, so this
+ * measures parsing rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataPipelineBenchmark {
+
+    private static final int FILES = 2000;
+
+    private Path dir;
+    private final List<String> paths = new ArrayList<>();
+    private List<Song> songs;
+
+    @Setup
+    public void createCorpus() throws IOException {
+        dir = Files.createTempDirectory("metadata-bench");
+        Random random = new Random(3);
+        byte[] wav = SyntheticLibrary.wav(new byte[44100 * 4], 44100);
+        for (int i = 0; i < FILES; i++) {
+            Path file;
+            // One in four is a WAV, which has a header but no tags
+            if (i % 4 == 3) {
+                file = dir.resolve(i + ".wav");
+                Files.write(file, wav);
+            } else {
+                file = dir.resolve(i + ".mp3");
+                Files.write(file, SyntheticLibrary.mp3(SyntheticLibrary.title(random),
+                        "Artist " + random.nextInt(50), "Album " + random.nextInt(200), 100 + random.nextInt(200)));
+            }
+            paths.add(file.toString());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void freshSongs() {
+        TrackStore store = new TrackStore();
+        songs = new ArrayList<>(FILES);
+        for (String path : paths) {
+            songs.add(new Song(store, path));
+        }
+    }
+
+    @TearDown
+    public void deleteCorpus() throws IOException {
+        SyntheticLibrary.deleteTree(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public int parseCorpus() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        MetadataPipeline pipeline = new MetadataPipeline(MetadataPipeline.defaultParallelism(), Runnable::run);
+        pipeline.setOnApplied(batch -> {
+            if (applied.addAndGet(batch.size()) == FILES) {
+                done.countDown();
+            }
+        });
+        pipeline.submit(songs);
+        done.await();
+        pipeline.shutdown();
+        return applied.get();
+    }
+}
@@ -0,0 +1,69 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of the playback order on a large playlist: picking and
+ * playing the next track, and a track leaving and rejoining the playlist
+ * (as a rescan or folder watch does). Each should stay flat as the playlist
+ * grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PlaybackOrderBenchmark {
+
+    @Param("1000000")
+    public int tracks;
+
+    @Param({"SHUFFLE", "ARTIST_SPREAD"})
+    public PlaybackOrder.Mode mode;
+
+    private int[] ids;
+    private PlaybackOrder order;
+    private int churn;
+
+    @Setup
+    public void setUp() {
+        TrackStore store = new TrackStore();
+        List<Song> songs = SyntheticLibrary.songs(store, tracks, 22);
+        ids = songs.stream().mapToInt(Song::getId).toArray();
+        order = new PlaybackOrder(store, new Random(22));
+        for (int id : ids) {
+            order.add(id);
+        }
+        order.setMode(mode);
+    }
+
+    @Benchmark
+    public int next() {
+        int id = order.peekNext();
+        order.played(id);
+        return id;
+    }
+
+    @Benchmark
+    public int removeAndAdd() {
+        int id = ids[churn++ % ids.length];
+        order.remove(id);
+        order.add(id);
+        return order.size();
+    }
+}
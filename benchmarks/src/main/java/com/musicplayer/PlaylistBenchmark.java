@@ -0,0 +1,87 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Import of a playlist with one entry per file of a synthetic tree (a sixth
+ * of them non-audio, so skipped), from {@code start} until
+ * {@code onFinished}, and export of the same tracks. Entries are relative to
+ * the playlist, which sits at the root of the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlaylistBenchmark {
+
+    @Param("100000")
+    public int entries;
+
+    @Param({"m3u8", "pls", "xspf"})
+    public String format;
+
+    private Path root;
+    private Path playlist;
+    private Path exported;
+    private List<Song> songs;
+
+    @Setup
+    public void createPlaylist() throws IOException {
+        root = Files.createTempDirectory("playlist-bench");
+        SyntheticLibrary.createTree(root, entries);
+        TrackStore store = new TrackStore();
+        try (Stream<Path> files = Files.walk(root)) {
+            songs = files.filter(Files::isRegularFile)
+                    .map(file -> new Song(store, file.toString()))
+                    .toList();
+        }
+        playlist = root.resolve("library." + format);
+        exported = root.resolve("exported." + format);
+        PlaylistFile.write(playlist, songs);
+    }
+
+    @TearDown
+    public void deleteTree() throws IOException {
+        SyntheticLibrary.deleteTree(root);
+    }
+
+    @Benchmark
+    public long importPlaylist() throws InterruptedException {
+        PlaylistImporter importer = new PlaylistImporter();
+        AtomicLong imported = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        importer.setOnBatch(batch -> imported.addAndGet(batch.size()));
+        importer.setOnFinished(done::countDown);
+        importer.start(playlist);
+        done.await();
+        return imported.get();
+    }
+
+    @Benchmark
+    public long exportPlaylist() throws IOException {
+        PlaylistFile.write(exported, songs);
+        return Files.size(exported);
+    }
+}
@@ -0,0 +1,123 @@
+package com.musicplayer;
+
+import javafx.application.Platform;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playlist row updates on a screenful of {@link PlaylistCell}s, run
+ * headless on Monocle. {@code updateItem} rebinds one cell to another song,
+ * as scrolling does; {@code nowPlaying} moves the playing track, which
+ * every visible cell hears; {@code metadataRefresh} is one metadata
+ * revision, which relabels every visible cell. The cells are not in a
+ * scene, so this is the cells' own work without layout or CSS. The songs
+ * have no art, and the cache has learned that before measuring starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class PlaylistCellBenchmark {
+
+    private static final int VISIBLE_CELLS = 32;
+    private static final int SONGS = 1024;
+
+    private final SimpleObjectProperty<Song> nowPlaying = new SimpleObjectProperty<>();
+    private final SimpleIntegerProperty metadataRevision = new SimpleIntegerProperty();
+    // The cache publishes here; drained on the benchmark thread, which stands in for the FX thread
+    private final Queue<Runnable> published = new ConcurrentLinkedQueue<>();
+    private Path artDir;
+    private AlbumArtCache artwork;
+    private List<Song> songs;
+    private PlaylistCell[] cells;
+    private int next;
+
+    @Setup
+    public void createCells() throws IOException, InterruptedException {
+        startToolkit();
+        artDir = Files.createTempDirectory("cell-bench");
+        artwork = new AlbumArtCache(artDir, AlbumArtCache.DEFAULT_BUDGET_BYTES, 2, published::add);
+        songs = SyntheticLibrary.songs(new TrackStore(), SONGS, 5);
+        cells = new PlaylistCell[VISIBLE_CELLS];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new PlaylistCell(nowPlaying, metadataRevision, artwork);
+        }
+        // Let the cache look up every song once, so later requests are answered
+        // from memory; the files don't exist, so the workers finish quickly
+        for (Song song : songs) {
+            artwork.request(song, image -> { });
+        }
+        long quietSince = System.nanoTime();
+        while (System.nanoTime() - quietSince < 200_000_000L) {
+            Runnable task = published.poll();
+            if (task != null) {
+                task.run();
+                quietSince = System.nanoTime();
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        for (int i = 0; i < cells.length; i++) {
+            cells[i].updateItem(songs.get(i), false);
+        }
+    }
+
+    @TearDown
+    public void shutdown() throws IOException {
+        artwork.shutdown();
+        SyntheticLibrary.deleteTree(artDir);
+    }
+
+    @Benchmark
+    public String updateItem() {
+        int n = next++;
+        PlaylistCell cell = cells[n & (VISIBLE_CELLS - 1)];
+        cell.updateItem(songs.get(n & (SONGS - 1)), false);
+        return cell.getText();
+    }
+
+    @Benchmark
+    public Song nowPlaying() {
+        Song song = songs.get(next++ & (VISIBLE_CELLS - 1));
+        nowPlaying.set(song);
+        return song;
+    }
+
+    @Benchmark
+    public int metadataRefresh() {
+        metadataRevision.set(metadataRevision.get() + 1);
+        return metadataRevision.get();
+    }
+
+    private static synchronized void startToolkit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+        } catch (IllegalStateException alreadyStarted) {
+            return;
+        }
+        started.await();
+    }
+}
@@ -0,0 +1,63 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the playlist search against library size, and of a
+ * query after every track was re-indexed with unchanged metadata, as
+ * metadata events and re-adds do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+
+    @Param({"10000", "50000", "200000", "1000000"})
+    public int tracks;
+
+    @Param({"r", "riv", "river gold", "artist 12"})
+    public String query;
+
+    private List<Song> songs;
+    private SearchIndex index;
+    private SearchIndex reindexed;
+
+    @Setup
+    public void setUp() {
+        TrackStore store = new TrackStore();
+        songs = SyntheticLibrary.songs(store, tracks, 4);
+        index = new SearchIndex(store);
+        index.addAll(songs);
+        reindexed = new SearchIndex(store);
+        for (int i = 0; i < 4; i++) {
+            reindexed.addAll(songs);
+        }
+    }
+
+    @Benchmark
+    public BitSet search() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public BitSet searchAfterReindex() {
+        return reindexed.search(query);
+    }
+}
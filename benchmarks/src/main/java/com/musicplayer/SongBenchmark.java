@@ -0,0 +1,66 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Song construction and the filename-derived title. Each invocation fills a
+ * fresh {@link TrackStore} with a batch of songs so the store doesn't grow
+ * without bound; scores are per song. Run with {@code -prof gc} for the
+ * per-track allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SongBenchmark {
+
+    private static final int BATCH = 4096;
+
+    private List<String> paths;
+
+    @Setup
+    public void createPaths() {
+        paths = SyntheticLibrary.paths(BATCH, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void construct(Blackhole bh) {
+        TrackStore store = new TrackStore();
+        for (String path : paths) {
+            bh.consume(new Song(store, path));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void constructAndTitle(Blackhole bh) {
+        TrackStore store = new TrackStore();
+        for (String path : paths) {
+            Song song = new Song(store, path);
+            bh.consume(song.getTitle());
+            bh.consume(song.getDisplayText());
+        }
+    }
+
+    @Benchmark
+    public String titleFromFileName() {
+        return TrackStore.titleFromFileName("07 Shadow of the River.mp3");
+    }
+}
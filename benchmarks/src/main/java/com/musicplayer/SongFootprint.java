@@ -0,0 +1,78 @@
+package com.musicplayer;
+
+import javafx.util.Duration;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Retained heap per track of a tagged library held as {@link Song} views
+ * over a {@link TrackStore}, against the same library held the way the
+ * player used to: one object per track with its own path, title, artist
+ * and album strings and a {@link Duration}. Tag values parsed from files
+ * are fresh strings, so the old layout had no sharing between tracks.
+ * Sizes are walked with JOL, counting everything reachable from the list
+ * of tracks, including the store's dictionaries.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.musicplayer.SongFootprint [tracks]
+ * </pre>
+ */
+public final class SongFootprint {
+
+    private static final int TRACKS_PER_ARTIST = 250;
+    private static final int TRACKS_PER_ALBUM = 12;
+
+    private SongFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        List<Song> songs = new ArrayList<>(tracks);
+        TrackStore store = new TrackStore();
+        fill(tracks, (path, title, artist, album, millis) -> {
+            Song song = new Song(store, path);
+            song.setTitle(title);
+            song.setArtist(artist);
+            song.setAlbum(album);
+            song.setDurationMillis(millis);
+            songs.add(song);
+        });
+        report("TrackStore", tracks, GraphLayout.parseInstance(songs).totalSize());
+        songs.clear();
+
+        List<ObjectSong> objects = new ArrayList<>(tracks);
+        fill(tracks, (path, title, artist, album, millis) ->
+                objects.add(new ObjectSong(path, title, artist, album, Duration.millis(millis))));
+        report("One object per track", tracks, GraphLayout.parseInstance(objects).totalSize());
+    }
+
+    private static void fill(int tracks, TrackSink sink) {
+        Random random = new Random(6);
+        for (int i = 0; i < tracks; i++) {
+            int artist = i / TRACKS_PER_ARTIST;
+            int album = i / TRACKS_PER_ALBUM;
+            String title = SyntheticLibrary.title(random) + " " + i;
+            sink.accept("/music/Artist " + artist + "/Album " + album + "/" + (i % TRACKS_PER_ALBUM + 1)
+                    + " " + title + ".mp3", title, "Artist " + artist, "Album " + album,
+                    60_000 + random.nextInt(300_000));
+        }
+    }
+
+    private static void report(String layout, int tracks, long bytes) {
+        System.out.printf(Locale.ROOT, "%-22s %,d tracks: %,d bytes, %.0f bytes/track%n",
+                layout, tracks, bytes, (double) bytes / tracks);
+    }
+
+    private interface TrackSink {
+        void accept(String path, String title, String artist, String album, long millis);
+    }
+
+    /** The player's track model before the column store. */
+    private record ObjectSong(String filePath, String title, String artist, String album, Duration duration) {
+    }
+}
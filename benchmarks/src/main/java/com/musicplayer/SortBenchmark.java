@@ -0,0 +1,49 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-sorting a large playlist once collation keys are cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SortBenchmark {
+
+    @Param("200000")
+    public int tracks;
+
+    @Param({"ARTIST", "TITLE", "FILE"})
+    public PlaylistSorter.SortKey key;
+
+    private List<Song> songs;
+    private PlaylistSorter sorter;
+
+    @Setup
+    public void setUp() {
+        TrackStore store = new TrackStore();
+        songs = SyntheticLibrary.songs(store, tracks, 5);
+        sorter = new PlaylistSorter(store);
+    }
+
+    @Benchmark
+    public Song[] sort() {
+        return sorter.sort(songs, key);
+    }
+}
@@ -0,0 +1,94 @@
+package com.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the spectrum display's hot path. {@code fft} is one in-place
+ * transform of {@link SpectrumAnalyzer#FFT_SIZE} points (plus copying its
+ * input back in). {@code pcmFrame} is one 60 Hz display frame fed by the
+ * PCM engine: a frame's worth of 44.1 kHz stereo written by the playback
+ * thread, then the FX-side update. {@code fxFrame} is the same with JavaFX's
+ * 1024 spectrum bands as input. Multiply a frame's time by 60 for its share
+ * of a core, and run with {@code -prof gc}: every path should allocate
+ * nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpectrumBenchmark {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    private SpectrumAnalyzer analyzer;
+    private final float[] sourceRe = new float[SpectrumAnalyzer.FFT_SIZE];
+    private final float[] re = new float[SpectrumAnalyzer.FFT_SIZE];
+    private final float[] im = new float[SpectrumAnalyzer.FFT_SIZE];
+    private byte[] pcm;
+    private final float[] magnitudes = new float[1024];
+    private long now;
+
+    @Setup
+    public void setUp() {
+        analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.DEFAULT_BANDS);
+        Random random = new Random(25);
+        for (int i = 0; i < sourceRe.length; i++) {
+            sourceRe[i] = (float) (Math.sin(i * 0.05) * 0.5 + random.nextGaussian() * 0.1);
+        }
+        // One display frame of stereo audio: a chord plus noise
+        int frames = SAMPLE_RATE / 60;
+        pcm = new byte[frames * 4];
+        for (int f = 0; f < frames; f++) {
+            double t = (double) f / SAMPLE_RATE;
+            double v = 0.3 * Math.sin(2 * Math.PI * 220 * t) + 0.2 * Math.sin(2 * Math.PI * 1760 * t)
+                    + 0.05 * random.nextGaussian();
+            short s = (short) (v * Short.MAX_VALUE);
+            for (int c = 0; c < 2; c++) {
+                pcm[f * 4 + c * 2] = (byte) s;
+                pcm[f * 4 + c * 2 + 1] = (byte) (s >> 8);
+            }
+        }
+        for (int i = 0; i < magnitudes.length; i++) {
+            magnitudes[i] = -20 - random.nextFloat() * 50;
+        }
+        now = System.nanoTime();
+    }
+
+    @Benchmark
+    public float fft() {
+        System.arraycopy(sourceRe, 0, re, 0, re.length);
+        Arrays.fill(im, 0);
+        analyzer.transform(re, im);
+        return re[1];
+    }
+
+    @Benchmark
+    public boolean pcmFrame() {
+        analyzer.write(pcm, 0, pcm.length, 2, SAMPLE_RATE);
+        now += FRAME_NANOS;
+        return analyzer.update(now);
+    }
+
+    @Benchmark
+    public boolean fxFrame() {
+        analyzer.setMagnitudes(magnitudes, magnitudes.length, SAMPLE_RATE);
+        now += FRAME_NANOS;
+        return analyzer.update(now);
+    }
+}
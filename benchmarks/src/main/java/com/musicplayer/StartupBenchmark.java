@@ -0,0 +1,148 @@
+package com.musicplayer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cold start of the player in fresh JVMs, with and without an AppCDS
+ * archive: time from launch to the first frame and to the first audio of
+ * the restored session. Not a JMH benchmark, since each sample is a whole
+ * process. Needs a display and a sound device:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.musicplayer.StartupBenchmark [runs]
+ * </pre>
+ *
+ * The player runs against a temporary home holding a library of
+ * {@link #TRACKS} tracks and a session cued on a short WAV file, and exits
+ * itself once it hears audio ({@code -Dmusicplayer.startup.exit=audio}).
+ * The archive is dumped by one training run on the same class path.
+ */
+public final class StartupBenchmark {
+
+    private static final int TRACKS = 10_000;
+    private static final int SAMPLE_RATE = 44100;
+    private static final Pattern FIRST_FRAME = Pattern.compile("First frame at (\\d+) ms");
+    private static final Pattern FIRST_AUDIO = Pattern.compile("First audio at (\\d+) ms");
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path home = Files.createTempDirectory("startup-bench");
+        try {
+            createSession(home);
+            Path archive = home.resolve("music-player.jsa");
+            launch(home, "-XX:ArchiveClassesAtExit=" + archive);
+            if (!Files.exists(archive)) {
+                System.err.println("No archive was dumped; only the plain runs are measured");
+            }
+
+            List<long[]> plain = new ArrayList<>();
+            List<long[]> shared = new ArrayList<>();
+            launch(home, null);
+            for (int i = 0; i < runs; i++) {
+                plain.add(launch(home, null));
+                if (Files.exists(archive)) {
+                    shared.add(launch(home, "-XX:SharedArchiveFile=" + archive));
+                }
+            }
+            report("no CDS", plain);
+            if (!shared.isEmpty()) {
+                report("AppCDS", shared);
+            }
+        } finally {
+            SyntheticLibrary.deleteTree(home);
+        }
+    }
+
+    /** A library whose first track is a real 10 s WAV file, and a session cued 2 s into it. */
+    private static void createSession(Path home) throws IOException {
+        Path music = Files.createDirectories(home.resolve("music"));
+        int frames = SAMPLE_RATE * 10;
+        ByteBuffer data = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int f = 0; f < frames; f++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 440 * f / SAMPLE_RATE));
+            data.putShort(sample).putShort(sample);
+        }
+        Path track = music.resolve("tone.wav");
+        Files.write(track, SyntheticLibrary.wav(data.array(), SAMPLE_RATE));
+
+        TrackStore store = new TrackStore();
+        List<Song> songs = new ArrayList<>(TRACKS);
+        Song first = new Song(store, track.toString());
+        first.setTitle("Tone");
+        first.setDurationMillis(10_000);
+        songs.add(first);
+        songs.addAll(SyntheticLibrary.songs(store, TRACKS - 1, 20));
+
+        Path dir = home.resolve(".musicplayer");
+        LibraryIndex index = new LibraryIndex(dir.resolve("library.idx"));
+        SessionStore sessionStore = new SessionStore(dir.resolve("session.bin"), index, Runnable::run);
+        sessionStore.setSessionSource(() -> new Session(track.toString(), 0, 2000, 0.5, false, 0));
+        sessionStore.setPlaylistSource(() -> songs);
+        sessionStore.sessionChanged();
+        sessionStore.libraryChanged();
+        sessionStore.close();
+    }
+
+    /** Runs the player once; returns {first frame, first audio} in ms, -1 where it didn't report one. */
+    private static long[] launch(Path home, String cdsOption) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (cdsOption != null) {
+            command.add(cdsOption);
+        }
+        command.add("-Duser.home=" + home);
+        command.add("-Dmusicplayer.startup.exit=audio");
+        String engine = System.getProperty("musicplayer.engine");
+        if (engine != null) {
+            command.add("-Dmusicplayer.engine=" + engine);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.musicplayer.App");
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] times = {-1, -1};
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                Matcher frame = FIRST_FRAME.matcher(line);
+                Matcher audio = FIRST_AUDIO.matcher(line);
+                if (frame.find()) {
+                    times[0] = Long.parseLong(frame.group(1));
+                } else if (audio.find()) {
+                    times[1] = Long.parseLong(audio.group(1));
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            System.err.println("Player exited with " + process.exitValue());
+        }
+        return times;
+    }
+
+    private static void report(String label, List<long[]> runs) {
+        System.out.printf("%-7s first frame %s, first audio %s%n", label, summary(runs, 0), summary(runs, 1));
+    }
+
+    private static String summary(List<long[]> runs, int column) {
+        long[] values = runs.stream().mapToLong(times -> times[column]).filter(ms -> ms >= 0).sorted().toArray();
+        if (values.length == 0) {
+            return "n/a";
+        }
+        return String.format("median %d ms (min %d, %d/%d runs)", values[values.length / 2], values[0],
+                values.length, runs.size());
+    }
+}
@@ -0,0 +1,138 @@
+package com.musicplayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic fake library data shared by the benchmarks.
+ */
+final class SyntheticLibrary {
+
+    private static final String[] WORDS = {
+            "love", "night", "blue", "river", "fire", "dream", "city", "heart", "road", "rain",
+            "gold", "echo", "shadow", "light", "summer", "storm", "silver", "ghost", "ocean", "stone"
+    };
+    private static final String[] EXTENSIONS = {".mp3", ".wav", ".aac", ".aiff", ".jpg", ".txt"};
+
+    private SyntheticLibrary() {
+    }
+
+    static List<String> paths(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int artist = random.nextInt(Math.max(1, count / 40));
+            int album = random.nextInt(8);
+            paths.add("/music/Artist " + artist + "/Album " + album + "/"
+                    + String.format("%02d", i % 20 + 1) + " " + title(random) + ".mp3");
+        }
+        return paths;
+    }
+
+    static List<Song> songs(TrackStore store, int count, long seed) {
+        Random random = new Random(seed);
+        List<Song> songs = new ArrayList<>(count);
+        for (String path : paths(count, seed)) {
+            Song song = new Song(store, path);
+            song.setTitle(title(random));
+            song.setArtist("Artist " + random.nextInt(Math.max(1, count / 40)));
+            song.setAlbum("Album " + random.nextInt(Math.max(1, count / 10)));
+            song.setDurationMillis(60_000 + random.nextInt(300_000));
+            songs.add(song);
+        }
+        return songs;
+    }
+
+    static String[] fileNames(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = title(random) + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        }
+        return names;
+    }
+
+    static String title(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    /**
+     * Creates {@code fileCount} empty files under {@code root}, 100 per
+     * directory, two directory levels deep, a sixth of them non-audio.
+     */
+    static void createTree(Path root, int fileCount) throws IOException {
+        String[] names = fileNames(fileCount, 42);
+        for (int i = 0; i < fileCount; i++) {
+            Path dir = root.resolve("artist-" + (i / 1000)).resolve("album-" + (i / 100 % 10));
+            if (i % 100 == 0) {
+                Files.createDirectories(dir);
+            }
+            Files.createFile(dir.resolve(i + " " + names[i]));
+        }
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /** A tagged MPEG-1 Layer III file: ID3v2.3 title/artist/album and 128 kbit/s frames. */
+    static byte[] mp3(String title, String artist, String album, int frames) {
+        ByteArrayOutputStream frameData = new ByteArrayOutputStream();
+        writeTextFrame(frameData, "TIT2", title);
+        writeTextFrame(frameData, "TPE1", artist);
+        writeTextFrame(frameData, "TALB", album);
+        byte[] tags = frameData.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{'I', 'D', '3', 3, 0, 0});
+        int size = tags.length;
+        out.write((size >> 21) & 0x7F);
+        out.write((size >> 14) & 0x7F);
+        out.write((size >> 7) & 0x7F);
+        out.write(size & 0x7F);
+        out.writeBytes(tags);
+
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0x64;
+        for (int i = 0; i < frames; i++) {
+            out.writeBytes(frame);
+        }
+        return out.toByteArray();
+    }
+
+    /** A 16-bit stereo PCM WAV file around little-endian sample data. */
+    static byte[] wav(byte[] pcm, int sampleRate) {
+        ByteBuffer header = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt(36 + pcm.length);
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '}).putInt(16);
+        header.putShort((short) 1).putShort((short) 2).putInt(sampleRate);
+        header.putInt(sampleRate * 4).putShort((short) 4).putShort((short) 16);
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt(pcm.length);
+        return header.put(pcm).array();
+    }
+
+    private static void writeTextFrame(ByteArrayOutputStream out, String id, String text) {
+        byte[] value = text.getBytes(StandardCharsets.ISO_8859_1);
+        int size = value.length + 1;
+        out.writeBytes(id.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[]{(byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size, 0, 0, 0});
+        out.writeBytes(value);
+    }
+}
@@ -0,0 +1,387 @@
+package com.musicplayer;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cover art thumbnails, one per album. A background pool pulls the embedded
+ * picture out of a track with {@link MetadataReader#readPicture}, decodes it
+ * straight to thumbnail size and stores the pixels in a directory with one
+ * small file per album, so each album's image is decoded once, not once per
+ * track or per launch. Thumbnails in use stay in memory in a
+ * least-recently-used map bounded by a byte budget. Albums known to have
+ * no art are remembered in a second such map, sized from the same budget.
+ *
+ * <p>An album is its title within a folder, so same-named albums by
+ * different artists stay apart and a compilation's tracks share one entry.
+ * Tracks without an album tag get an entry of their own. Stored thumbnails
+ * are not checked against the files again; art rarely changes.
+ *
+ * <p>{@link #request} and {@link #offer} must be called on the publish
+ * executor's thread (the FX thread in the app), which alone touches the
+ * memory cache.
+ */
+public class AlbumArtCache {
+
+    public static final int THUMBNAIL_SIZE = 96;
+    public static final long DEFAULT_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4D504141; // "MPAA"
+    private static final int VERSION = 1;
+    private static final Thumbnail NONE = new Thumbnail(0, 0, new int[0]);
+    // Albums without art remembered per thumbnail the budget holds; a key costs far less
+    private static final int MISSING_PER_THUMBNAIL = 4;
+
+    private final Path directory;
+    private final long budgetBytes;
+    private final ExecutorService workers;
+    private final Executor publisher;
+
+    // Publish thread only. Access-ordered: iteration starts at the least recently used entry
+    private final Map<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Boolean> missing;
+    private final Map<String, List<Consumer<Image>>> pending = new HashMap<>();
+    // Volatile so metrics can read them off the publish thread
+    private volatile long bytesUsed = 0;
+    private volatile long hits = 0;
+    private volatile long misses = 0;
+    private volatile long evictions = 0;
+
+    public AlbumArtCache(Path directory, long budgetBytes, int parallelism, Executor publisher) {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        long thumbnailBytes = (long) THUMBNAIL_SIZE * THUMBNAIL_SIZE * 4;
+        int missingLimit = (int) Math.min(1 << 20, Math.max(1, budgetBytes / thumbnailBytes) * MISSING_PER_THUMBNAIL);
+        this.missing = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > missingLimit;
+            }
+        };
+        // Newest first: after a fast scroll the rows now on screen are fetched
+        // before the ones scrolled past
+        this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<>() {
+                    @Override
+                    public boolean offer(Runnable task) {
+                        return offerFirst(task);
+                    }
+                }, r -> {
+                    Thread t = new Thread(r, "album-art");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        this.publisher = publisher;
+    }
+
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".musicplayer", "artwork");
+    }
+
+    /**
+     * Hands the song's album thumbnail to {@code onReady}: at once when it is
+     * in memory, otherwise later on the publish executor once it has been
+     * read or decoded. Nothing is delivered when the album has no art.
+     */
+    public void request(Song song, Consumer<Image> onReady) {
+        fetch(song, null, onReady);
+    }
+
+    /**
+     * Like {@link #request}, with an image the player found in the track's
+     * metadata to fall back on when no thumbnail is stored and the file has
+     * no picture the reader can extract.
+     */
+    public void offer(Song song, Image image, Consumer<Image> onReady) {
+        fetch(song, image, onReady);
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void fetch(Song song, Image fallback, Consumer<Image> onReady) {
+        String key = keyOf(song.getFilePath(), song.getAlbum());
+        Image image = images.get(key);
+        if (image != null) {
+            hits++;
+            onReady.accept(image);
+            return;
+        }
+        if (missing.get(key) != null && fallback == null) return;
+        List<Consumer<Image>> waiting = pending.get(key);
+        if (waiting != null) {
+            waiting.add(onReady);
+            return;
+        }
+        misses++;
+        waiting = new ArrayList<>();
+        waiting.add(onReady);
+        pending.put(key, waiting);
+        String path = song.getFilePath();
+        workers.execute(() -> {
+            Image loaded = toImage(load(key, path, fallback));
+            publisher.execute(() -> publish(key, loaded));
+        });
+    }
+
+    private void publish(String key, Image image) {
+        List<Consumer<Image>> waiting = pending.remove(key);
+        if (image == null) {
+            missing.put(key, Boolean.TRUE);
+            return;
+        }
+        missing.remove(key);
+        if (images.put(key, image) == null) {
+            bytesUsed += sizeOf(image);
+            evictToBudget();
+        }
+        if (waiting != null) {
+            waiting.forEach(consumer -> consumer.accept(image));
+        }
+    }
+
+    private void evictToBudget() {
+        Iterator<Image> it = images.values().iterator();
+        // The newest entry is last, so a budget smaller than one thumbnail still keeps it
+        while (bytesUsed > budgetBytes && images.size() > 1) {
+            bytesUsed -= sizeOf(it.next());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /** On a worker: the stored thumbnail, else one decoded from the file or the fallback. */
+    private Thumbnail load(String key, String path, Image fallback) {
+        long start = System.nanoTime();
+        Path file = cacheFile(key);
+        Thumbnail thumbnail = read(file, key);
+        if (thumbnail != null && (thumbnail != NONE || fallback == null)) {
+            PlayerEvents.artworkLoad("disk", thumbnail != NONE, System.nanoTime() - start);
+            return thumbnail;
+        }
+        String storeKey = key;
+        Path storeFile = file;
+        if (isTrackKey(key)) {
+            // Shown before the pipeline read its tags: the album may be known from the file
+            String album = readAlbum(path);
+            if (album != null) {
+                storeKey = keyOf(path, album);
+                storeFile = cacheFile(storeKey);
+                thumbnail = read(storeFile, storeKey);
+                if (thumbnail != null && (thumbnail != NONE || fallback == null)) {
+                    PlayerEvents.artworkLoad("disk", thumbnail != NONE, System.nanoTime() - start);
+                    return thumbnail;
+                }
+            }
+        }
+        thumbnail = decode(path);
+        if (thumbnail == NONE && fallback != null) {
+            thumbnail = scale(fallback);
+        }
+        store(storeFile, storeKey, thumbnail);
+        PlayerEvents.artworkLoad("decode", thumbnail != NONE, System.nanoTime() - start);
+        return thumbnail;
+    }
+
+    private static Thumbnail decode(String path) {
+        byte[] picture;
+        try {
+            picture = MetadataReader.readPicture(Path.of(path));
+        } catch (IOException | RuntimeException e) {
+            return NONE;
+        }
+        if (picture == null) return NONE;
+        // Decoded at thumbnail size; JPEGs are subsampled while decoding, so a
+        // large cover never exists at full size
+        Image image = new Image(new ByteArrayInputStream(picture), THUMBNAIL_SIZE, THUMBNAIL_SIZE, true, true);
+        return image.isError() ? NONE : pixels(image);
+    }
+
+    /** Box-filters an image the player decoded at full size down to thumbnail size. */
+    private static Thumbnail scale(Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        PixelReader reader = image.getPixelReader();
+        if (reader == null || width <= 0 || height <= 0) return NONE;
+        if (width <= THUMBNAIL_SIZE && height <= THUMBNAIL_SIZE) return pixels(image);
+        double factor = Math.max(width, height) / (double) THUMBNAIL_SIZE;
+        int w = Math.max(1, (int) Math.round(width / factor));
+        int h = Math.max(1, (int) Math.round(height / factor));
+        int[] source = new int[width];
+        long[] sums = new long[w * 4];
+        int[] counts = new int[w];
+        int[] out = new int[w * h];
+        int sourceRow = 0;
+        for (int y = 0; y < h; y++) {
+            int rowEnd = Math.min(height, (int) Math.round((y + 1) * factor));
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (; sourceRow < rowEnd; sourceRow++) {
+                reader.getPixels(0, sourceRow, width, 1, PixelFormat.getIntArgbInstance(), source, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int tx = Math.min(w - 1, (int) (x / factor));
+                    int argb = source[x];
+                    sums[tx * 4] += argb >>> 24;
+                    sums[tx * 4 + 1] += (argb >> 16) & 0xFF;
+                    sums[tx * 4 + 2] += (argb >> 8) & 0xFF;
+                    sums[tx * 4 + 3] += argb & 0xFF;
+                    counts[tx]++;
+                }
+            }
+            for (int x = 0; x < w; x++) {
+                int n = Math.max(1, counts[x]);
+                out[y * w + x] = (int) (sums[x * 4] / n) << 24 | (int) (sums[x * 4 + 1] / n) << 16
+                        | (int) (sums[x * 4 + 2] / n) << 8 | (int) (sums[x * 4 + 3] / n);
+            }
+        }
+        return new Thumbnail(w, h, out);
+    }
+
+    private static Thumbnail pixels(Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int[] argb = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        return new Thumbnail(width, height, argb);
+    }
+
+    private static Image toImage(Thumbnail thumbnail) {
+        if (thumbnail == NONE) return null;
+        WritableImage image = new WritableImage(thumbnail.width(), thumbnail.height());
+        image.getPixelWriter().setPixels(0, 0, thumbnail.width(), thumbnail.height(),
+                PixelFormat.getIntArgbInstance(), thumbnail.argb(), 0, thumbnail.width());
+        return image;
+    }
+
+    private static String readAlbum(String path) {
+        try {
+            return MetadataReader.read(Path.of(path)).album();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Thumbnail read(Path file, String key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) return null;
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width == 0) return NONE;
+            if (width < 0 || height <= 0 || width > THUMBNAIL_SIZE || height > THUMBNAIL_SIZE) return null;
+            byte[] bytes = new byte[width * height * 4];
+            in.readFully(bytes);
+            int[] argb = new int[width * height];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(argb);
+            return new Thumbnail(width, height, argb);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable thumbnail " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Path file, String key, Thumbnail thumbnail) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "art", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeInt(thumbnail.width());
+                out.writeInt(thumbnail.height());
+                ByteBuffer bytes = ByteBuffer.allocate(thumbnail.argb().length * 4);
+                bytes.asIntBuffer().put(thumbnail.argb());
+                out.write(bytes.array());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot store thumbnail for " + key + ": " + e.getMessage());
+        }
+    }
+
+    private Path cacheFile(String key) {
+        // Colliding keys share a file and overwrite each other; the stored key tells them apart
+        return directory.resolve(String.format("%08x%08x.art", key.hashCode(), key.length()));
+    }
+
+    static String keyOf(String path, String album) {
+        if (album == null || album.equals(TrackStore.UNKNOWN_ALBUM)) {
+            return "track:" + path;
+        }
+        Path parent = Path.of(path).getParent();
+        return "album:" + (parent == null ? "" : parent) + "/" + album;
+    }
+
+    private static boolean isTrackKey(String key) {
+        return key.startsWith("track:");
+    }
+
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public int size() {
+        return images.size();
+    }
+
+    /** Albums remembered as having no art, so they aren't looked up again. */
+    public int missingSize() {
+        return missing.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d albums, %d KB of %d KB, %d hits, %d misses, %d evictions",
+                images.size(), bytesUsed >> 10, budgetBytes >> 10, hits, misses, evictions);
+    }
+
+    private record Thumbnail(int width, int height, int[] argb) {
+    }
+}
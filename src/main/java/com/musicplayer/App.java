@@ -2,9 +2,22 @@ package com.musicplayer;
 
 import javafx.application.Application;
 
+import java.util.Arrays;
+
 public class App {
 
-    public static void main(String[] args) {
-        Application.launch(MusicPlayerApp.class, args);
+    /**
+     * Opens the player window, or with {@code --daemon} runs it headless
+     * behind a control socket, and with {@code --ctl COMMAND} sends that
+     * command to a running daemon.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            PlayerDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("--ctl")) {
+            DaemonClient.main(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            Application.launch(MusicPlayerApp.class, args);
+        }
     }
 }
@@ -1,168 +1,138 @@
 package com.musicplayer;
 
-import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.scene.media.Media;
+import javafx.scene.image.Image;
 import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
 
-import java.io.File;
-
-public class AudioEngine {
-
-    private MediaPlayer mediaPlayer;
-
-    private final ObjectProperty<Duration> currentTime = new SimpleObjectProperty<>(Duration.ZERO);
-    private final ObjectProperty<Duration> totalDuration = new SimpleObjectProperty<>(Duration.ZERO);
-    private final ObjectProperty<MediaPlayer.Status> status = new SimpleObjectProperty<>(MediaPlayer.Status.UNKNOWN);
-
-    private double volume = 0.5;
-    private boolean muted = false;
-
-    private Runnable onEndOfMedia;
-    private java.util.function.BiConsumer<Song, Media> onMetadataAvailable;
-
-    public void play(Song song) {
-        disposeCurrentPlayer();
-
-        File file = new File(song.getFilePath());
-        Media media = new Media(file.toURI().toString());
-        mediaPlayer = new MediaPlayer(media);
-
-        mediaPlayer.setVolume(muted ? 0.0 : volume);
-
-        mediaPlayer.currentTimeProperty().addListener((obs, oldVal, newVal) ->
-                currentTime.set(newVal));
-
-        mediaPlayer.setOnReady(() -> {
-            totalDuration.set(media.getDuration());
-            song.setDuration(media.getDuration());
-            extractMetadata(song, media);
-            mediaPlayer.play();
-        });
-
-        mediaPlayer.statusProperty().addListener((obs, oldVal, newVal) ->
-                status.set(newVal));
-
-        mediaPlayer.setOnEndOfMedia(() -> {
-            status.set(MediaPlayer.Status.STOPPED);
-            if (onEndOfMedia != null) {
-                onEndOfMedia.run();
-            }
-        });
-
-        mediaPlayer.setOnError(() -> {
-            System.err.println("Media error: " + mediaPlayer.getError().getMessage());
-            status.set(MediaPlayer.Status.STOPPED);
-        });
-    }
-
-    public void pause() {
-        if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
-            mediaPlayer.pause();
-        }
-    }
-
-    public void resume() {
-        if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED) {
-            mediaPlayer.play();
-        }
-    }
-
-    public void stop() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            currentTime.set(Duration.ZERO);
-        }
-    }
-
-    public void seek(Duration target) {
-        if (mediaPlayer != null && mediaPlayer.getStatus() != MediaPlayer.Status.UNKNOWN) {
-            mediaPlayer.seek(target);
-        }
-    }
-
-    public void setVolume(double value) {
-        this.volume = Math.max(0.0, Math.min(1.0, value));
-        if (mediaPlayer != null && !muted) {
-            mediaPlayer.setVolume(this.volume);
-        }
-    }
-
-    public double getVolume() {
-        return volume;
-    }
-
-    public void setMuted(boolean muted) {
-        this.muted = muted;
-        if (mediaPlayer != null) {
-            mediaPlayer.setVolume(muted ? 0.0 : volume);
-        }
-    }
-
-    public boolean isMuted() {
-        return muted;
-    }
-
-    public ReadOnlyObjectProperty<Duration> currentTimeProperty() {
-        return currentTime;
-    }
-
-    public ReadOnlyObjectProperty<Duration> totalDurationProperty() {
-        return totalDuration;
-    }
-
-    public ReadOnlyObjectProperty<MediaPlayer.Status> statusProperty() {
-        return status;
-    }
-
-    public void setOnEndOfMedia(Runnable handler) {
-        this.onEndOfMedia = handler;
-    }
-
-    public void setOnMetadataAvailable(java.util.function.BiConsumer<Song, Media> handler) {
-        this.onMetadataAvailable = handler;
-    }
-
-    private void extractMetadata(Song song, Media media) {
-        media.getMetadata().addListener((javafx.collections.MapChangeListener<String, Object>) change -> {
-            if (change.wasAdded()) {
-                applyMetadataEntry(song, change.getKey(), change.getValueAdded());
-                if (onMetadataAvailable != null) {
-                    onMetadataAvailable.accept(song, media);
-                }
-            }
-        });
-        // Also read any metadata already available
-        for (var entry : media.getMetadata().entrySet()) {
-            applyMetadataEntry(song, entry.getKey(), entry.getValue());
-        }
-        if (!media.getMetadata().isEmpty() && onMetadataAvailable != null) {
-            onMetadataAvailable.accept(song, media);
-        }
-    }
-
-    private void applyMetadataEntry(Song song, String key, Object value) {
-        if (value == null) return;
-        switch (key) {
-            case "title" -> song.setTitle(value.toString());
-            case "artist" -> song.setArtist(value.toString());
-            case "album" -> song.setAlbum(value.toString());
-        }
-    }
-
-    private void disposeCurrentPlayer() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer.dispose();
-            mediaPlayer = null;
-            currentTime.set(Duration.ZERO);
-            totalDuration.set(Duration.ZERO);
-        }
-    }
-
-    public void dispose() {
-        disposeCurrentPlayer();
-    }
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Playback backend. {@link FxAudioEngine} plays through JavaFX media;
+ * {@link PcmAudioEngine} decodes to PCM and writes to an {@link AudioSink}.
+ *
+ * <p>Methods are called from one thread (the FX thread in the app).
+ * Properties change and callbacks run on that same thread.
+ */
+public interface AudioEngine {
+
+    Duration MAX_CROSSFADE = Duration.seconds(12);
+
+    void play(Song song);
+
+    /**
+     * Makes the song current, paused at {@code position}, so a later
+     * {@link #resume()} starts right there, e.g. to restore a session. An
+     * engine may defer opening the track until then.
+     */
+    void cue(Song song, Duration position);
+
+    void pause();
+
+    void resume();
+
+    void stop();
+
+    void seek(Duration target);
+
+    void setVolume(double value);
+
+    double getVolume();
+
+    void setMuted(boolean muted);
+
+    boolean isMuted();
+
+    /**
+     * Scales each track by its {@link Song#getNormalizationGain()} so
+     * analyzed tracks play at the same loudness. On by default.
+     */
+    void setLoudnessNormalization(boolean enabled);
+
+    boolean isLoudnessNormalization();
+
+    /** Serves recently played tracks from local copies; {@code null} disables it. */
+    void setTrackCache(TrackCache cache);
+
+    void setGapless(boolean gapless);
+
+    boolean isGapless();
+
+    /**
+     * Overlaps the end of each track with the start of the next for
+     * {@code duration}, clamped to 0 to 12 seconds. Zero falls back to gapless
+     * playback. A skip, seek or stop during a fade cuts the outgoing track.
+     */
+    void setCrossfade(Duration duration);
+
+    Duration getCrossfade();
+
+    CrossfadeStats getCrossfadeStats();
+
+    /**
+     * Drops the prepared next track, e.g. because the playlist order changed
+     * and the provider would now return a different song.
+     */
+    void clearPreloaded();
+
+    ReadOnlyObjectProperty<Duration> currentTimeProperty();
+
+    /**
+     * Playback position in whole milliseconds, published at the position
+     * update rate and only when it changed. Cheaper to observe than
+     * {@link #currentTimeProperty()}: an invalidation listener reading
+     * {@code get()} allocates nothing.
+     */
+    ReadOnlyLongProperty positionMillisProperty();
+
+    /**
+     * Sets how many times per second the playback position is published,
+     * between 1 and 60.
+     */
+    void setPositionUpdateRate(double hz);
+
+    double getPositionUpdateRate();
+
+    PositionStats getPositionStats();
+
+    ReadOnlyObjectProperty<Duration> totalDurationProperty();
+
+    ReadOnlyObjectProperty<MediaPlayer.Status> statusProperty();
+
+    /**
+     * Time from the end of one track until the next one reported PLAYING,
+     * updated on every automatic track change.
+     */
+    ReadOnlyObjectProperty<Duration> transitionLatencyProperty();
+
+    void setOnEndOfMedia(Runnable handler);
+
+    /** Called when playback revealed new metadata for the song, possibly off that thread. */
+    void setOnMetadataAvailable(Consumer<Song> handler);
+
+    /**
+     * Feeds what is playing to {@code analyzer} for a spectrum display;
+     * {@code null} stops feeding it.
+     */
+    void setSpectrumAnalyzer(SpectrumAnalyzer analyzer);
+
+    /** Called with cover art found in the song's metadata during playback, possibly off that thread. */
+    void setOnArtworkAvailable(BiConsumer<Song, Image> handler);
+
+    /**
+     * Supplies the song to prepare for gapless playback. Called shortly
+     * before the current track ends.
+     */
+    void setNextTrackProvider(Supplier<Song> provider);
+
+    /**
+     * Called when the engine has moved on to a preloaded track by itself;
+     * {@code onEndOfMedia} is not called in that case.
+     */
+    void setOnTrackAdvanced(Consumer<Song> handler);
+
+    void dispose();
 }
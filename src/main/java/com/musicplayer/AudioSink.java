@@ -0,0 +1,73 @@
+package com.musicplayer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Where {@link PcmAudioEngine} writes decoded audio. All methods are called
+ * from the engine's playback thread.
+ */
+public interface AudioSink {
+
+    /** Opens (or reopens) the sink for {@code format} with a buffer of {@code bufferBytes}. */
+    void open(AudioFormat format, int bufferBytes) throws IOException;
+
+    /** Writes whole frames, blocking while the sink's buffer is full. */
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Writes whole frames straight from {@code data}, e.g. a memory-mapped
+     * file. Sinks that can't take a buffer directly copy it.
+     */
+    default void write(ByteBuffer data) throws IOException {
+        byte[] copy = new byte[data.remaining()];
+        data.get(copy);
+        write(copy, 0, copy.length);
+    }
+
+    /**
+     * Like {@link #write(ByteBuffer)} for 16-bit little-endian frames, scaled
+     * by {@code gain}. Sinks that copy the buffer anyway scale while copying.
+     */
+    default void write(ByteBuffer data, float gain) throws IOException {
+        if (gain == 1f) {
+            write(data);
+            return;
+        }
+        byte[] copy = new byte[data.remaining()];
+        PcmAudioEngine.copyWithGain(data, copy, gain);
+        write(copy, 0, copy.length);
+    }
+
+    void start();
+
+    void stop();
+
+    /** Discards buffered audio that hasn't been played yet. */
+    void flush();
+
+    /** Frames actually played since the sink was opened. */
+    long getFramePosition();
+
+    void close();
+
+    /** The default sound output device. */
+    static AudioSink line() {
+        return new LineSink();
+    }
+
+    /**
+     * Discards audio. In real time it plays at the format's rate as a sound
+     * card would; otherwise it accepts data as fast as it's written.
+     */
+    static AudioSink discard(boolean realTime) {
+        return new NullSink(realTime);
+    }
+
+    /** Writes everything played to a WAV file. */
+    static AudioSink file(Path path) {
+        return new FileSink(path);
+    }
+}
@@ -0,0 +1,64 @@
+package com.musicplayer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Line-at-a-time UTF-8 text over a blocking socket channel, for the daemon's
+ * control protocol. Reads go straight to the channel rather than through
+ * {@link java.nio.channels.Channels#newReader}, whose stream holds a monitor
+ * while blocked and would pin a virtual thread to its carrier.
+ */
+final class ControlConnection implements Closeable {
+
+    /** Longest line accepted; a longer one closes the connection. */
+    static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(8192);
+    private byte[] line = new byte[256];
+
+    ControlConnection(SocketChannel channel) {
+        this.channel = channel;
+        in.flip();
+    }
+
+    /** The next line without its terminator, or {@code null} at end of stream. */
+    String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            while (in.hasRemaining()) {
+                byte b = in.get();
+                if (b == '\n') {
+                    if (length > 0 && line[length - 1] == '\r') length--;
+                    return new String(line, 0, length, StandardCharsets.UTF_8);
+                }
+                if (length == line.length) {
+                    if (length == MAX_LINE_BYTES) throw new IOException("Line too long");
+                    line = Arrays.copyOf(line, Math.min(MAX_LINE_BYTES, length * 2));
+                }
+                line[length++] = b;
+            }
+            in.clear();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) return null;
+        }
+    }
+
+    void writeLine(String text) throws IOException {
+        ByteBuffer out = StandardCharsets.UTF_8.encode(text + "\n");
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.musicplayer;
+
+/**
+ * Timing accuracy of crossfades: how often and how evenly the fade curve
+ * was updated, the largest gain jump between updates, and how far each
+ * fade's real length landed from the configured one. Both engines follow
+ * the same equal-power curve, defined here. Update intervals and length
+ * errors also go to {@link Metrics} histograms, and cut fades to a counter.
+ */
+public final class CrossfadeStats {
+
+    private static final Metrics.Histogram UPDATE_INTERVAL = Metrics.getDefault().histogram("crossfade.update-interval");
+    private static final Metrics.Histogram LENGTH_ERROR = Metrics.getDefault().histogram("crossfade.length-error");
+    private static final Metrics.Counter ABORTED = Metrics.getDefault().counter("crossfade.aborted");
+
+    private long fades = 0;
+    private long aborted = 0;
+    private long updates = 0;
+    private long intervalNanosTotal = 0;
+    private long maxIntervalNanos = 0;
+    private double maxGainStep = 0;
+    private long lengthErrorNanosTotal = 0;
+    private long maxLengthErrorNanos = 0;
+
+    /** Gain of the incoming track {@code t} of the way through the fade (0 to 1). */
+    static double fadeIn(double t) {
+        return Math.sin(Math.max(0, Math.min(1, t)) * Math.PI / 2);
+    }
+
+    /** Gain of the outgoing track; the squares of both gains always sum to 1. */
+    static double fadeOut(double t) {
+        return Math.cos(Math.max(0, Math.min(1, t)) * Math.PI / 2);
+    }
+
+    /** One change of the applied gains, {@code intervalNanos} after the previous one. */
+    synchronized void update(long intervalNanos, double gainStep) {
+        updates++;
+        intervalNanosTotal += intervalNanos;
+        maxIntervalNanos = Math.max(maxIntervalNanos, intervalNanos);
+        maxGainStep = Math.max(maxGainStep, gainStep);
+        UPDATE_INTERVAL.record(intervalNanos);
+    }
+
+    synchronized void finished(long plannedNanos, long actualNanos) {
+        fades++;
+        long error = Math.abs(actualNanos - plannedNanos);
+        lengthErrorNanosTotal += error;
+        maxLengthErrorNanos = Math.max(maxLengthErrorNanos, error);
+        LENGTH_ERROR.record(error);
+    }
+
+    /** A fade cut short by a skip, seek or stop. */
+    synchronized void aborted() {
+        aborted++;
+        ABORTED.increment();
+    }
+
+    public synchronized long getFades() {
+        return fades;
+    }
+
+    public synchronized long getAborted() {
+        return aborted;
+    }
+
+    public synchronized double getMeanUpdateIntervalMillis() {
+        return updates == 0 ? 0 : intervalNanosTotal / 1e6 / updates;
+    }
+
+    public synchronized double getMaxUpdateIntervalMillis() {
+        return maxIntervalNanos / 1e6;
+    }
+
+    /** Largest change in either gain from one update to the next, from 0 to 1. */
+    public synchronized double getMaxGainStep() {
+        return maxGainStep;
+    }
+
+    public synchronized double getMeanLengthErrorMillis() {
+        return fades == 0 ? 0 : lengthErrorNanosTotal / 1e6 / fades;
+    }
+
+    public synchronized double getMaxLengthErrorMillis() {
+        return maxLengthErrorNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d crossfades (%d aborted), updates every %.1f ms (max %.1f), max gain step %.5f,"
+                        + " length error %.1f ms (max %.1f)",
+                fades, aborted, getMeanUpdateIntervalMillis(), getMaxUpdateIntervalMillis(), maxGainStep,
+                getMeanLengthErrorMillis(), getMaxLengthErrorMillis());
+    }
+}
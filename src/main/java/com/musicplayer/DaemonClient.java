@@ -0,0 +1,61 @@
+package com.musicplayer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * One connection to a {@link PlayerDaemon}'s control socket. Commands are
+ * sent one at a time; each call waits for its reply line.
+ */
+public class DaemonClient implements Closeable {
+
+    private final ControlConnection connection;
+
+    private DaemonClient(SocketChannel channel) {
+        this.connection = new ControlConnection(channel);
+    }
+
+    public static DaemonClient connect(Path socket) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new DaemonClient(channel);
+    }
+
+    /** Sends one command and returns the daemon's reply, {@code OK ...} or {@code ERR ...}. */
+    public String send(String command) throws IOException {
+        connection.writeLine(command);
+        String reply = connection.readLine();
+        if (reply == null) {
+            throw new EOFException("Daemon closed the connection");
+        }
+        return reply;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    /** Sends the command given as arguments, e.g. {@code seek 30}, and prints the reply. */
+    public static void main(String[] args) throws IOException {
+        Path socket = System.getProperty("musicplayer.socket") != null
+                ? Path.of(System.getProperty("musicplayer.socket")) : PlayerDaemon.defaultSocket();
+        try (DaemonClient client = connect(socket)) {
+            String reply = client.send(String.join(" ", args.length == 0 ? new String[]{"status"} : args));
+            System.out.println(reply);
+            if (!reply.startsWith("OK")) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.musicplayer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link AudioSink} that records the output to a WAV file as fast as it's
+ * written. The header's sizes are filled in on close.
+ */
+final class FileSink implements AudioSink {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final Path path;
+    private FileChannel channel;
+    private AudioFormat format;
+    private long dataBytes = 0;
+    private byte[] scaled = new byte[0];
+
+    FileSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferBytes) throws IOException {
+        if (channel != null && format.matches(this.format)) return;
+        close();
+        this.format = format;
+        this.dataBytes = 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(header(), 0);
+        channel.position(HEADER_SIZE);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        write(ByteBuffer.wrap(data, offset, length));
+    }
+
+    @Override
+    public void write(ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        dataBytes += length;
+    }
+
+    @Override
+    public void write(ByteBuffer data, float gain) throws IOException {
+        if (gain == 1f) {
+            write(data);
+            return;
+        }
+        int length = data.remaining();
+        if (scaled.length < length) {
+            scaled = new byte[length];
+        }
+        PcmAudioEngine.copyWithGain(data, scaled, gain);
+        write(scaled, 0, length);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public long getFramePosition() {
+        return format == null ? 0 : dataBytes / format.getFrameSize();
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.write(header(), 0);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Cannot finish " + path + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private ByteBuffer header() {
+        int channels = format.getChannels();
+        int sampleRate = (int) format.getSampleRate();
+        int bits = format.getSampleSizeInBits();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (36 + dataBytes));
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '}).putInt(16);
+        header.putShort((short) 1).putShort((short) channels).putInt(sampleRate);
+        header.putInt(sampleRate * format.getFrameSize()).putShort((short) format.getFrameSize());
+        header.putShort((short) bits);
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataBytes);
+        return header.flip();
+    }
+}
@@ -0,0 +1,727 @@
+package com.musicplayer;
+
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link AudioEngine} on JavaFX {@link MediaPlayer}.
+ */
+public class FxAudioEngine implements AudioEngine {
+
+    private static final String ENGINE = "fx";
+
+    // How far before the end of the current track the next one is prepared
+    private static final Duration PRELOAD_LEAD = Duration.seconds(15);
+
+    private static final double DEFAULT_POSITION_UPDATE_RATE = 10.0;
+
+    // JavaFX computes the spectrum in its media pipeline: equal-width bands
+    // from 0 to half the sample rate, which it doesn't expose, so CD rate is assumed
+    private static final int SPECTRUM_BANDS = 1024;
+    private static final double SPECTRUM_INTERVAL_SECONDS = 1 / 30.0;
+    private static final float SPECTRUM_SAMPLE_RATE = 44100f;
+
+    private MediaPlayer mediaPlayer;
+
+    // Gapless mode: the next track's player, built ahead of time
+    private MediaPlayer nextPlayer;
+    private Song nextSong;
+    private boolean nextReady = false;
+
+    private final ObjectProperty<Duration> currentTime = new SimpleObjectProperty<>(Duration.ZERO);
+    private final ObjectProperty<Duration> totalDuration = new SimpleObjectProperty<>(Duration.ZERO);
+    private final ObjectProperty<MediaPlayer.Status> status = new SimpleObjectProperty<>(MediaPlayer.Status.UNKNOWN);
+    private final ObjectProperty<Duration> transitionLatency = new SimpleObjectProperty<>(Duration.ZERO);
+    private final LongProperty positionMillis = new SimpleLongProperty(0);
+
+    // Samples the player's position at a fixed rate instead of forwarding
+    // every change the media backend reports
+    private Timeline positionTicker;
+    private double positionUpdateRate = DEFAULT_POSITION_UPDATE_RATE;
+    private final PositionStats positionStats = new PositionStats();
+
+    private TrackCache trackCache;
+    private SpectrumAnalyzer spectrum;
+
+    private double volume = 0.5;
+    private boolean muted = false;
+    private boolean normalization = true;
+    private Song currentSong;
+    // Cued but not opened yet; see cue()
+    private Song cuedSong;
+    private Duration cuedPosition;
+    private boolean gapless = true;
+
+    // Crossfade: the outgoing player keeps playing under the new current one
+    // while an AnimationTimer ramps both volumes. Progress is computed from
+    // the fade's start time on every pulse, so late pulses never accumulate.
+    private long crossfadeNanos = 0;
+    private final CrossfadeStats crossfadeStats = new CrossfadeStats();
+    private AnimationTimer fadeTimer;
+    private MediaPlayer fadingPlayer;
+    private Song fadingSong;
+    private long fadePlannedStartNanos;
+    private long fadeStartNanos;
+    private long fadeLengthNanos;
+    private long fadePausedNanos = 0;
+    private long lastFadeUpdateNanos;
+    private double fadeProgress = 0;
+
+    // Set when the current track ends; cleared once the next one is PLAYING
+    private long transitionStartNanos = 0;
+    private boolean advancing = false;
+
+    private Runnable onEndOfMedia;
+    private Consumer<Song> onMetadataAvailable;
+    private BiConsumer<Song, Image> onArtworkAvailable;
+    private Supplier<Song> nextTrackProvider;
+    private Consumer<Song> onTrackAdvanced;
+
+    @Override
+    public void play(Song song) {
+        if (!advancing) {
+            transitionStartNanos = 0;
+        }
+        disposeCurrentPlayer();
+
+        if (nextPlayer != null && nextSong == song) {
+            boolean ready = nextReady;
+            activate(takePreloaded(), song, ready, 0, null);
+            return;
+        }
+        discardPreloaded();
+
+        long requested = System.nanoTime();
+        activate(new MediaPlayer(openMedia(song)), song, false, requested, null);
+    }
+
+    /**
+     * Only records the track: no MediaPlayer is built until {@link #resume()},
+     * so restoring a session at startup doesn't initialize the media stack.
+     */
+    @Override
+    public void cue(Song song, Duration position) {
+        transitionStartNanos = 0;
+        disposeCurrentPlayer();
+        discardPreloaded();
+        currentSong = song;
+        cuedSong = song;
+        cuedPosition = position;
+        totalDuration.set(song.getDuration());
+        setPosition(position);
+        status.set(MediaPlayer.Status.PAUSED);
+    }
+
+    /**
+     * Opens the song from the track cache when it holds a copy; otherwise
+     * from its file, queueing a copy so replaying it later is local.
+     */
+    private Media openMedia(Song song) {
+        String path = song.getFilePath();
+        Path cached = trackCache != null ? trackCache.lookup(path) : null;
+        if (trackCache != null && cached == null) {
+            trackCache.add(path);
+        }
+        File file = cached != null ? cached.toFile() : new File(path);
+        return new Media(file.toURI().toString());
+    }
+
+    private MediaPlayer takePreloaded() {
+        MediaPlayer preloaded = nextPlayer;
+        nextPlayer = null;
+        nextSong = null;
+        nextReady = false;
+        return preloaded;
+    }
+
+    /**
+     * {@code requestedNanos} is when the file was opened, 0 if it was preloaded.
+     * A {@code startAt} position is sought to before playing.
+     */
+    private void activate(MediaPlayer player, Song song, boolean ready, long requestedNanos, Duration startAt) {
+        mediaPlayer = player;
+        currentSong = song;
+        Media media = player.getMedia();
+
+        applyVolume();
+        attachSpectrum(player);
+
+        player.statusProperty().addListener((obs, oldVal, newVal) -> {
+            if (player != mediaPlayer) return;
+            status.set(newVal);
+            if (newVal == MediaPlayer.Status.PLAYING) {
+                ticker().play();
+            } else {
+                ticker().stop();
+                publishPosition();
+            }
+            if (newVal == MediaPlayer.Status.PLAYING && transitionStartNanos != 0) {
+                long gap = System.nanoTime() - transitionStartNanos;
+                transitionLatency.set(Duration.millis(gap / 1_000_000.0));
+                transitionStartNanos = 0;
+                PlayerEvents.transition(ENGINE, song.getFilePath(), ready, gap);
+            }
+        });
+
+        player.setOnEndOfMedia(() -> {
+            if (player != mediaPlayer) return;
+            transitionStartNanos = System.nanoTime();
+            if (gapless && nextPlayer != null && nextReady) {
+                advanceToPreloaded();
+                return;
+            }
+            status.set(MediaPlayer.Status.STOPPED);
+            if (onEndOfMedia != null) {
+                advancing = true;
+                try {
+                    onEndOfMedia.run();
+                } finally {
+                    advancing = false;
+                }
+            }
+        });
+
+        player.setOnError(() -> {
+            System.err.println("Media error: " + player.getError().getMessage());
+            PlayerEvents.playbackError(ENGINE, song.getFilePath(), player.getError().getMessage());
+            if (player == mediaPlayer) {
+                status.set(MediaPlayer.Status.STOPPED);
+            }
+        });
+
+        Runnable start = () -> {
+            if (requestedNanos != 0) {
+                PlayerEvents.trackLoaded(ENGINE, song.getFilePath(), false, System.nanoTime() - requestedNanos);
+            }
+            totalDuration.set(media.getDuration());
+            song.setDuration(media.getDuration());
+            extractMetadata(song, media);
+            if (startAt != null) {
+                player.seek(startAt);
+            }
+            player.play();
+        };
+        if (ready) {
+            status.set(player.getStatus());
+            start.run();
+        } else {
+            player.setOnReady(start);
+        }
+    }
+
+    private void advanceToPreloaded() {
+        cancelCrossfade();
+        MediaPlayer finished = mediaPlayer;
+        Song song = nextSong;
+        MediaPlayer preloaded = takePreloaded();
+        // Start the next track before tearing down the old one so nothing
+        // on the disposal path delays the first buffer
+        activate(preloaded, song, true, 0, null);
+        setPosition(Duration.ZERO);
+        finished.dispose();
+        if (onTrackAdvanced != null) {
+            onTrackAdvanced.accept(song);
+        }
+    }
+
+    private Timeline ticker() {
+        if (positionTicker == null) {
+            positionTicker = new Timeline(new KeyFrame(Duration.seconds(1.0 / positionUpdateRate), e -> publishPosition()));
+            positionTicker.setCycleCount(Animation.INDEFINITE);
+        }
+        return positionTicker;
+    }
+
+    private void publishPosition() {
+        if (mediaPlayer == null) return;
+        long allocated = positionStats.beginUpdate();
+        Duration position = mediaPlayer.getCurrentTime();
+        setPosition(position);
+        maybePreloadNext(position);
+        maybeScheduleCrossfade(position);
+        positionStats.endUpdate(allocated);
+    }
+
+    private void setPosition(Duration position) {
+        long millis = position == null || position.isUnknown() ? 0 : (long) position.toMillis();
+        if (millis != positionMillis.get()) {
+            positionMillis.set(millis);
+            currentTime.set(position);
+        }
+    }
+
+    private void maybePreloadNext(Duration position) {
+        if ((!gapless && crossfadeNanos == 0) || nextPlayer != null || nextTrackProvider == null || position == null) return;
+        Duration total = totalDuration.get();
+        if (total == null || total.isUnknown() || total.lessThanOrEqualTo(Duration.ZERO)) return;
+        if (total.toMillis() - position.toMillis() > PRELOAD_LEAD.toMillis() + crossfadeNanos / 1_000_000) return;
+
+        Song song = nextTrackProvider.get();
+        if (song != null) {
+            preload(song);
+        }
+    }
+
+    /**
+     * Once the fade is less than a position tick away, arms a timer that
+     * starts it on the first pulse at or after the planned moment rather
+     * than on the next tick.
+     */
+    private void maybeScheduleCrossfade(Duration position) {
+        if (crossfadeNanos == 0 || fadeTimer != null || nextPlayer == null || !nextReady || position == null) return;
+        if (mediaPlayer.getStatus() != MediaPlayer.Status.PLAYING) return;
+        Duration total = totalDuration.get();
+        if (total == null || total.isUnknown() || total.lessThanOrEqualTo(Duration.ZERO)) return;
+        long remaining = (long) ((total.toMillis() - position.toMillis()) * 1_000_000);
+        long lead = remaining - crossfadeNanos;
+        if (lead > (long) (1e9 / positionUpdateRate)) return;
+
+        fadePlannedStartNanos = System.nanoTime() + Math.max(0, lead);
+        fadeLengthNanos = Math.max(1, Math.min(crossfadeNanos, remaining));
+        fadeTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stepCrossfade(now);
+            }
+        };
+        fadeTimer.start();
+    }
+
+    private void stepCrossfade(long now) {
+        if (fadingPlayer == null) {
+            if (now < fadePlannedStartNanos) return;
+            if (nextPlayer == null || !nextReady) {
+                cancelCrossfade();
+                return;
+            }
+            beginCrossfade(now);
+        }
+        double t = (double) (now - fadeStartNanos) / fadeLengthNanos;
+        if (t >= 1) {
+            finishCrossfade(now);
+            return;
+        }
+        double step = Math.max(Math.abs(CrossfadeStats.fadeIn(t) - CrossfadeStats.fadeIn(fadeProgress)),
+                Math.abs(CrossfadeStats.fadeOut(t) - CrossfadeStats.fadeOut(fadeProgress)));
+        crossfadeStats.update(now - lastFadeUpdateNanos, step);
+        lastFadeUpdateNanos = now;
+        fadeProgress = t;
+        applyVolume();
+    }
+
+    private void beginCrossfade(long now) {
+        fadingPlayer = mediaPlayer;
+        fadingSong = currentSong;
+        fadeStartNanos = now;
+        lastFadeUpdateNanos = now;
+        fadeProgress = 0;
+        Song song = nextSong;
+        activate(takePreloaded(), song, true, 0, null);
+        setPosition(Duration.ZERO);
+        if (onTrackAdvanced != null) {
+            onTrackAdvanced.accept(song);
+        }
+    }
+
+    private void finishCrossfade(long now) {
+        crossfadeStats.finished(fadeLengthNanos, now - fadePlannedStartNanos);
+        fadeTimer.stop();
+        fadeTimer = null;
+        // Release the outgoing player's native resources right away
+        fadingPlayer.dispose();
+        fadingPlayer = null;
+        fadingSong = null;
+        fadePausedNanos = 0;
+        fadeProgress = 0;
+        applyVolume();
+    }
+
+    /** Drops a scheduled fade, or cuts the outgoing track of a running one. */
+    private void cancelCrossfade() {
+        if (fadeTimer == null) return;
+        fadeTimer.stop();
+        fadeTimer = null;
+        if (fadingPlayer != null) {
+            crossfadeStats.aborted();
+            fadingPlayer.dispose();
+            fadingPlayer = null;
+            fadingSong = null;
+        }
+        fadePausedNanos = 0;
+        fadeProgress = 0;
+        applyVolume();
+    }
+
+    private void preload(Song song) {
+        long requested = System.nanoTime();
+        Media media;
+        try {
+            media = openMedia(song);
+        } catch (RuntimeException e) {
+            System.err.println("Cannot preload " + song.getFilePath() + ": " + e.getMessage());
+            return;
+        }
+        MediaPlayer player = new MediaPlayer(media);
+        nextPlayer = player;
+        nextSong = song;
+        nextReady = false;
+        player.setOnReady(() -> {
+            PlayerEvents.trackLoaded(ENGINE, song.getFilePath(), true, System.nanoTime() - requested);
+            if (player == nextPlayer) {
+                nextReady = true;
+            }
+        });
+        player.setOnError(() -> {
+            PlayerEvents.playbackError(ENGINE, song.getFilePath(), player.getError().getMessage());
+            if (player == nextPlayer) {
+                discardPreloaded();
+            }
+        });
+    }
+
+    @Override
+    public void pause() {
+        if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
+            mediaPlayer.pause();
+            if (fadingPlayer != null) {
+                // Hold the fade where it is; resume shifts its clock by the pause
+                fadingPlayer.pause();
+                fadeTimer.stop();
+                fadePausedNanos -= System.nanoTime();
+            } else {
+                cancelCrossfade();
+            }
+        }
+    }
+
+    @Override
+    public void resume() {
+        if (cuedSong != null) {
+            Song song = cuedSong;
+            Duration position = cuedPosition;
+            cuedSong = null;
+            activate(new MediaPlayer(openMedia(song)), song, false, System.nanoTime(), position);
+            return;
+        }
+        if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED) {
+            mediaPlayer.play();
+            if (fadingPlayer != null) {
+                long paused = System.nanoTime() + fadePausedNanos;
+                fadePausedNanos = 0;
+                fadeStartNanos += paused;
+                fadePlannedStartNanos += paused;
+                lastFadeUpdateNanos += paused;
+                fadingPlayer.play();
+                fadeTimer.start();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        cancelCrossfade();
+        if (cuedSong != null) {
+            cuedSong = null;
+            status.set(MediaPlayer.Status.STOPPED);
+            setPosition(Duration.ZERO);
+        }
+        if (mediaPlayer != null) {
+            mediaPlayer.stop();
+            setPosition(Duration.ZERO);
+        }
+    }
+
+    @Override
+    public void seek(Duration target) {
+        if (cuedSong != null) {
+            cuedPosition = target;
+            setPosition(target);
+            return;
+        }
+        if (mediaPlayer != null && mediaPlayer.getStatus() != MediaPlayer.Status.UNKNOWN) {
+            cancelCrossfade();
+            // Times the backend's seek call; MediaPlayer has no seek-completed callback
+            long started = System.nanoTime();
+            mediaPlayer.seek(target);
+            PlayerEvents.seeked(ENGINE, currentSong.getFilePath(), (long) target.toMillis(), System.nanoTime() - started);
+            // Show the target right away rather than on the next tick
+            setPosition(target);
+        }
+    }
+
+    @Override
+    public void setVolume(double value) {
+        this.volume = Math.max(0.0, Math.min(1.0, value));
+        applyVolume();
+    }
+
+    @Override
+    public double getVolume() {
+        return volume;
+    }
+
+    @Override
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+        applyVolume();
+    }
+
+    @Override
+    public boolean isMuted() {
+        return muted;
+    }
+
+    @Override
+    public void setLoudnessNormalization(boolean enabled) {
+        this.normalization = enabled;
+        applyVolume();
+    }
+
+    @Override
+    public boolean isLoudnessNormalization() {
+        return normalization;
+    }
+
+    private void applyVolume() {
+        if (mediaPlayer != null) {
+            double fade = fadingPlayer != null ? CrossfadeStats.fadeIn(fadeProgress) : 1.0;
+            mediaPlayer.setVolume(volumeFor(currentSong) * fade);
+        }
+        if (fadingPlayer != null) {
+            fadingPlayer.setVolume(volumeFor(fadingSong) * CrossfadeStats.fadeOut(fadeProgress));
+        }
+    }
+
+    /**
+     * MediaPlayer volume stops at 1, so a track that needs boosting only
+     * gets as much as the volume setting leaves room for.
+     */
+    private double volumeFor(Song song) {
+        double gain = normalization && song != null ? song.getNormalizationGain() : 1.0;
+        return muted ? 0.0 : Math.min(1.0, volume * gain);
+    }
+
+    @Override
+    public void setTrackCache(TrackCache cache) {
+        this.trackCache = cache;
+    }
+
+    @Override
+    public void setGapless(boolean gapless) {
+        this.gapless = gapless;
+        if (!gapless && crossfadeNanos == 0) {
+            discardPreloaded();
+        }
+    }
+
+    @Override
+    public boolean isGapless() {
+        return gapless;
+    }
+
+    @Override
+    public void setCrossfade(Duration duration) {
+        double millis = duration == null ? 0 : Math.max(0, Math.min(MAX_CROSSFADE.toMillis(), duration.toMillis()));
+        this.crossfadeNanos = (long) (millis * 1_000_000);
+    }
+
+    @Override
+    public Duration getCrossfade() {
+        return Duration.millis(crossfadeNanos / 1_000_000.0);
+    }
+
+    @Override
+    public CrossfadeStats getCrossfadeStats() {
+        return crossfadeStats;
+    }
+
+    @Override
+    public void clearPreloaded() {
+        discardPreloaded();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> currentTimeProperty() {
+        return currentTime;
+    }
+
+    @Override
+    public ReadOnlyLongProperty positionMillisProperty() {
+        return positionMillis;
+    }
+
+    @Override
+    public void setPositionUpdateRate(double hz) {
+        this.positionUpdateRate = Math.max(1.0, Math.min(60.0, hz));
+        if (positionTicker != null) {
+            boolean running = positionTicker.getStatus() == Animation.Status.RUNNING;
+            positionTicker.stop();
+            positionTicker = null;
+            if (running) {
+                ticker().play();
+            }
+        }
+    }
+
+    @Override
+    public double getPositionUpdateRate() {
+        return positionUpdateRate;
+    }
+
+    @Override
+    public PositionStats getPositionStats() {
+        return positionStats;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> totalDurationProperty() {
+        return totalDuration;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<MediaPlayer.Status> statusProperty() {
+        return status;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> transitionLatencyProperty() {
+        return transitionLatency;
+    }
+
+    @Override
+    public void setOnEndOfMedia(Runnable handler) {
+        this.onEndOfMedia = handler;
+    }
+
+    @Override
+    public void setOnMetadataAvailable(Consumer<Song> handler) {
+        this.onMetadataAvailable = handler;
+    }
+
+    @Override
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        this.spectrum = analyzer;
+        if (mediaPlayer != null) {
+            attachSpectrum(mediaPlayer);
+        }
+    }
+
+    private void attachSpectrum(MediaPlayer player) {
+        SpectrumAnalyzer analyzer = spectrum;
+        if (analyzer == null) {
+            player.setAudioSpectrumListener(null);
+            return;
+        }
+        player.setAudioSpectrumNumBands(SPECTRUM_BANDS);
+        player.setAudioSpectrumInterval(SPECTRUM_INTERVAL_SECONDS);
+        player.setAudioSpectrumThreshold((int) SpectrumAnalyzer.MIN_DB);
+        player.setAudioSpectrumListener((timestamp, duration, magnitudes, phases) -> {
+            // The outgoing player of a crossfade keeps reporting until disposed
+            if (player == mediaPlayer) {
+                analyzer.setMagnitudes(magnitudes, magnitudes.length, SPECTRUM_SAMPLE_RATE);
+            }
+        });
+    }
+
+    @Override
+    public void setOnArtworkAvailable(BiConsumer<Song, Image> handler) {
+        this.onArtworkAvailable = handler;
+    }
+
+    @Override
+    public void setNextTrackProvider(Supplier<Song> provider) {
+        this.nextTrackProvider = provider;
+    }
+
+    @Override
+    public void setOnTrackAdvanced(Consumer<Song> handler) {
+        this.onTrackAdvanced = handler;
+    }
+
+    private void extractMetadata(Song song, Media media) {
+        media.getMetadata().addListener((javafx.collections.MapChangeListener<String, Object>) change -> {
+            if (change.wasAdded()) {
+                applyMetadataEntry(song, change.getKey(), change.getValueAdded());
+                applyArtwork(song, change.getKey(), change.getValueAdded());
+                if (onMetadataAvailable != null) {
+                    onMetadataAvailable.accept(song);
+                }
+            }
+        });
+        // Also read any metadata already available
+        for (var entry : media.getMetadata().entrySet()) {
+            applyMetadataEntry(song, entry.getKey(), entry.getValue());
+            applyArtwork(song, entry.getKey(), entry.getValue());
+        }
+        if (!media.getMetadata().isEmpty() && onMetadataAvailable != null) {
+            onMetadataAvailable.accept(song);
+        }
+    }
+
+    static void applyMetadataEntry(Song song, String key, Object value) {
+        if (value == null) return;
+        switch (key) {
+            case "title" -> song.setTitle(value.toString());
+            case "artist" -> song.setArtist(value.toString());
+            case "album" -> song.setAlbum(value.toString());
+        }
+    }
+
+    private void applyArtwork(Song song, String key, Object value) {
+        if (key.equals("image") && value instanceof Image image && onArtworkAvailable != null) {
+            onArtworkAvailable.accept(song, image);
+        }
+    }
+
+    private void discardPreloaded() {
+        if (fadingPlayer == null) {
+            // A scheduled fade has nothing to fade into any more
+            cancelCrossfade();
+        }
+        if (nextPlayer != null) {
+            nextPlayer.dispose();
+            nextPlayer = null;
+            nextSong = null;
+            nextReady = false;
+        }
+    }
+
+    private void disposeCurrentPlayer() {
+        cancelCrossfade();
+        cuedSong = null;
+        if (mediaPlayer != null) {
+            mediaPlayer.stop();
+            mediaPlayer.dispose();
+            mediaPlayer = null;
+            if (positionTicker != null) {
+                positionTicker.stop();
+            }
+            setPosition(Duration.ZERO);
+            totalDuration.set(Duration.ZERO);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        discardPreloaded();
+        disposeCurrentPlayer();
+    }
+}
@@ -0,0 +1,283 @@
+package com.musicplayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Persistent path-keyed index of known tracks with their mtime, size and
+ * metadata, so startup can show the library without re-walking it and a
+ * rescan only re-reads files that actually changed.
+ *
+ * <p>On disk the directory part of each path and the artist/album strings are
+ * stored once in a string table and referenced by position. Each track also
+ * records whether its tags have been read yet, so tracks saved before that
+ * are read again on the next launch.
+ */
+public class LibraryIndex {
+
+    private static final int MAGIC = 0x4D504958; // "MPIX"
+    private static final int VERSION = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final Set<Path> roots = new LinkedHashSet<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public LibraryIndex(Path file) {
+        this.file = file;
+    }
+
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".musicplayer", "library.idx");
+    }
+
+    /**
+     * Reads the index from disk and returns its tracks in the order they were
+     * saved. A missing file yields an empty library.
+     */
+    public List<Song> load() throws IOException {
+        List<Song> songs = new ArrayList<>();
+        load(Integer.MAX_VALUE, Integer.MAX_VALUE, songs::addAll);
+        return songs;
+    }
+
+    /**
+     * Reads the index in saved order, handing tracks to {@code sink} as they
+     * are read: the first {@code firstChunk} on their own so they can be shown
+     * right away, then {@code chunkSize} at a time.
+     */
+    public void load(int firstChunk, int chunkSize, Consumer<List<Song>> sink) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        int limit = firstChunk;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            // Version 1 had no loudness and version 2 no parsed-tags flag;
+            // what they lack is analyzed or parsed again
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                return;
+            }
+            int rootCount = in.readInt();
+            synchronized (roots) {
+                for (int i = 0; i < rootCount; i++) {
+                    roots.add(Path.of(in.readUTF()));
+                }
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String dir = strings[in.readInt()];
+                String path = dir + File.separatorChar + in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                String title = in.readUTF();
+                String artist = strings[in.readInt()];
+                String album = strings[in.readInt()];
+                long durationMillis = in.readLong();
+                float loudness = version >= 2 ? in.readFloat() : Float.NaN;
+                float peak = version >= 2 ? in.readFloat() : 0f;
+                boolean tagsParsed = version >= 3 && in.readBoolean();
+
+                Song song = new Song(path);
+                if (!title.isEmpty()) song.setTitle(title);
+                song.setArtist(artist);
+                song.setAlbum(album);
+                song.setDurationMillis(durationMillis);
+                song.setLoudness(loudness, peak);
+                if (tagsParsed) song.setTagsParsed();
+                entries.put(path, new Entry(song, modified, size));
+                songs.add(song);
+                if (songs.size() == limit) {
+                    sink.accept(songs);
+                    songs = new ArrayList<>();
+                    limit = chunkSize;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!songs.isEmpty()) {
+            sink.accept(songs);
+        }
+    }
+
+    /**
+     * Writes {@code songs} in order, replacing the index file atomically.
+     * Tracks that are not in the index are skipped.
+     */
+    public synchronized void save(List<Song> songs) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<Entry> ordered = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            Entry entry = entries.get(song.getFilePath());
+            if (entry == null || entry.song != song) continue;
+            ordered.add(entry);
+            intern(parentOf(song.getFilePath()), stringIds, strings);
+            intern(song.getArtist(), stringIds, strings);
+            intern(song.getAlbum(), stringIds, strings);
+        }
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<Path> rootsSnapshot = getRoots();
+            out.writeInt(rootsSnapshot.size());
+            for (Path root : rootsSnapshot) {
+                out.writeUTF(root.toString());
+            }
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                out.writeUTF(s);
+            }
+            out.writeInt(ordered.size());
+            for (Entry entry : ordered) {
+                Song song = entry.song;
+                String path = song.getFilePath();
+                String dir = parentOf(path);
+                out.writeInt(stringIds.get(dir));
+                out.writeUTF(path.substring(Math.min(path.length(), dir.length() + 1)));
+                out.writeLong(entry.modified);
+                out.writeLong(entry.size);
+                out.writeUTF(song.hasExplicitTitle() ? song.getTitle() : "");
+                out.writeInt(stringIds.get(song.getArtist()));
+                out.writeInt(stringIds.get(song.getAlbum()));
+                out.writeLong(song.getDurationMillis());
+                out.writeFloat((float) song.getLoudness());
+                out.writeFloat((float) song.getPeak());
+                out.writeBoolean(song.hasParsedTags());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void addRoot(Path root) {
+        synchronized (roots) {
+            roots.add(root.toAbsolutePath());
+        }
+    }
+
+    public List<Path> getRoots() {
+        synchronized (roots) {
+            return new ArrayList<>(roots);
+        }
+    }
+
+    /**
+     * Returns the indexed song for {@code path} if its mtime and size still
+     * match, or {@code null} when the file is new or has changed.
+     */
+    public Song lookup(String path, long modified, long size) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.modified == modified && entry.size == size) {
+            return entry.song;
+        }
+        return null;
+    }
+
+    public Song get(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? null : entry.song;
+    }
+
+    public void put(Song song, long modified, long size) {
+        entries.put(song.getFilePath(), new Entry(song, modified, size));
+    }
+
+    /**
+     * Indexes a new song unless another one already has its path, and
+     * returns that one; {@code null} means {@code song} was added.
+     */
+    public Song putIfAbsent(Song song, long modified, long size) {
+        Entry existing = entries.putIfAbsent(song.getFilePath(), new Entry(song, modified, size));
+        return existing == null ? null : existing.song;
+    }
+
+    public Song remove(String path) {
+        Entry entry = entries.remove(path);
+        return entry == null ? null : entry.song;
+    }
+
+    /**
+     * Drops entries under {@code scannedRoots} whose paths are not in
+     * {@code seen} and returns their songs.
+     */
+    public List<Song> retainSeen(List<Path> scannedRoots, Set<String> seen) {
+        List<Song> removed = new ArrayList<>();
+        for (var it = entries.entrySet().iterator(); it.hasNext(); ) {
+            var e = it.next();
+            String path = e.getKey();
+            if (!seen.contains(path) && isUnder(path, scannedRoots)) {
+                removed.add(e.getValue().song);
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    /** Drops the entries whose paths {@code gone} accepts and returns their songs. */
+    public List<Song> removeIf(Predicate<String> gone) {
+        List<Song> removed = new ArrayList<>();
+        for (var it = entries.entrySet().iterator(); it.hasNext(); ) {
+            var e = it.next();
+            if (gone.test(e.getKey())) {
+                removed.add(e.getValue().song);
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static boolean isUnder(String path, List<Path> roots) {
+        Path p = Path.of(path);
+        for (Path root : roots) {
+            if (p.startsWith(root)) return true;
+        }
+        return false;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf(File.separatorChar);
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static void intern(String s, Map<String, Integer> ids, List<String> strings) {
+        if (!ids.containsKey(s)) {
+            ids.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private record Entry(Song song, long modified, long size) {
+    }
+}
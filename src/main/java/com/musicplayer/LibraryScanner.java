@@ -0,0 +1,302 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Walks directory trees on virtual threads, one task per directory, and hands
+ * the audio files it finds back in batches. Callbacks run on scanner threads;
+ * callers marshal them onto the FX thread themselves.
+ *
+ * <p>With a {@link LibraryIndex} attached the scan is incremental: files whose
+ * mtime and size match the index are skipped, changed files are reported
+ * through {@code onChanged}, and indexed files that have disappeared from the
+ * scanned roots are reported through {@code onRemoved} once the walk ends.
+ * Only directories that were listed in full count: a root on an unmounted
+ * drive, or a folder that could not be read, keeps its indexed tracks.
+ */
+public class LibraryScanner {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_CONCURRENT_DIRECTORIES = 32;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore ioPermits = new Semaphore(MAX_CONCURRENT_DIRECTORIES);
+    private final AtomicInteger pendingDirectories = new AtomicInteger();
+    private final AtomicLong filesFound = new AtomicLong();
+    private final List<Song> buffer = new ArrayList<>();
+    private final Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+    // Directories whose every entry was read, so their unseen index entries are really gone
+    private final Set<String> listedDirectories = ConcurrentHashMap.newKeySet();
+    // Every directory met, listed or not
+    private final Set<String> foundDirectories = ConcurrentHashMap.newKeySet();
+    private final LibraryIndex index;
+
+    private volatile boolean cancelled = false;
+    private boolean started = false;
+    private long startNanos;
+    // Guarded by buffer: when the batch being collected got its first file
+    private long batchStartNanos;
+    private List<Path> roots = List.of();
+
+    private Consumer<List<Song>> onBatch;
+    private Consumer<List<Song>> onChanged;
+    private Consumer<List<Song>> onRemoved;
+    private LongConsumer onProgress;
+    private Runnable onFinished;
+
+    public LibraryScanner() {
+        this(null);
+    }
+
+    public LibraryScanner(LibraryIndex index) {
+        this.index = index;
+    }
+
+    public synchronized void start(List<Path> roots) {
+        if (started) {
+            throw new IllegalStateException("Scanner already started");
+        }
+        started = true;
+        startNanos = System.nanoTime();
+        this.roots = List.copyOf(roots);
+        // Hold one pending slot until every root is submitted so a fast root
+        // cannot complete the scan before the others are queued.
+        pendingDirectories.incrementAndGet();
+        for (Path root : roots) {
+            submitDirectory(root);
+        }
+        directoryDone();
+    }
+
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getFilesFound() {
+        return filesFound.get();
+    }
+
+    public void setOnBatch(Consumer<List<Song>> handler) {
+        this.onBatch = handler;
+    }
+
+    public void setOnChanged(Consumer<List<Song>> handler) {
+        this.onChanged = handler;
+    }
+
+    public void setOnRemoved(Consumer<List<Song>> handler) {
+        this.onRemoved = handler;
+    }
+
+    public void setOnProgress(LongConsumer handler) {
+        this.onProgress = handler;
+    }
+
+    public void setOnFinished(Runnable handler) {
+        this.onFinished = handler;
+    }
+
+    private void submitDirectory(Path dir) {
+        pendingDirectories.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    ioPermits.acquire();
+                    try {
+                        scanDirectory(dir);
+                    } finally {
+                        ioPermits.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    directoryDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            directoryDone();
+        }
+    }
+
+    private void scanDirectory(Path dir) {
+        if (cancelled) return;
+        List<FoundFile> audioFiles = new ArrayList<>();
+        boolean[] listed = {false};
+        boolean[] entryFailed = {false};
+        try {
+            // Depth 1 so each subdirectory becomes its own task; the visitor
+            // still gets attributes for every entry from a single stat.
+            Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (cancelled) return FileVisitResult.TERMINATE;
+                    if (attrs.isDirectory()) {
+                        foundDirectories.add(file.toAbsolutePath().toString());
+                        submitDirectory(file);
+                    } else if (attrs.isRegularFile() && MusicPlayerApp.isAudioFile(file.getFileName().toString())) {
+                        audioFiles.add(new FoundFile(file.toAbsolutePath().toString(),
+                                attrs.lastModifiedTime().toMillis(), attrs.size()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // Also dir itself when it is missing or unreadable, e.g. an unmounted drive
+                    entryFailed[0] = true;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path visited, IOException exc) {
+                    listed[0] = exc == null;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Cannot scan " + dir + ": " + e.getMessage());
+            return;
+        }
+        if (index != null && listed[0] && !entryFailed[0] && !cancelled) {
+            listedDirectories.add(dir.toAbsolutePath().toString());
+        }
+        if (audioFiles.isEmpty() || cancelled) return;
+
+        audioFiles.sort(Comparator.comparing(FoundFile::path));
+        List<Song> songs = new ArrayList<>(audioFiles.size());
+        List<Song> changed = new ArrayList<>();
+        for (FoundFile file : audioFiles) {
+            if (index == null) {
+                songs.add(new Song(file.path));
+                continue;
+            }
+            seenPaths.add(file.path);
+            if (index.lookup(file.path, file.modified, file.size) != null) {
+                continue;
+            }
+            Song known = index.get(file.path);
+            if (known != null) {
+                changed.add(known);
+                index.put(known, file.modified, file.size);
+            } else {
+                Song song = new Song(file.path);
+                // A LibraryWatcher may have just indexed the same new file
+                if (index.putIfAbsent(song, file.modified, file.size) == null) {
+                    songs.add(song);
+                }
+            }
+        }
+        filesFound.addAndGet(audioFiles.size());
+        if (!changed.isEmpty() && onChanged != null) {
+            onChanged.accept(changed);
+        }
+        if (!songs.isEmpty()) {
+            enqueue(songs);
+        }
+    }
+
+    private void enqueue(List<Song> songs) {
+        List<Song> ready = null;
+        long batchStarted = 0;
+        synchronized (buffer) {
+            if (buffer.isEmpty()) {
+                batchStartNanos = System.nanoTime();
+            }
+            buffer.addAll(songs);
+            if (buffer.size() >= BATCH_SIZE) {
+                ready = new ArrayList<>(buffer);
+                buffer.clear();
+                batchStarted = batchStartNanos;
+            }
+        }
+        if (ready != null) {
+            deliver(ready, batchStarted);
+        }
+    }
+
+    private void directoryDone() {
+        if (pendingDirectories.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        List<Song> remaining;
+        long batchStarted;
+        synchronized (buffer) {
+            remaining = new ArrayList<>(buffer);
+            buffer.clear();
+            batchStarted = batchStartNanos;
+        }
+        if (!remaining.isEmpty() && !cancelled) {
+            deliver(remaining, batchStarted);
+        }
+        if (index != null && !cancelled) {
+            List<Song> removed = index.removeIf(this::isGone);
+            if (!removed.isEmpty() && onRemoved != null) {
+                onRemoved.accept(removed);
+            }
+        }
+        executor.shutdown();
+        PlayerEvents.libraryScan(roots.size(), filesFound.get(), cancelled, System.nanoTime() - startNanos);
+        if (onFinished != null) {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * Whether an indexed track is no longer there: its folder was listed
+     * without it, or the nearest listed folder above it no longer has the
+     * subfolder it was in. Tracks under a folder that couldn't be listed,
+     * or outside every listed root, stay.
+     */
+    private boolean isGone(String path) {
+        if (seenPaths.contains(path)) return false;
+        Path dir = Path.of(path).getParent();
+        if (dir != null && listedDirectories.contains(dir.toString())) return true;
+        for (; dir != null; dir = dir.getParent()) {
+            if (foundDirectories.contains(dir.toString())) return false;
+            Path parent = dir.getParent();
+            if (parent != null && listedDirectories.contains(parent.toString())) return true;
+        }
+        return false;
+    }
+
+    private void deliver(List<Song> batch, long batchStartNanos) {
+        PlayerEvents.scanBatch(batch.size(), System.nanoTime() - batchStartNanos);
+        if (onBatch != null) {
+            onBatch.accept(batch);
+        }
+        if (onProgress != null) {
+            onProgress.accept(filesFound.get());
+        }
+    }
+
+    private record FoundFile(String path, long modified, long size) {
+    }
+}
@@ -0,0 +1,308 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the library in step with its folders while the player runs: every
+ * directory under the watched roots is registered with a {@link WatchService},
+ * and the thread waiting on it only wakes for events. Events are collected
+ * until the tree has been quiet for {@link #SETTLE_MILLIS} (or at most
+ * {@link #MAX_DELAY_MILLIS} into a long storm), then each touched path is
+ * looked at once and the result is reported as one added, one changed and
+ * one removed list, so a big copy becomes a single playlist mutation.
+ * Callbacks run on the watcher thread.
+ *
+ * <p>New files are classified against the {@link LibraryIndex} the same way
+ * {@link LibraryScanner} does, so the two can run at once.
+ */
+public class LibraryWatcher {
+
+    static final long SETTLE_MILLIS = 500;
+    static final long MAX_DELAY_MILLIS = 3000;
+
+    private final LibraryIndex index;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean closed = false;
+
+    // Watcher thread only: what changed since the last flush
+    private final Set<Path> touched = new HashSet<>();
+    private final Set<Path> rewalk = new HashSet<>();
+    private final Set<Path> overflowed = new HashSet<>();
+    private int events;
+    private long firstEventNanos;
+    private long lastEventNanos;
+
+    private Consumer<List<Song>> onAdded;
+    private Consumer<List<Song>> onChanged;
+    private Consumer<List<Song>> onRemoved;
+
+    public LibraryWatcher(LibraryIndex index) {
+        this.index = index;
+    }
+
+    public void setOnAdded(Consumer<List<Song>> handler) {
+        this.onAdded = handler;
+    }
+
+    public void setOnChanged(Consumer<List<Song>> handler) {
+        this.onChanged = handler;
+    }
+
+    public void setOnRemoved(Consumer<List<Song>> handler) {
+        this.onRemoved = handler;
+    }
+
+    /**
+     * Starts watching {@code root} and every directory below it. The tree is
+     * registered on a background thread; the caller doesn't wait for it.
+     */
+    public synchronized void watch(Path root) {
+        if (closed) return;
+        if (watchService == null) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                System.err.println("Library watching disabled: " + e.getMessage());
+                closed = true;
+                return;
+            }
+            thread = new Thread(this::run, "library-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Path dir = root.toAbsolutePath();
+        Thread.ofVirtual().name("library-watch-register").start(() -> walk(dir, null));
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Cannot close library watch: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Number of directories currently registered. */
+    public int getWatchedDirectories() {
+        return keys.size();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                WatchKey key;
+                if (events == 0) {
+                    key = watchService.take();
+                } else {
+                    long now = System.nanoTime();
+                    long deadline = Math.min(lastEventNanos + TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS),
+                            firstEventNanos + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS));
+                    key = deadline > now ? watchService.poll(deadline - now, TimeUnit.NANOSECONDS) : null;
+                }
+                if (key != null) {
+                    collect(key);
+                } else {
+                    flush();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path dir = directories.get(key);
+        long now = System.nanoTime();
+        if (events == 0) {
+            firstEventNanos = now;
+        }
+        lastEventNanos = now;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            events++;
+            if (dir == null) continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were dropped; only a walk can tell what happened
+                rewalk.add(dir);
+                overflowed.add(dir);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // Files may land in it before it is registered, so it gets walked
+                rewalk.add(path);
+            } else {
+                touched.add(path);
+            }
+        }
+        if (!key.reset()) {
+            // The directory is gone; its parent reports the deletion
+            directories.remove(key);
+        }
+    }
+
+    private void flush() {
+        long startNanos = System.nanoTime();
+        List<Song> added = new ArrayList<>();
+        List<Song> changed = new ArrayList<>();
+        List<Song> removed = new ArrayList<>();
+        List<Path> gone = new ArrayList<>();
+
+        List<Path> walked = new ArrayList<>();
+        for (Path dir : rewalk.stream().sorted().toList()) {
+            if (isUnderAny(dir, walked)) continue;
+            walked.add(dir);
+            Set<String> seen = overflowed.contains(dir) ? new HashSet<>() : null;
+            walk(dir, found -> {
+                if (seen != null) seen.add(found.path);
+                classify(found, added, changed);
+            });
+            if (seen != null) {
+                removed.addAll(index.retainSeen(List.of(dir), seen));
+            }
+        }
+        for (Path path : touched) {
+            if (isUnderAny(path, walked)) continue;
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isRegularFile() && MusicPlayerApp.isAudioFile(path.getFileName().toString())) {
+                    classify(new FoundFile(path.toString(), attrs.lastModifiedTime().toMillis(), attrs.size()),
+                            added, changed);
+                }
+            } catch (NoSuchFileException e) {
+                Song song = index.remove(path.toString());
+                if (song != null) {
+                    removed.add(song);
+                } else if (keys.remove(path) != null) {
+                    gone.add(path);
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot read " + path + ": " + e.getMessage());
+            }
+        }
+        if (!gone.isEmpty()) {
+            // One pass over the index for all deleted directories together
+            keys.keySet().removeIf(dir -> isUnderAny(dir, gone));
+            removed.addAll(index.retainSeen(gone, Set.of()));
+        }
+
+        int eventCount = events;
+        touched.clear();
+        rewalk.clear();
+        overflowed.clear();
+        events = 0;
+
+        added.sort(Comparator.comparing(Song::getFilePath));
+        if (!added.isEmpty() && onAdded != null) {
+            onAdded.accept(added);
+        }
+        if (!changed.isEmpty() && onChanged != null) {
+            onChanged.accept(changed);
+        }
+        if (!removed.isEmpty() && onRemoved != null) {
+            onRemoved.accept(removed);
+        }
+        PlayerEvents.libraryWatch(eventCount, added.size(), changed.size(), removed.size(),
+                System.nanoTime() - firstEventNanos, System.nanoTime() - startNanos);
+    }
+
+    private void classify(FoundFile file, List<Song> added, List<Song> changed) {
+        if (index.lookup(file.path, file.modified, file.size) != null) {
+            return;
+        }
+        Song known = index.get(file.path);
+        if (known != null) {
+            index.put(known, file.modified, file.size);
+            changed.add(known);
+        } else {
+            Song song = new Song(file.path);
+            if (index.putIfAbsent(song, file.modified, file.size) == null) {
+                added.add(song);
+            }
+        }
+    }
+
+    /** Registers every directory under {@code root} and reports its audio files, if asked to. */
+    private void walk(Path root, Consumer<FoundFile> files) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (closed) return FileVisitResult.TERMINATE;
+                    try {
+                        register(dir);
+                    } catch (IOException e) {
+                        // e.g. out of inotify watches; the files are still reported
+                        System.err.println("Cannot watch " + dir + ": " + e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (files != null && attrs.isRegularFile()
+                            && MusicPlayerApp.isAudioFile(file.getFileName().toString())) {
+                        files.accept(new FoundFile(file.toString(), attrs.lastModifiedTime().toMillis(), attrs.size()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (ClosedWatchServiceException e) {
+            // Closed while registering
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + root + ": " + e.getMessage());
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        if (keys.containsKey(dir)) return;
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, dir);
+        keys.put(dir, key);
+    }
+
+    private static boolean isUnderAny(Path path, List<Path> dirs) {
+        for (Path dir : dirs) {
+            if (path.startsWith(dir)) return true;
+        }
+        return false;
+    }
+
+    private record FoundFile(String path, long modified, long size) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.musicplayer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link AudioSink} on a {@link SourceDataLine} of the default mixer.
+ */
+final class LineSink implements AudioSink {
+
+    private SourceDataLine line;
+    private byte[] staging = new byte[0];
+
+    @Override
+    public void open(AudioFormat format, int bufferBytes) throws IOException {
+        close();
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferBytes);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            line = null;
+            throw new IOException("No audio output for " + format + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        line.write(data, offset, length);
+    }
+
+    @Override
+    public void write(ByteBuffer data) {
+        // SourceDataLine only takes arrays; reuse one rather than allocating per write
+        int length = data.remaining();
+        if (staging.length < length) {
+            staging = new byte[length];
+        }
+        data.get(staging, 0, length);
+        line.write(staging, 0, length);
+    }
+
+    @Override
+    public void write(ByteBuffer data, float gain) {
+        // The volume is applied in the staging copy, so the mapping is still read only once
+        int length = data.remaining();
+        if (staging.length < length) {
+            staging = new byte[length];
+        }
+        PcmAudioEngine.copyWithGain(data, staging, gain);
+        line.write(staging, 0, length);
+    }
+
+    @Override
+    public void start() {
+        if (line != null) line.start();
+    }
+
+    @Override
+    public void stop() {
+        if (line != null) line.stop();
+    }
+
+    @Override
+    public void flush() {
+        if (line != null) line.flush();
+    }
+
+    @Override
+    public long getFramePosition() {
+        return line != null ? line.getLongFramePosition() : 0;
+    }
+
+    @Override
+    public void close() {
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+}
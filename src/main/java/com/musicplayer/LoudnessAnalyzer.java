@@ -0,0 +1,189 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Integrated loudness and sample peak of a track, measured the EBU R128 /
+ * ITU-R BS.1770 way: K-weighting, mean square over 400 ms blocks with 75%
+ * overlap, an absolute gate at -70 LUFS and a relative gate 10 LU below
+ * the ungated level. Channels are weighted equally, which is exact for
+ * mono and stereo.
+ *
+ * <p>The file is streamed once with a fixed-size buffer; memory beyond that
+ * is one double per 100 ms of audio.
+ */
+final class LoudnessAnalyzer {
+
+    /** Level tracks are normalized to, as in ReplayGain 2.0. */
+    static final double REFERENCE_LUFS = -18.0;
+
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;
+    private static final int READ_BYTES = 64 * 1024;
+
+    /** Integrated loudness in LUFS (negative infinity for silence) and sample peak from 0 to 1. */
+    record Result(double integratedLufs, double peak, long durationMillis) {
+    }
+
+    private LoudnessAnalyzer() {
+    }
+
+    /**
+     * Measures the file in one pass. Only WAV and AIFF can be decoded here;
+     * other files fail with an IOException.
+     */
+    static Result analyze(Path path) throws IOException {
+        try (MappedPcmReader reader = MappedPcmReader.open(path)) {
+            int channels = reader.getFormat().getChannels();
+            double sampleRate = reader.getFormat().getSampleRate();
+            KWeighting[] filters = new KWeighting[channels];
+            for (int c = 0; c < channels; c++) {
+                filters[c] = new KWeighting(sampleRate);
+            }
+            // Energy of each 100 ms step; 400 ms blocks are sums of four
+            int subBlockFrames = Math.max(1, (int) Math.round(sampleRate / 10));
+            double[] subBlocks = new double[64];
+            int subBlockCount = 0;
+            double sum = 0;
+            int framesInSubBlock = 0;
+            int peak = 0;
+
+            boolean direct = reader.isPcm16LittleEndian();
+            byte[] scratch = direct ? null : new byte[READ_BYTES];
+            int frameBytes = 2 * channels;
+            while (true) {
+                ByteBuffer buf;
+                if (direct) {
+                    buf = reader.read(READ_BYTES);
+                } else {
+                    buf = ByteBuffer.wrap(scratch, 0, reader.read16(scratch, 0, scratch.length))
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                }
+                int end = buf.limit();
+                if (end == 0) break;
+                for (int i = 0; i + frameBytes <= end; i += frameBytes) {
+                    for (int c = 0; c < channels; c++) {
+                        int sample = buf.getShort(i + 2 * c);
+                        int magnitude = Math.abs(sample);
+                        if (magnitude > peak) peak = magnitude;
+                        double y = filters[c].process(sample / 32768.0);
+                        sum += y * y;
+                    }
+                    if (++framesInSubBlock == subBlockFrames) {
+                        if (subBlockCount == subBlocks.length) {
+                            subBlocks = Arrays.copyOf(subBlocks, subBlockCount * 2);
+                        }
+                        subBlocks[subBlockCount++] = sum / subBlockFrames;
+                        sum = 0;
+                        framesInSubBlock = 0;
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Interrupted");
+                }
+            }
+            return new Result(gatedLoudness(subBlocks, subBlockCount), Math.min(1.0, peak / 32768.0),
+                    (long) (reader.getFrameLength() * 1000 / sampleRate));
+        }
+    }
+
+    private static double gatedLoudness(double[] subBlocks, int count) {
+        int blocks = count - SUB_BLOCKS_PER_BLOCK + 1;
+        if (blocks <= 0) return Double.NEGATIVE_INFINITY;
+        double[] energies = new double[blocks];
+        for (int j = 0; j < blocks; j++) {
+            double e = 0;
+            for (int k = 0; k < SUB_BLOCKS_PER_BLOCK; k++) {
+                e += subBlocks[j + k];
+            }
+            energies[j] = e / SUB_BLOCKS_PER_BLOCK;
+        }
+        double absoluteGate = energyOf(ABSOLUTE_GATE_LUFS);
+        double relativeGate = meanAbove(energies, absoluteGate) * Math.pow(10, RELATIVE_GATE_LU / 10);
+        return loudnessOf(meanAbove(energies, Math.max(absoluteGate, relativeGate)));
+    }
+
+    private static double meanAbove(double[] energies, double threshold) {
+        double sum = 0;
+        int n = 0;
+        for (double e : energies) {
+            if (e > threshold) {
+                sum += e;
+                n++;
+            }
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+
+    private static double loudnessOf(double energy) {
+        return energy <= 0 ? Double.NEGATIVE_INFINITY : -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double energyOf(double lufs) {
+        return Math.pow(10, (lufs + 0.691) / 10);
+    }
+
+    /**
+     * Linear gain that brings a track measured at {@code integratedLufs} to
+     * {@link #REFERENCE_LUFS}, lowered so its peak doesn't clip. Unknown or
+     * silent tracks get 1.
+     */
+    static double gainFor(double integratedLufs, double peak) {
+        if (!Double.isFinite(integratedLufs)) return 1.0;
+        double gain = Math.pow(10, (REFERENCE_LUFS - integratedLufs) / 20);
+        return peak > 0 ? Math.min(gain, 1.0 / peak) : gain;
+    }
+
+    /**
+     * The BS.1770 pre-filter: a high shelf for the head's acoustic effect
+     * followed by a high-pass, both as biquads with coefficients derived for
+     * the track's sample rate.
+     */
+    private static final class KWeighting {
+        private final double b0, b1, b2, a1, a2;
+        private final double ha1, ha2;
+        private double x1, x2, y1, y2;
+        private double hx1, hx2, hy1, hy2;
+
+        KWeighting(double sampleRate) {
+            double f0 = 1681.974450955533;
+            double gainDb = 3.999843853973347;
+            double q = 0.7071752369554196;
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double vh = Math.pow(10, gainDb / 20);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            double a0 = 1 + k / q + k * k;
+            b0 = (vh + vb * k / q + k * k) / a0;
+            b1 = 2 * (k * k - vh) / a0;
+            b2 = (vh - vb * k / q + k * k) / a0;
+            a1 = 2 * (k * k - 1) / a0;
+            a2 = (1 - k / q + k * k) / a0;
+
+            f0 = 38.13547087602444;
+            q = 0.5003270373238773;
+            k = Math.tan(Math.PI * f0 / sampleRate);
+            a0 = 1 + k / q + k * k;
+            ha1 = 2 * (k * k - 1) / a0;
+            ha2 = (1 - k / q + k * k) / a0;
+        }
+
+        double process(double x) {
+            double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            double z = y - 2 * hx1 + hx2 - ha1 * hy1 - ha2 * hy2;
+            hx2 = hx1;
+            hx1 = y;
+            hy2 = hy1;
+            hy1 = z;
+            return z;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Measures the loudness of songs that haven't been analyzed yet, one track
+ * per task on a fixed-size pool of low-priority threads. Results are applied
+ * to the songs on the publish executor in coalesced drains, like
+ * {@link MetadataPipeline}, and the library index persists them.
+ *
+ * <p>Throughput is kept as tracks and seconds of audio per second of wall
+ * time while the pipeline is busy.
+ */
+public class LoudnessPipeline {
+
+    private static final int MAX_APPLY_PER_DRAIN = 2000;
+
+    private final ExecutorService workers;
+    private final Executor publisher;
+    private final Queue<Result> results = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong busySinceNanos = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong audioMillis = new AtomicLong();
+
+    private Consumer<List<Song>> onApplied;
+    private Runnable onIdle;
+
+    public LoudnessPipeline(int parallelism, Executor publisher) {
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "loudness");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.publisher = publisher;
+    }
+
+    /** Queues the songs that can be decoded and have no loudness yet. */
+    public void submit(List<Song> songs) {
+        List<Song> queued = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (Song song : songs) {
+            String path = song.getFilePath();
+            if (!song.hasLoudness() && WaveformCache.isSupported(path)) {
+                queued.add(song);
+                paths.add(path);
+            }
+        }
+        if (queued.isEmpty()) return;
+        // Counted up front so a fast worker can't see the queue run dry mid-submit
+        if (pending.getAndAdd(queued.size()) == 0) {
+            busySinceNanos.set(System.nanoTime());
+        }
+        for (int i = 0; i < queued.size(); i++) {
+            Song song = queued.get(i);
+            String path = paths.get(i);
+            workers.execute(() -> analyze(song, path));
+        }
+    }
+
+    public void setOnApplied(Consumer<List<Song>> handler) {
+        this.onApplied = handler;
+    }
+
+    /** Called on the publish executor whenever the queue has run dry. */
+    public void setOnIdle(Runnable handler) {
+        this.onIdle = handler;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public long getAnalyzed() {
+        return analyzed.get();
+    }
+
+    public double getTracksPerSecond() {
+        double seconds = busySeconds();
+        return seconds > 0 ? analyzed.get() / seconds : 0;
+    }
+
+    /** Seconds of audio measured per second of wall time. */
+    public double getRealTimeFactor() {
+        double seconds = busySeconds();
+        return seconds > 0 ? audioMillis.get() / 1000.0 / seconds : 0;
+    }
+
+    private double busySeconds() {
+        long nanos = busyNanos.get();
+        if (pending.get() > 0) {
+            nanos += System.nanoTime() - busySinceNanos.get();
+        }
+        return nanos / 1e9;
+    }
+
+    private void analyze(Song song, String path) {
+        try {
+            if (Thread.currentThread().isInterrupted()) return;
+            try {
+                LoudnessAnalyzer.Result result = LoudnessAnalyzer.analyze(Path.of(path));
+                results.add(new Result(song, result));
+                analyzed.incrementAndGet();
+                audioMillis.addAndGet(result.durationMillis());
+            } catch (IOException | RuntimeException e) {
+                // Undecodable here: the track plays at its own level
+            }
+        } finally {
+            if (pending.decrementAndGet() == 0) {
+                busyNanos.addAndGet(System.nanoTime() - busySinceNanos.get());
+            }
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            publisher.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<Song> applied = new ArrayList<>();
+        Result result;
+        while (applied.size() < MAX_APPLY_PER_DRAIN && (result = results.poll()) != null) {
+            result.song.setLoudness(result.loudness.integratedLufs(), result.loudness.peak());
+            applied.add(result.song);
+        }
+        if (!results.isEmpty()) {
+            scheduleDrain();
+        }
+        if (!applied.isEmpty() && onApplied != null) {
+            onApplied.accept(applied);
+        }
+        if (pending.get() == 0 && results.isEmpty() && onIdle != null) {
+            onIdle.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tracks, %.1f tracks/s, %.0fx real time",
+                analyzed.get(), getTracksPerSecond(), getRealTimeFactor());
+    }
+
+    private record Result(Song song, LoudnessAnalyzer.Result loudness) {
+    }
+}
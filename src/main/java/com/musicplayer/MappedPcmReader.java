@@ -0,0 +1,254 @@
+package com.musicplayer;
+
+import javafx.util.Duration;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams uncompressed PCM out of WAV (including RF64) and AIFF/AIFC files
+ * through memory-mapped windows. The chunk layout is parsed once on open,
+ * seeking is offset arithmetic, and {@link #read(int)} hands out slices of
+ * the mapping so audio is never copied onto the heap. Not thread-safe.
+ */
+final class MappedPcmReader implements Closeable {
+
+    static final long DEFAULT_WINDOW_BYTES = 64L << 20;
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final FileChannel channel;
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long dataStart;
+    private final long dataBytes;
+    private final long windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    private MappedPcmReader(FileChannel channel, AudioFormat format, long dataStart, long dataBytes, long windowBytes) {
+        this.channel = channel;
+        this.format = format;
+        this.frameSize = format.getFrameSize();
+        this.dataStart = dataStart;
+        this.dataBytes = dataBytes - dataBytes % frameSize;
+        this.windowBytes = Math.max(frameSize, windowBytes - windowBytes % frameSize);
+    }
+
+    static MappedPcmReader open(Path path) throws IOException {
+        return open(path, DEFAULT_WINDOW_BYTES);
+    }
+
+    /** Fails with an IOException unless the file is uncompressed PCM WAV or AIFF. */
+    static MappedPcmReader open(Path path, long windowBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = MetadataReader.readAt(channel, 0, 12);
+            String magic = head.limit() == 12 ? chunkId(head, 0) : "";
+            String type = head.limit() == 12 ? chunkId(head, 8) : "";
+            if ((magic.equals("RIFF") || magic.equals("RF64")) && type.equals("WAVE")) {
+                return openWave(channel, windowBytes);
+            }
+            if (magic.equals("FORM") && (type.equals("AIFF") || type.equals("AIFC"))) {
+                return openAiff(channel, type.equals("AIFC"), windowBytes);
+            }
+            throw new IOException("Not a WAV or AIFF file");
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException("Malformed audio file", e);
+        }
+    }
+
+    private static MappedPcmReader openWave(FileChannel channel, long windowBytes) throws IOException {
+        long size = channel.size();
+        long pos = 12;
+        long rf64DataBytes = -1;
+        AudioFormat format = null;
+        while (pos + 8 <= size) {
+            ByteBuffer header = MetadataReader.readAt(channel, pos, 8).order(ByteOrder.LITTLE_ENDIAN);
+            String id = chunkId(header, 0);
+            long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            switch (id) {
+                case "ds64" -> rf64DataBytes = MetadataReader.readAt(channel, body, 16).order(ByteOrder.LITTLE_ENDIAN).getLong(8);
+                case "fmt " -> format = waveFormat(MetadataReader.readAt(channel, body, 26).order(ByteOrder.LITTLE_ENDIAN));
+                case "data" -> {
+                    if (format == null) throw new IOException("WAV data before fmt chunk");
+                    long bytes = rf64DataBytes >= 0 && chunkSize == 0xFFFFFFFFL ? rf64DataBytes : chunkSize;
+                    return new MappedPcmReader(channel, format, body, Math.min(bytes, size - body), windowBytes);
+                }
+                default -> {
+                }
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("WAV file has no data chunk");
+    }
+
+    private static AudioFormat waveFormat(ByteBuffer fmt) throws IOException {
+        int tag = fmt.getShort(0) & 0xFFFF;
+        if (tag == WAVE_FORMAT_EXTENSIBLE && fmt.limit() >= 26) {
+            tag = fmt.getShort(24) & 0xFFFF;
+        }
+        int channels = fmt.getShort(2) & 0xFFFF;
+        int sampleRate = fmt.getInt(4);
+        int bits = fmt.getShort(14) & 0xFFFF;
+        if (tag != WAVE_FORMAT_PCM) throw new IOException("WAV is not uncompressed PCM");
+        return pcmFormat(sampleRate, bits, channels, bits > 8, false);
+    }
+
+    private static MappedPcmReader openAiff(FileChannel channel, boolean compressed, long windowBytes) throws IOException {
+        long size = channel.size();
+        long pos = 12;
+        AudioFormat format = null;
+        long frames = 0;
+        while (pos + 8 <= size) {
+            ByteBuffer header = MetadataReader.readAt(channel, pos, 8);
+            String id = chunkId(header, 0);
+            long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            switch (id) {
+                case "COMM" -> {
+                    ByteBuffer comm = MetadataReader.readAt(channel, body, 22);
+                    int channels = comm.getShort(0);
+                    frames = comm.getInt(2) & 0xFFFFFFFFL;
+                    int bits = comm.getShort(6);
+                    double sampleRate = MetadataReader.extendedToDouble(comm, 8);
+                    boolean littleEndian = false;
+                    if (compressed) {
+                        String compression = comm.limit() >= 22 ? chunkId(comm, 18) : "NONE";
+                        if (compression.equals("sowt")) {
+                            littleEndian = true;
+                        } else if (!compression.equals("NONE")) {
+                            throw new IOException("AIFC compression " + compression + " is not supported");
+                        }
+                    }
+                    format = pcmFormat((float) sampleRate, bits, channels, true, !littleEndian);
+                }
+                case "SSND" -> {
+                    if (format == null) throw new IOException("AIFF sound data before COMM chunk");
+                    long offset = MetadataReader.readAt(channel, body, 4).getInt(0) & 0xFFFFFFFFL;
+                    long start = body + 8 + offset;
+                    long bytes = Math.min(Math.min(chunkSize - 8 - offset, size - start), frames * format.getFrameSize());
+                    return new MappedPcmReader(channel, format, start, bytes, windowBytes);
+                }
+                default -> {
+                }
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("AIFF file has no sound data");
+    }
+
+    private static AudioFormat pcmFormat(float sampleRate, int bits, int channels, boolean signed, boolean bigEndian)
+            throws IOException {
+        if (channels < 1 || sampleRate <= 0 || (bits != 8 && bits != 16 && bits != 24 && bits != 32)) {
+            throw new IOException("Unsupported PCM layout: " + bits + " bit, " + channels + " channels");
+        }
+        return new AudioFormat(sampleRate, bits, channels, signed, bigEndian);
+    }
+
+    AudioFormat getFormat() {
+        return format;
+    }
+
+    /** True when the samples can be played as they are (16-bit signed little-endian). */
+    boolean isPcm16LittleEndian() {
+        return format.getSampleSizeInBits() == 16 && !format.isBigEndian();
+    }
+
+    long getFrameLength() {
+        return dataBytes / frameSize;
+    }
+
+    long getFramePosition() {
+        return position / frameSize;
+    }
+
+    void seekFrame(long frame) {
+        position = Math.max(0, Math.min(frame, getFrameLength())) * frameSize;
+    }
+
+    /** Moves to the frame at {@code target}; constant time at any file size. */
+    void seek(Duration target) {
+        seekFrame((long) (target.toSeconds() * format.getFrameRate()));
+    }
+
+    /**
+     * Returns the next whole frames, at most {@code maxBytes}, as a read-only
+     * view of the mapping; empty at the end of the data.
+     */
+    ByteBuffer read(int maxBytes) throws IOException {
+        int count = (int) Math.min(maxBytes, dataBytes - position);
+        if (count <= 0) return ByteBuffer.allocate(0);
+        MappedByteBuffer mapped = windowAt(position);
+        int offset = (int) (position - windowStart);
+        count = Math.min(count, mapped.capacity() - offset);
+        count -= count % frameSize;
+        position += count;
+        return mapped.slice(offset, count).order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads whole frames converted to 16-bit signed little-endian into
+     * {@code dst}, returning the number of bytes written (0 at the end).
+     */
+    int read16(byte[] dst, int offset, int maxBytes) throws IOException {
+        int channels = format.getChannels();
+        int bytesPerSample = frameSize / channels;
+        ByteBuffer src = read(maxBytes / (2 * channels) * frameSize);
+        boolean bigEndian = format.isBigEndian();
+        boolean unsigned8 = bytesPerSample == 1 && format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED;
+        int out = offset;
+        for (int i = 0, end = src.limit(); i < end; i += bytesPerSample) {
+            int hi;
+            int lo;
+            if (bytesPerSample == 1) {
+                hi = unsigned8 ? (src.get(i) & 0xFF) - 128 : src.get(i);
+                lo = 0;
+            } else if (bigEndian) {
+                hi = src.get(i);
+                lo = src.get(i + 1);
+            } else {
+                hi = src.get(i + bytesPerSample - 1);
+                lo = src.get(i + bytesPerSample - 2);
+            }
+            dst[out++] = (byte) lo;
+            dst[out++] = (byte) hi;
+        }
+        return out - offset;
+    }
+
+    private MappedByteBuffer windowAt(long dataPosition) throws IOException {
+        if (window == null || dataPosition < windowStart || dataPosition >= windowStart + window.capacity()) {
+            long length = Math.min(windowBytes, dataBytes - dataPosition);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + dataPosition, length);
+            windowStart = dataPosition;
+        }
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private static String chunkId(ByteBuffer buf, int pos) {
+        char[] id = new char[4];
+        for (int i = 0; i < 4; i++) {
+            id[i] = (char) (buf.get(pos + i) & 0xFF);
+        }
+        return new String(id);
+    }
+}
@@ -0,0 +1,128 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Fills in song metadata in the background using {@link MetadataReader}.
+ * Files are parsed on a fixed-size pool; results are queued and applied to
+ * the songs on the publish executor (the FX thread in the app) in one drain
+ * per scheduling, never one callback per song or field.
+ */
+public class MetadataPipeline {
+
+    private static final int CHUNK_SIZE = 64;
+    private static final int MAX_APPLY_PER_DRAIN = 2000;
+
+    private final ExecutorService workers;
+    private final Executor publisher;
+    private final Queue<Result> results = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    private Consumer<List<Song>> onApplied;
+
+    public MetadataPipeline(int parallelism, Executor publisher) {
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "metadata-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        this.publisher = publisher;
+    }
+
+    public static int defaultParallelism() {
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Queues the songs whose tags haven't been read yet. Paths are captured
+     * on the calling thread so workers never touch the songs themselves.
+     */
+    public void submit(List<Song> songs) {
+        List<Song> unparsed = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            if (!song.hasParsedTags()) {
+                unparsed.add(song);
+            }
+        }
+        for (int from = 0; from < unparsed.size(); from += CHUNK_SIZE) {
+            List<Song> chunk = List.copyOf(unparsed.subList(from, Math.min(unparsed.size(), from + CHUNK_SIZE)));
+            String[] paths = new String[chunk.size()];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = chunk.get(i).getFilePath();
+            }
+            workers.execute(() -> readChunk(chunk, paths));
+        }
+    }
+
+    public void setOnApplied(Consumer<List<Song>> handler) {
+        this.onApplied = handler;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void readChunk(List<Song> chunk, String[] paths) {
+        long started = System.nanoTime();
+        int parsed = 0;
+        for (int i = 0; i < paths.length; i++) {
+            if (Thread.currentThread().isInterrupted()) return;
+            MetadataReader.TrackMetadata metadata = null;
+            try {
+                metadata = MetadataReader.read(Path.of(paths[i]));
+                parsed++;
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or malformed file: keep the filename-derived title
+            }
+            // Failures are queued too, so the file isn't read again on every launch
+            results.add(new Result(chunk.get(i), metadata));
+        }
+        PlayerEvents.metadataBatch(paths.length, parsed, System.nanoTime() - started);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            publisher.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<Song> applied = new ArrayList<>();
+        Result result;
+        while (applied.size() < MAX_APPLY_PER_DRAIN && (result = results.poll()) != null) {
+            if (result.metadata != null) {
+                apply(result.song, result.metadata);
+            }
+            result.song.setTagsParsed();
+            applied.add(result.song);
+        }
+        if (!results.isEmpty()) {
+            scheduleDrain();
+        }
+        if (!applied.isEmpty() && onApplied != null) {
+            onApplied.accept(applied);
+        }
+    }
+
+    static void apply(Song song, MetadataReader.TrackMetadata metadata) {
+        if (metadata.title() != null) song.setTitle(metadata.title());
+        if (metadata.artist() != null) song.setArtist(metadata.artist());
+        if (metadata.album() != null) song.setAlbum(metadata.album());
+        if (metadata.durationMillis() > 0) song.setDurationMillis(metadata.durationMillis());
+    }
+
+    private record Result(Song song, MetadataReader.TrackMetadata metadata) {
+    }
+}
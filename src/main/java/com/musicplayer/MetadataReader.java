@@ -0,0 +1,597 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads title, artist, album and duration straight from file headers without
+ * going through JavaFX media. Only the tag and header regions are read:
+ * ID3v2/ID3v1 and the first MPEG frame for MP3, the ADTS frame headers or the
+ * MP4 box tree for AAC, and the chunk table for WAV and AIFF.
+ * {@link #readPicture} separately pulls out embedded cover art.
+ */
+public final class MetadataReader {
+
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int MAX_TAG_BYTES = 512 * 1024;
+    private static final int MAX_BOX_BYTES = 64 * 1024;
+    private static final int MAX_PICTURE_BYTES = 16 * 1024 * 1024;
+    private static final int FRONT_COVER = 3;
+    private static final int ADTS_SAMPLE_FRAMES = 32;
+
+    private static final int[] MPEG_SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+    private static final int[][] MPEG_BITRATES = {
+            // V1 L1, V1 L2, V1 L3, V2 L1, V2 L2/L3 (kbps)
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}};
+
+    private MetadataReader() {
+    }
+
+    public record TrackMetadata(String title, String artist, String album, long durationMillis) {
+    }
+
+    public static TrackMetadata read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * The embedded cover image (JPEG or PNG bytes), preferring the front
+     * cover, or {@code null} when the file has none: ID3v2 APIC/PIC frames in
+     * MP3, WAV and AIFF, and the {@code covr} atom in MP4.
+     */
+    public static byte[] readPicture(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = readAt(channel, 0, (int) Math.min(16, size));
+            if (head.remaining() < 12) return null;
+            if (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WAVE")) {
+                return findChunkPicture(channel, size, ByteOrder.LITTLE_ENDIAN);
+            } else if (startsWith(head, 0, "FORM") && (startsWith(head, 8, "AIFF") || startsWith(head, 8, "AIFC"))) {
+                return findChunkPicture(channel, size, ByteOrder.BIG_ENDIAN);
+            } else if (startsWith(head, 4, "ftyp")) {
+                return findMp4Cover(channel, 0, size);
+            } else if (startsWith(head, 0, "ID3")) {
+                int tagSize = syncSafe(head, 6) + 10;
+                return findId3Picture(readAt(channel, 0, Math.min(tagSize, MAX_PICTURE_BYTES)));
+            }
+            return null;
+        }
+    }
+
+    static TrackMetadata read(FileChannel channel) throws IOException {
+        Builder meta = new Builder();
+        long size = channel.size();
+        ByteBuffer head = readAt(channel, 0, (int) Math.min(HEAD_BYTES, size));
+        if (head.remaining() < 12) {
+            return meta.build();
+        }
+
+        if (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WAVE")) {
+            readRiff(channel, size, meta);
+        } else if (startsWith(head, 0, "FORM") && (startsWith(head, 8, "AIFF") || startsWith(head, 8, "AIFC"))) {
+            readAiff(channel, size, meta);
+        } else if (startsWith(head, 4, "ftyp")) {
+            readMp4(channel, 0, size, meta);
+        } else {
+            long audioBytes = size - (hasId3v1(channel) ? 128 : 0);
+            if (startsWith(head, 0, "ID3")) {
+                int tagSize = syncSafe(head, 6) + 10 + ((head.get(5) & 0x10) != 0 ? 10 : 0);
+                readId3v2(tagSize <= head.limit() ? head : readAt(channel, 0, Math.min(tagSize, MAX_TAG_BYTES)), meta);
+                // Re-base the header window on the first byte of audio
+                if (tagSize + 4 > head.limit()) {
+                    head = readAt(channel, tagSize, (int) Math.max(0, Math.min(HEAD_BYTES, size - tagSize)));
+                } else {
+                    head = head.position(tagSize).slice();
+                }
+                audioBytes -= tagSize;
+            }
+            if (!readAdts(head, audioBytes, meta)) {
+                readMpeg(head, audioBytes, meta);
+            }
+            if (meta.missingTags()) {
+                readId3v1(channel, meta);
+            }
+        }
+        return meta.build();
+    }
+
+    // --- ID3 ---------------------------------------------------------------
+
+    private static void readId3v2(ByteBuffer tag, Builder meta) {
+        int major = tag.get(3) & 0xFF;
+        int flags = tag.get(5) & 0xFF;
+        int end = Math.min(tag.limit(), syncSafe(tag, 6) + 10);
+        int pos = 10;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            pos += major == 4 ? syncSafe(tag, pos) : tag.getInt(pos) + 4;
+        }
+        int idLength = major == 2 ? 3 : 4;
+        int headerLength = major == 2 ? 6 : 10;
+        while (pos + headerLength <= end) {
+            if (tag.get(pos) == 0) break;
+            String id = ascii(tag, pos, idLength);
+            int frameSize = id3FrameSize(tag, pos, major);
+            int dataStart = pos + headerLength;
+            if (frameSize <= 0 || dataStart + frameSize > end) break;
+            switch (id) {
+                case "TIT2", "TT2" -> meta.title(id3Text(tag, dataStart, frameSize));
+                case "TPE1", "TP1" -> meta.artist(id3Text(tag, dataStart, frameSize));
+                case "TALB", "TAL" -> meta.album(id3Text(tag, dataStart, frameSize));
+                case "TLEN", "TLE" -> {
+                    String millis = id3Text(tag, dataStart, frameSize);
+                    try {
+                        if (millis != null) meta.duration(Long.parseLong(millis.trim()));
+                    } catch (NumberFormatException ignored) {
+                        // Malformed TLEN; fall back to the frame headers
+                    }
+                }
+                default -> {
+                }
+            }
+            pos = dataStart + frameSize;
+        }
+    }
+
+    private static int id3FrameSize(ByteBuffer tag, int pos, int major) {
+        if (major == 2) {
+            return ((tag.get(pos + 3) & 0xFF) << 16) | ((tag.get(pos + 4) & 0xFF) << 8) | (tag.get(pos + 5) & 0xFF);
+        }
+        return major == 4 ? syncSafe(tag, pos + 4) : tag.getInt(pos + 4);
+    }
+
+    private static byte[] findId3Picture(ByteBuffer tag) {
+        if (tag.remaining() < 10 || !startsWith(tag, 0, "ID3")) return null;
+        int major = tag.get(3) & 0xFF;
+        int flags = tag.get(5) & 0xFF;
+        boolean tagUnsynchronized = (flags & 0x80) != 0 && major < 4;
+        int end = Math.min(tag.limit(), syncSafe(tag, 6) + 10);
+        int pos = 10;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            pos += major == 4 ? syncSafe(tag, pos) : tag.getInt(pos) + 4;
+        }
+        int headerLength = major == 2 ? 6 : 10;
+        byte[] first = null;
+        while (pos + headerLength <= end) {
+            if (tag.get(pos) == 0) break;
+            String id = ascii(tag, pos, major == 2 ? 3 : 4);
+            int frameSize = id3FrameSize(tag, pos, major);
+            int dataStart = pos + headerLength;
+            if (frameSize <= 0 || dataStart + frameSize > end) break;
+            if (id.equals("APIC") || id.equals("PIC")) {
+                byte[] frame = new byte[frameSize];
+                tag.get(dataStart, frame);
+                int frameFlags = major == 4 ? tag.get(pos + 9) & 0xFF : 0;
+                int skip = 0;
+                if ((frameFlags & 0x01) != 0) skip = 4; // Data length indicator
+                if (tagUnsynchronized || (frameFlags & 0x02) != 0) {
+                    frame = resynchronize(frame, skip);
+                    skip = 0;
+                }
+                int type = -1;
+                int offset = skip;
+                if (frame.length > offset + 1) {
+                    int encoding = frame[offset++];
+                    if (major == 2) {
+                        offset += 3; // Image format, e.g. "JPG"
+                    } else {
+                        while (offset < frame.length && frame[offset] != 0) offset++;
+                        offset++; // MIME type
+                    }
+                    if (offset < frame.length) {
+                        type = frame[offset++];
+                        offset = skipId3String(frame, offset, encoding);
+                    }
+                }
+                if (offset < frame.length) {
+                    byte[] picture = Arrays.copyOfRange(frame, offset, frame.length);
+                    if (type == FRONT_COVER) return picture;
+                    if (first == null) first = picture;
+                }
+            }
+            pos = dataStart + frameSize;
+        }
+        return first;
+    }
+
+    /** Past a terminated description: one zero byte, or two aligned ones for UTF-16. */
+    private static int skipId3String(byte[] frame, int offset, int encoding) {
+        boolean wide = encoding == 1 || encoding == 2;
+        while (offset < frame.length) {
+            if (wide) {
+                if (offset + 1 < frame.length && frame[offset] == 0 && frame[offset + 1] == 0) return offset + 2;
+                offset += 2;
+            } else {
+                if (frame[offset] == 0) return offset + 1;
+                offset++;
+            }
+        }
+        return offset;
+    }
+
+    /** Undoes ID3 unsynchronisation, which inserts a zero after every 0xFF. */
+    private static byte[] resynchronize(byte[] data, int from) {
+        byte[] out = new byte[data.length - from];
+        int length = 0;
+        for (int i = from; i < data.length; i++) {
+            out[length++] = data[i];
+            if (data[i] == (byte) 0xFF && i + 1 < data.length && data[i + 1] == 0) i++;
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    private static String id3Text(ByteBuffer buf, int start, int length) {
+        if (length < 2) return null;
+        Charset charset = switch (buf.get(start)) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        byte[] bytes = new byte[length - 1];
+        buf.get(start + 1, bytes);
+        String text = new String(bytes, charset);
+        int nul = text.indexOf('\0');
+        if (nul >= 0) text = text.substring(0, nul);
+        return text;
+    }
+
+    private static boolean hasId3v1(FileChannel channel) throws IOException {
+        long size = channel.size();
+        return size >= 128 && startsWith(readAt(channel, size - 128, 3), 0, "TAG");
+    }
+
+    private static void readId3v1(FileChannel channel, Builder meta) throws IOException {
+        long size = channel.size();
+        if (size < 128) return;
+        ByteBuffer tag = readAt(channel, size - 128, 128);
+        if (!startsWith(tag, 0, "TAG")) return;
+        meta.title(latin1(tag, 3, 30));
+        meta.artist(latin1(tag, 33, 30));
+        meta.album(latin1(tag, 63, 30));
+    }
+
+    // --- MPEG audio --------------------------------------------------------
+
+    private static void readMpeg(ByteBuffer head, long audioBytes, Builder meta) {
+        if (meta.hasDuration()) return;
+        int limit = head.limit() - 4;
+        for (int i = 0; i < limit; i++) {
+            int header = head.getInt(i);
+            if ((header & 0xFFE00000) != 0xFFE00000) continue;
+            int version = (header >>> 19) & 0x3;   // 0 = 2.5, 2 = 2, 3 = 1
+            int layer = (header >>> 17) & 0x3;     // 1 = III, 2 = II, 3 = I
+            int bitrateIndex = (header >>> 12) & 0xF;
+            int rateIndex = (header >>> 10) & 0x3;
+            if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) continue;
+
+            int sampleRate = MPEG_SAMPLE_RATES[rateIndex] >> (version == 3 ? 0 : version == 2 ? 1 : 2);
+            boolean v1 = version == 3;
+            int table = v1 ? 3 - layer : (layer == 3 ? 3 : 4);
+            int bitrate = MPEG_BITRATES[table][bitrateIndex] * 1000;
+            int samplesPerFrame = layer == 3 ? 384 : (layer == 1 && !v1) ? 576 : 1152;
+            boolean mono = ((header >>> 6) & 0x3) == 3;
+
+            int xing = i + 4 + (v1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+            long frames = -1;
+            if (xing + 12 <= head.limit() && (startsWith(head, xing, "Xing") || startsWith(head, xing, "Info"))) {
+                if ((head.getInt(xing + 4) & 1) != 0) frames = head.getInt(xing + 8) & 0xFFFFFFFFL;
+            } else if (i + 36 + 18 <= head.limit() && startsWith(head, i + 36, "VBRI")) {
+                frames = head.getInt(i + 36 + 14) & 0xFFFFFFFFL;
+            }
+            if (frames > 0) {
+                meta.duration(frames * samplesPerFrame * 1000 / sampleRate);
+            } else {
+                meta.duration((audioBytes - i) * 8000 / bitrate);
+            }
+            return;
+        }
+    }
+
+    // --- AAC ---------------------------------------------------------------
+
+    private static boolean readAdts(ByteBuffer head, long audioBytes, Builder meta) {
+        // ADTS streams start on a frame boundary, so only accept a header at
+        // the very start; scanning ahead would risk false syncs inside MP3 data
+        int pos = 0;
+        int limit = head.limit();
+        if (limit < 7 || !isAdtsHeader(head, 0)) return false;
+
+        int rateIndex = (head.get(pos + 2) >>> 2) & 0xF;
+        if (rateIndex >= ADTS_SAMPLE_RATES.length) return false;
+        int sampleRate = ADTS_SAMPLE_RATES[rateIndex];
+
+        // Average the first few frame lengths and extrapolate over the file
+        long bytes = 0;
+        int frames = 0;
+        while (frames < ADTS_SAMPLE_FRAMES && pos + 7 <= limit && isAdtsHeader(head, pos)) {
+            int frameLength = ((head.get(pos + 3) & 0x3) << 11) | ((head.get(pos + 4) & 0xFF) << 3)
+                    | ((head.get(pos + 5) & 0xE0) >>> 5);
+            if (frameLength < 7) break;
+            bytes += frameLength;
+            frames++;
+            pos += frameLength;
+        }
+        if (frames == 0 || (frames == 1 && pos < limit)) return false;
+        if (!meta.hasDuration()) {
+            long totalFrames = audioBytes * frames / bytes;
+            meta.duration(totalFrames * 1024 * 1000 / sampleRate);
+        }
+        return true;
+    }
+
+    private static boolean isAdtsHeader(ByteBuffer buf, int pos) {
+        return (buf.get(pos) & 0xFF) == 0xFF && (buf.get(pos + 1) & 0xF6) == 0xF0;
+    }
+
+    private static void readMp4(FileChannel channel, long start, long end, Builder meta) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end) {
+            ByteBuffer header = readAt(channel, pos, 16);
+            if (header.remaining() < 8) return;
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            String type = ascii(header, 4, 4);
+            int headerLength = 8;
+            if (boxSize == 1 && header.remaining() >= 16) {
+                boxSize = header.getLong(8);
+                headerLength = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - pos;
+            }
+            if (boxSize < headerLength) return;
+            long bodyStart = pos + headerLength;
+            long bodyEnd = Math.min(end, pos + boxSize);
+
+            switch (type) {
+                case "moov", "udta", "ilst" -> readMp4(channel, bodyStart, bodyEnd, meta);
+                case "meta" -> readMp4(channel, bodyStart + 4, bodyEnd, meta);
+                case "mvhd" -> {
+                    ByteBuffer body = readAt(channel, bodyStart, 32);
+                    int version = body.get(0);
+                    long timescale = version == 1 ? body.getInt(20) & 0xFFFFFFFFL : body.getInt(12) & 0xFFFFFFFFL;
+                    long duration = version == 1 ? body.getLong(24) : body.getInt(16) & 0xFFFFFFFFL;
+                    if (timescale > 0) meta.duration(duration * 1000 / timescale);
+                }
+                case "©nam", "©ART", "©alb" -> {
+                    int length = (int) Math.min(MAX_BOX_BYTES, bodyEnd - bodyStart);
+                    ByteBuffer body = readAt(channel, bodyStart, length);
+                    // Value lives in a child "data" box: size, type, 8 bytes of flags/locale
+                    if (body.remaining() > 16 && startsWith(body, 4, "data")) {
+                        int dataSize = Math.min(body.getInt(0), body.remaining());
+                        byte[] bytes = new byte[Math.max(0, dataSize - 16)];
+                        body.get(16, bytes);
+                        String text = new String(bytes, StandardCharsets.UTF_8);
+                        switch (type) {
+                            case "©nam" -> meta.title(text);
+                            case "©ART" -> meta.artist(text);
+                            default -> meta.album(text);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+            pos += boxSize;
+        }
+    }
+
+    private static byte[] findMp4Cover(FileChannel channel, long start, long end) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end) {
+            ByteBuffer header = readAt(channel, pos, 16);
+            if (header.remaining() < 8) return null;
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            String type = ascii(header, 4, 4);
+            int headerLength = 8;
+            if (boxSize == 1 && header.remaining() >= 16) {
+                boxSize = header.getLong(8);
+                headerLength = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - pos;
+            }
+            if (boxSize < headerLength) return null;
+            long bodyStart = pos + headerLength;
+            long bodyEnd = Math.min(end, pos + boxSize);
+
+            byte[] cover = switch (type) {
+                case "moov", "udta", "ilst" -> findMp4Cover(channel, bodyStart, bodyEnd);
+                case "meta" -> findMp4Cover(channel, bodyStart + 4, bodyEnd);
+                case "covr" -> {
+                    // First "data" child: size, type, 8 bytes of flags/locale, then the image
+                    ByteBuffer data = readAt(channel, bodyStart, 16);
+                    if (data.remaining() < 16 || !startsWith(data, 4, "data")) yield null;
+                    long dataSize = Math.min(data.getInt(0) & 0xFFFFFFFFL, bodyEnd - bodyStart);
+                    if (dataSize <= 16 || dataSize - 16 > MAX_PICTURE_BYTES) yield null;
+                    ByteBuffer image = readAt(channel, bodyStart + 16, (int) (dataSize - 16));
+                    byte[] bytes = new byte[image.remaining()];
+                    image.get(bytes);
+                    yield bytes;
+                }
+                default -> null;
+            };
+            if (cover != null) return cover;
+            pos += boxSize;
+        }
+        return null;
+    }
+
+    // --- RIFF / AIFF -------------------------------------------------------
+
+    /** The picture in an {@code id3 } chunk of a WAV or AIFF file. */
+    private static byte[] findChunkPicture(FileChannel channel, long size, ByteOrder order) throws IOException {
+        long pos = 12;
+        while (pos + 8 <= size) {
+            ByteBuffer header = readAt(channel, pos, 8).order(order);
+            String id = ascii(header, 0, 4);
+            long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            if (id.equalsIgnoreCase("id3 ")) {
+                return findId3Picture(readAt(channel, body, (int) Math.min(chunkSize, MAX_PICTURE_BYTES)));
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+        return null;
+    }
+
+    private static void readRiff(FileChannel channel, long size, Builder meta) throws IOException {
+        long pos = 12;
+        long byteRate = 0;
+        while (pos + 8 <= size) {
+            ByteBuffer header = readAt(channel, pos, 8).order(ByteOrder.LITTLE_ENDIAN);
+            String id = ascii(header, 0, 4);
+            long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            switch (id) {
+                case "fmt " -> byteRate = readAt(channel, body, 16).order(ByteOrder.LITTLE_ENDIAN).getInt(8) & 0xFFFFFFFFL;
+                case "data" -> {
+                    if (byteRate > 0) meta.duration(Math.min(chunkSize, size - body) * 1000 / byteRate);
+                }
+                case "LIST" -> {
+                    ByteBuffer list = readAt(channel, body, (int) Math.min(chunkSize, MAX_BOX_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+                    if (startsWith(list, 0, "INFO")) readRiffInfo(list, meta);
+                }
+                case "id3 ", "ID3 " -> readId3v2(readAt(channel, body, (int) Math.min(chunkSize, MAX_TAG_BYTES)), meta);
+                default -> {
+                }
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+    }
+
+    private static void readRiffInfo(ByteBuffer list, Builder meta) {
+        int pos = 4;
+        while (pos + 8 <= list.limit()) {
+            String id = ascii(list, pos, 4);
+            int length = list.getInt(pos + 4);
+            if (length < 0 || pos + 8 + length > list.limit()) return;
+            String value = latin1(list, pos + 8, length);
+            switch (id) {
+                case "INAM" -> meta.title(value);
+                case "IART" -> meta.artist(value);
+                case "IPRD" -> meta.album(value);
+                default -> {
+                }
+            }
+            pos += 8 + length + (length & 1);
+        }
+    }
+
+    private static void readAiff(FileChannel channel, long size, Builder meta) throws IOException {
+        long pos = 12;
+        while (pos + 8 <= size) {
+            ByteBuffer header = readAt(channel, pos, 8);
+            String id = ascii(header, 0, 4);
+            long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            switch (id) {
+                case "COMM" -> {
+                    ByteBuffer comm = readAt(channel, body, 18);
+                    long sampleFrames = comm.getInt(2) & 0xFFFFFFFFL;
+                    double sampleRate = extendedToDouble(comm, 8);
+                    if (sampleRate > 0) meta.duration((long) (sampleFrames * 1000 / sampleRate));
+                }
+                case "NAME" -> meta.title(latin1(readAt(channel, body, (int) Math.min(chunkSize, 1024)), 0, (int) Math.min(chunkSize, 1024)));
+                case "AUTH" -> meta.artist(latin1(readAt(channel, body, (int) Math.min(chunkSize, 1024)), 0, (int) Math.min(chunkSize, 1024)));
+                case "ID3 ", "id3 " -> readId3v2(readAt(channel, body, (int) Math.min(chunkSize, MAX_TAG_BYTES)), meta);
+                default -> {
+                }
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+    }
+
+    static double extendedToDouble(ByteBuffer buf, int pos) {
+        int exponent = ((buf.get(pos) & 0x7F) << 8) | (buf.get(pos + 1) & 0xFF);
+        long mantissa = buf.getLong(pos + 2);
+        if (exponent == 0 && mantissa == 0) return 0;
+        double value = (mantissa >>> 11) * Math.pow(2, exponent - 16383 - 52);
+        return (buf.get(pos) & 0x80) != 0 ? -value : value;
+    }
+
+    // --- helpers -----------------------------------------------------------
+
+    static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(0, length));
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) break;
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static int syncSafe(ByteBuffer buf, int pos) {
+        return ((buf.get(pos) & 0x7F) << 21) | ((buf.get(pos + 1) & 0x7F) << 14)
+                | ((buf.get(pos + 2) & 0x7F) << 7) | (buf.get(pos + 3) & 0x7F);
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int pos, String magic) {
+        if (pos + magic.length() > buf.limit()) return false;
+        for (int i = 0; i < magic.length(); i++) {
+            if (buf.get(pos + i) != (byte) magic.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static String ascii(ByteBuffer buf, int pos, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(pos, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String latin1(ByteBuffer buf, int pos, int length) {
+        int end = Math.min(pos + length, buf.limit());
+        int stop = pos;
+        while (stop < end && buf.get(stop) != 0) stop++;
+        return ascii(buf, pos, stop - pos).trim();
+    }
+
+    private static final class Builder {
+        private String title;
+        private String artist;
+        private String album;
+        private long durationMillis = -1;
+
+        void title(String value) {
+            if (title == null && value != null && !value.isBlank()) title = value.trim();
+        }
+
+        void artist(String value) {
+            if (artist == null && value != null && !value.isBlank()) artist = value.trim();
+        }
+
+        void album(String value) {
+            if (album == null && value != null && !value.isBlank()) album = value.trim();
+        }
+
+        void duration(long millis) {
+            if (durationMillis < 0 && millis > 0) durationMillis = millis;
+        }
+
+        boolean hasDuration() {
+            return durationMillis >= 0;
+        }
+
+        boolean missingTags() {
+            return title == null || artist == null || album == null;
+        }
+
+        TrackMetadata build() {
+            return new TrackMetadata(title, artist, album, durationMillis);
+        }
+    }
+}
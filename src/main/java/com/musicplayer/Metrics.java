@@ -0,0 +1,225 @@
+package com.musicplayer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * In-process counters, latency histograms and gauges, looked up by name.
+ * Updates are lock-free and cheap enough for hot paths; a gauge is read
+ * from its owner only when the metrics are. Reading renders everything as
+ * one log line ({@link #toString()}) or a JSON object ({@link #toJson()}),
+ * optionally served over HTTP on the loopback interface.
+ */
+public final class Metrics {
+
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Reports {@code value} under {@code name} whenever the metrics are read,
+     * for state its owner already keeps; replaces an earlier gauge of that name.
+     */
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Serves {@code /metrics} (the log line) and {@code /metrics.json} on
+     * {@code 127.0.0.1:port}. The server keeps the JVM alive until it is stopped.
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> respond(exchange, toString() + "\n", "text/plain"));
+        server.createContext("/metrics.json", exchange -> respond(exchange, toJson(), "application/json"));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"counters\":{");
+        String sep = "";
+        for (var e : counters.entrySet()) {
+            sb.append(sep).append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+            sep = ",";
+        }
+        sb.append("},\"histograms\":{");
+        sep = "";
+        for (var e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(sep).append('"').append(e.getKey()).append("\":{")
+                    .append("\"count\":").append(h.getCount())
+                    .append(",\"meanMs\":").append(millis(h.getMean()))
+                    .append(",\"p50Ms\":").append(millis(h.getPercentile(50)))
+                    .append(",\"p99Ms\":").append(millis(h.getPercentile(99)))
+                    .append(",\"maxMs\":").append(millis(h.getMax()))
+                    .append('}');
+            sep = ",";
+        }
+        sb.append("},\"gauges\":{");
+        sep = "";
+        for (var e : gauges.entrySet()) {
+            sb.append(sep).append('"').append(e.getKey()).append("\":").append(gaugeValue(e.getValue()));
+            sep = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    /**
+     * One line: {@code name=value} for counters and gauges,
+     * {@code name=count/p50/p99/max} in ms for histograms.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (var e : counters.entrySet()) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(e.getKey()).append('=').append(e.getValue().get());
+        }
+        for (var e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(e.getKey()).append('=').append(h.getCount())
+                    .append('/').append(millis(h.getPercentile(50)))
+                    .append('/').append(millis(h.getPercentile(99)))
+                    .append('/').append(millis(h.getMax()));
+        }
+        for (var e : gauges.entrySet()) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(e.getKey()).append('=').append(gaugeValue(e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /** Whole numbers as integers, anything else to two decimals; valid JSON either way. */
+    private static String gaugeValue(DoubleSupplier gauge) {
+        double value = gauge.getAsDouble();
+        if (!Double.isFinite(value)) {
+            return "0";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Durations in nanoseconds, bucketed by power of two with four linear
+     * sub-buckets each, so percentiles are within 25% of the true value.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /** Upper bound of the bucket holding the {@code p}th percentile, capped at the maximum. */
+        public long getPercentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(n * p / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
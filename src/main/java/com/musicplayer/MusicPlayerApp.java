@@ -1,44 +1,126 @@
 package com.musicplayer;
 
+import com.sun.net.httpserver.HttpServer;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.media.MediaPlayer;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import javafx.util.StringConverter;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
 
 public class MusicPlayerApp extends Application {
 
-    private final AudioEngine audioEngine = new AudioEngine();
+    private final AudioEngine audioEngine = createAudioEngine();
     private final ObservableList<Song> playlist = FXCollections.observableArrayList();
+    private final LibraryIndex libraryIndex = new LibraryIndex(LibraryIndex.defaultLocation());
+    private final LibraryWatcher libraryWatcher = new LibraryWatcher(libraryIndex);
+    private final MetadataPipeline metadataPipeline =
+            new MetadataPipeline(MetadataPipeline.defaultParallelism(), Platform::runLater);
+    private final FilteredList<Song> visibleSongs = new FilteredList<>(playlist);
+    private final SearchIndex searchIndex = new SearchIndex(TrackStore.getDefault());
+    private final PlaylistSorter playlistSorter = new PlaylistSorter(TrackStore.getDefault());
+    private final PlaybackOrder playbackOrder = new PlaybackOrder(TrackStore.getDefault());
+    private final WaveformCache waveformCache = new WaveformCache(WaveformCache.defaultLocation(),
+            Math.max(1, MetadataPipeline.defaultParallelism() / 2), Platform::runLater);
+    private final AlbumArtCache albumArt = new AlbumArtCache(AlbumArtCache.defaultLocation(),
+            AlbumArtCache.DEFAULT_BUDGET_BYTES, Math.max(1, MetadataPipeline.defaultParallelism() / 2),
+            Platform::runLater);
+    private final SpectrumAnalyzer spectrumAnalyzer = new SpectrumAnalyzer(SpectrumAnalyzer.DEFAULT_BANDS);
+    private final LoudnessPipeline loudnessPipeline =
+            new LoudnessPipeline(MetadataPipeline.defaultParallelism(), Platform::runLater);
+    private final SessionStore sessionStore =
+            new SessionStore(SessionStore.defaultLocation(), libraryIndex, Platform::runLater);
     private ListView<Song> playlistView;
+    private TextField searchField;
 
+    private ImageView trackArt;
     private Label titleLabel;
     private Label artistLabel;
     private Label albumLabel;
     private Label elapsedLabel;
     private Label totalLabel;
     private Slider seekSlider;
+    private WaveformView waveformView;
+    private SpectrumView spectrumView;
     private Slider volumeSlider;
+    private ComboBox<Integer> crossfadeBox;
     private Button playPauseButton;
     private Button muteButton;
+    private Label scanStatusLabel;
+
+    private LibraryScanner activeScanner;
+    // Roots added while a scan runs; scanned once it finishes
+    private final List<Path> queuedRoots = new ArrayList<>();
+    private PlaylistImporter activeImport;
+    private TrackCache trackCache;
+
+    private final ObjectProperty<Song> nowPlaying = new SimpleObjectProperty<>();
+    private final IntegerProperty metadataRevision = new SimpleIntegerProperty();
 
     private int currentIndex = -1;
+    private int preloadedIndex = -1;
+    private int playlistVersion = 0;
+    // Playlist index by song id, or -1; kept current by the playlist listener
+    private int[] playlistPositions = new int[0];
+    // How many rows list each song id, so removing one copy keeps the other findable
+    private int[] playlistCopies = new int[0];
+    private boolean reordering = false;
     private boolean seekSliderDragging = false;
-
+    private int displayedSecond = -1;
+
+    // Startup, in nanoseconds since launch: the library arrives in chunks,
+    // and the saved track is cued once its chunk is in
+    private boolean libraryLoaded = false;
+    private int loadedTracks = 0;
+    private Session restoring;
+    private long firstFrameNanos = -1;
+    private long firstScreenNanos = -1;
+    private long cuedNanos = -1;
+    private long firstAudioNanos = -1;
+
+    private final Metrics.Counter positionUpdates = Metrics.getDefault().counter("ui.position.updates");
+    private final Metrics.Counter labelUpdates = Metrics.getDefault().counter("ui.label.updates");
+    private final Metrics.Counter metadataRefreshes = Metrics.getDefault().counter("ui.metadata.refreshes");
+    private HttpServer metricsServer;
+
+    /**
+     * {@code frame} exits once the window is first drawn; {@code audio} then
+     * plays the restored or first track and exits once it is heard. Only
+     * these runs print the startup timings, for StartupBenchmark; otherwise
+     * they go to the flight recorder and the metrics alone.
+     */
+    private static final String STARTUP_EXIT = System.getProperty("musicplayer.startup.exit");
+    private static final int FIRST_SCREEN_TRACKS = 64;
+    private static final int LOAD_CHUNK_TRACKS = 4096;
     private static final String[] AUDIO_EXTENSIONS = {".mp3", ".wav", ".aac", ".aiff"};
+    private static final FileChooser.ExtensionFilter PLAYLIST_FILTER =
+            new FileChooser.ExtensionFilter("Playlists", "*.m3u", "*.m3u8", "*.pls", "*.xspf");
 
     @Override
     public void start(Stage stage) {
@@ -50,16 +132,259 @@ public class MusicPlayerApp extends Application {
         root.setBottom(buildControlsPanel());
 
         setupAudioEngineBindings();
+        setupMetadataPipeline();
+        setupLoudnessPipeline();
+        setupLibraryWatcher();
+        setupSessionStore();
 
         Scene scene = new Scene(root, 700, 500);
-        scene.getStylesheets().add("data:text/css," + getStylesheet());
+        // Resolves to the precompiled player.bss when the build produced one
+        scene.getStylesheets().add(MusicPlayerApp.class.getResource("player.css").toExternalForm());
         stage.setTitle("Music Player");
         stage.setScene(scene);
-        stage.setOnCloseRequest(e -> audioEngine.dispose());
+        stage.setOnCloseRequest(e -> {
+            cancelScan();
+            cancelImport();
+            libraryWatcher.close();
+            metadataPipeline.shutdown();
+            waveformCache.shutdown();
+            albumArt.shutdown();
+            loudnessPipeline.shutdown();
+            // Snapshot before the engine is disposed, which resets the position to zero
+            if (libraryLoaded) {
+                // Until then the playlist is partial; saving it would drop the rest
+                sessionStore.sessionChanged();
+                sessionStore.libraryChanged();
+            }
+            sessionStore.close();
+            audioEngine.dispose();
+            if (trackCache != null) {
+                trackCache.shutdown();
+            }
+            if (metricsServer != null) {
+                metricsServer.stop(0);
+            }
+        });
         stage.show();
+        watchFirstFrame(scene);
+
+        loadLibrary();
+    }
+
+    /** Records when the first frame was laid out, then starts what the window doesn't need to appear. */
+    private void watchFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            firstFrameNanos = StartupClock.sinceLaunchNanos();
+            if (STARTUP_EXIT != null) {
+                System.out.printf("First frame at %.0f ms after launch%n", firstFrameNanos / 1e6);
+            }
+            if ("frame".equals(STARTUP_EXIT)) {
+                exitAfterStartup();
+            }
+            Platform.runLater(() -> {
+                setupTrackCache();
+                setupMetrics();
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /** Ends a {@code -Dmusicplayer.startup.exit} measurement run without saving anything. */
+    private static void exitAfterStartup() {
+        System.out.flush();
+        System.exit(0);
+    }
+
+    /**
+     * The JavaFX media engine, or the PCM engine (WAV/AIFF only) with
+     * {@code -Dmusicplayer.engine=pcm}.
+     */
+    private static AudioEngine createAudioEngine() {
+        if ("pcm".equals(System.getProperty("musicplayer.engine"))) {
+            return PcmAudioEngine.create(AudioSink.line(), Platform::runLater);
+        }
+        return new FxAudioEngine();
+    }
+
+    private void setupTrackCache() {
+        try {
+            trackCache = TrackCache.createTemporary(TrackCache.DEFAULT_BUDGET_BYTES);
+            audioEngine.setTrackCache(trackCache);
+            Metrics metrics = Metrics.getDefault();
+            metrics.gauge("track-cache.tracks", trackCache::size);
+            metrics.gauge("track-cache.bytes", trackCache::getBytesUsed);
+            metrics.gauge("track-cache.hits", trackCache::getHits);
+            metrics.gauge("track-cache.misses", trackCache::getMisses);
+            metrics.gauge("track-cache.evictions", trackCache::getEvictions);
+        } catch (IOException e) {
+            System.err.println("Track cache disabled: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers the periodic flight recorder event and the engine's gauges
+     * and, with {@code -Dmusicplayer.metrics.port=N}, serves the metrics on localhost.
+     */
+    private void setupMetrics() {
+        PlayerEvents.registerPeriodic();
+        Metrics metrics = Metrics.getDefault();
+        PositionStats position = audioEngine.getPositionStats();
+        metrics.gauge("engine.position.updates", position::getUpdates);
+        metrics.gauge("engine.position.updates-per-second", position::getUpdatesPerSecond);
+        metrics.gauge("engine.position.allocated-bytes-per-update", position::getAllocatedBytesPerUpdate);
+        metrics.gauge("crossfade.max-gain-step", audioEngine.getCrossfadeStats()::getMaxGainStep);
+        metrics.gauge("album-art.images", albumArt::size);
+        metrics.gauge("album-art.missing", albumArt::missingSize);
+        metrics.gauge("album-art.bytes", albumArt::getBytesUsed);
+        metrics.gauge("album-art.hits", albumArt::getHits);
+        metrics.gauge("album-art.misses", albumArt::getMisses);
+        metrics.gauge("album-art.evictions", albumArt::getEvictions);
+        Integer port = Integer.getInteger("musicplayer.metrics.port");
+        if (port == null) return;
+        try {
+            metricsServer = Metrics.getDefault().serve(port);
+            System.out.println("Metrics on http://127.0.0.1:" + metricsServer.getAddress().getPort() + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Metrics endpoint disabled: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Persists the session and the library as they change. Nothing is marked
+     * dirty before the library has loaded, so a partial playlist is never saved.
+     */
+    private void setupSessionStore() {
+        sessionStore.setSessionSource(() -> {
+            Song song = currentIndex >= 0 && currentIndex < playlist.size() ? playlist.get(currentIndex) : null;
+            return new Session(song == null ? null : song.getFilePath(), currentIndex,
+                    song == null ? 0 : audioEngine.positionMillisProperty().get(), audioEngine.getVolume(),
+                    audioEngine.isMuted(), (long) audioEngine.getCrossfade().toMillis());
+        });
+        sessionStore.setPlaylistSource(() -> playlist);
+    }
+
+    private void sessionChanged() {
+        if (libraryLoaded) {
+            sessionStore.sessionChanged();
+        }
+    }
+
+    private void libraryChanged() {
+        if (libraryLoaded) {
+            sessionStore.libraryChanged();
+        }
+    }
+
+    /**
+     * Restores the saved session: settings first, then the library in chunks,
+     * a screenful before the rest, cueing the saved track as soon as the
+     * chunk holding it is in.
+     */
+    private void loadLibrary() {
+        Thread.ofVirtual().name("library-load").start(() -> {
+            Session session = sessionStore.load();
+            if (session != null) {
+                Platform.runLater(() -> restoreSettings(session));
+            }
+            try {
+                libraryIndex.load(FIRST_SCREEN_TRACKS, LOAD_CHUNK_TRACKS,
+                        chunk -> Platform.runLater(() -> addLoaded(chunk)));
+            } catch (IOException e) {
+                System.err.println("Cannot read library index: " + e.getMessage());
+            }
+            Platform.runLater(this::finishLoading);
+        });
+    }
+
+    private void restoreSettings(Session session) {
+        volumeSlider.setValue(session.volume());
+        if (session.muted() != audioEngine.isMuted()) {
+            toggleMute();
+        }
+        crossfadeBox.setValue((int) (session.crossfadeMillis() / 1000));
+        if (session.trackPath() != null) {
+            restoring = session;
+        }
+    }
+
+    private void addLoaded(List<Song> chunk) {
+        int first = loadedTracks;
+        // Tracks added while loading stay after the library
+        playlist.addAll(first, chunk);
+        if (currentIndex >= first) {
+            currentIndex += chunk.size();
+        }
+        loadedTracks += chunk.size();
+        if (firstScreenNanos < 0) {
+            firstScreenNanos = StartupClock.sinceLaunchNanos();
+        }
+        // Tracks saved before their tags were read still show file names
+        metadataPipeline.submit(chunk);
+        loudnessPipeline.submit(chunk);
+
+        int saved = restoring != null ? restoring.trackIndex() : -1;
+        if (saved >= first && saved < loadedTracks
+                && playlist.get(saved).getFilePath().equals(restoring.trackPath())) {
+            cueRestored(saved);
+        }
+    }
+
+    private void cueRestored(int index) {
+        Session session = restoring;
+        restoring = null;
+        if (nowPlaying.get() != null) return;
+        Song song = playlist.get(index);
+        audioEngine.cue(song, Duration.millis(session.positionMillis()));
+        showPlaying(index, song);
+        cuedNanos = StartupClock.sinceLaunchNanos();
+    }
+
+    private void finishLoading() {
+        if (restoring != null) {
+            // The playlist changed since the session was saved; find the track by path
+            for (int i = 0; i < loadedTracks; i++) {
+                if (playlist.get(i).getFilePath().equals(restoring.trackPath())) {
+                    cueRestored(i);
+                    break;
+                }
+            }
+            restoring = null;
+        }
+        libraryLoaded = true;
+        long loadNanos = StartupClock.sinceLaunchNanos();
+        PlayerEvents.startup(loadedTracks, firstFrameNanos, firstScreenNanos, cuedNanos, loadNanos);
+        if (STARTUP_EXIT != null) {
+            System.out.printf("Startup: first tracks shown at %.0f ms, session cued at %.0f ms, %d tracks loaded at %.0f ms%n",
+                    Math.max(0, firstScreenNanos) / 1e6, Math.max(0, cuedNanos) / 1e6, loadedTracks, loadNanos / 1e6);
+        }
+        if ("audio".equals(STARTUP_EXIT)) {
+            if (playlist.isEmpty()) {
+                System.out.println("No tracks to play");
+                exitAfterStartup();
+            }
+            togglePlayPause();
+            return;
+        }
+        List<Path> roots = libraryIndex.getRoots();
+        roots.forEach(libraryWatcher::watch);
+        if (!roots.isEmpty()) {
+            scanDirectories(roots);
+        }
     }
 
     private VBox buildTrackInfoBar() {
+        trackArt = new ImageView();
+        trackArt.setFitWidth(64);
+        trackArt.setFitHeight(64);
+        trackArt.setPreserveRatio(true);
+        trackArt.setSmooth(true);
+        StackPane trackArtFrame = new StackPane(trackArt);
+        trackArtFrame.getStyleClass().add("track-art");
+        trackArtFrame.setMinSize(64, 64);
+        trackArtFrame.setPrefSize(64, 64);
+
         titleLabel = new Label("No track loaded");
         titleLabel.getStyleClass().add("track-title");
 
@@ -78,18 +403,49 @@ public class MusicPlayerApp extends Application {
         Button addFolderBtn = new Button("Add Folder");
         addFolderBtn.setOnAction(e -> addFolder());
 
-        fileButtons.getChildren().addAll(addFilesBtn, addFolderBtn);
+        Button importBtn = new Button("Import Playlist");
+        importBtn.setOnAction(e -> importPlaylist());
+
+        Button exportBtn = new Button("Export Playlist");
+        exportBtn.setOnAction(e -> exportPlaylist());
+
+        scanStatusLabel = new Label("");
+        scanStatusLabel.getStyleClass().add("track-detail");
+
+        ComboBox<PlaylistSorter.SortKey> sortBox = new ComboBox<>();
+        sortBox.getItems().addAll(PlaylistSorter.SortKey.values());
+        sortBox.setPromptText("Sort by");
+        sortBox.setOnAction(e -> {
+            if (sortBox.getValue() != null) {
+                sortPlaylist(sortBox.getValue());
+            }
+        });
+
+        fileButtons.getChildren().addAll(scanStatusLabel, sortBox, addFilesBtn, addFolderBtn,
+                importBtn, exportBtn);
 
         HBox topRow = new HBox();
         topRow.setAlignment(Pos.CENTER_LEFT);
         HBox.setHgrow(fileButtons, Priority.ALWAYS);
 
         VBox trackInfo = new VBox(2, titleLabel, artistLabel, albumLabel);
+        trackInfo.setAlignment(Pos.CENTER_LEFT);
         HBox.setHgrow(trackInfo, Priority.ALWAYS);
 
-        topRow.getChildren().addAll(trackInfo, fileButtons);
+        topRow.setSpacing(12);
+        topRow.getChildren().addAll(trackArtFrame, trackInfo, fileButtons);
+
+        searchField = new TextField();
+        searchField.setPromptText("Search title, artist, album or path");
+        searchField.getStyleClass().add("search-field");
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> applySearch());
 
-        VBox topBar = new VBox(8, topRow);
+        spectrumView = new SpectrumView(spectrumAnalyzer);
+        StackPane spectrumPane = new StackPane(spectrumView);
+        spectrumPane.setMinHeight(40);
+        spectrumPane.setPrefHeight(40);
+
+        VBox topBar = new VBox(8, topRow, spectrumPane, searchField);
         topBar.setPadding(new Insets(12));
         topBar.getStyleClass().add("track-info-bar");
 
@@ -97,34 +453,46 @@ public class MusicPlayerApp extends Application {
     }
 
     private VBox buildPlaylistPanel() {
-        playlistView = new ListView<>(playlist);
-        playlistView.getStyleClass().add("playlist-view");
-        playlistView.setPlaceholder(new Label("Add files to get started"));
-
-        playlistView.setCellFactory(lv -> new ListCell<>() {
-            @Override
-            protected void updateItem(Song song, boolean empty) {
-                super.updateItem(song, empty);
-                if (empty || song == null) {
-                    setText(null);
-                    getStyleClass().remove("playing-cell");
-                } else {
-                    setText(song.toString());
-                    getStyleClass().remove("playing-cell");
-                    if (getIndex() == currentIndex) {
-                        if (!getStyleClass().contains("playing-cell")) {
-                            getStyleClass().add("playing-cell");
-                        }
+        playlist.addListener((ListChangeListener<Song>) change -> {
+            playlistVersion++;
+            updatePositions(change);
+            change.reset();
+            libraryChanged();
+            // A sort puts back the same songs, which leaves the search index and
+            // the playback order as they are
+            if (reordering) return;
+            while (change.next()) {
+                if (change.wasAdded()) {
+                    searchIndex.addAll(change.getAddedSubList());
+                }
+                if (!change.wasPermutated()) {
+                    for (Song song : change.getRemoved()) {
+                        playbackOrder.remove(song.getId());
+                    }
+                    for (Song song : change.getAddedSubList()) {
+                        playbackOrder.add(song.getId());
                     }
                 }
             }
         });
 
+        playlistView = new ListView<>(visibleSongs);
+        playlistView.getStyleClass().add("playlist-view");
+        playlistView.setPlaceholder(new Label("Add files to get started"));
+
+        playlistView.setCellFactory(lv -> new PlaylistCell(nowPlaying, metadataRevision, albumArt));
+
+        MenuItem playNextItem = new MenuItem("Play Next");
+        playNextItem.setOnAction(e -> queueSelected(true));
+        MenuItem addToQueueItem = new MenuItem("Add to Queue");
+        addToQueueItem.setOnAction(e -> queueSelected(false));
+        playlistView.setContextMenu(new ContextMenu(playNextItem, addToQueueItem));
+
         playlistView.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) {
-                int index = playlistView.getSelectionModel().getSelectedIndex();
-                if (index >= 0) {
-                    playTrack(index);
+                int viewIndex = playlistView.getSelectionModel().getSelectedIndex();
+                if (viewIndex >= 0) {
+                    playTrack(visibleSongs.getSourceIndex(viewIndex));
                 }
             }
         });
@@ -148,7 +516,6 @@ public class MusicPlayerApp extends Application {
 
         seekSlider = new Slider(0, 1, 0);
         seekSlider.getStyleClass().add("seek-slider");
-        HBox.setHgrow(seekSlider, Priority.ALWAYS);
 
         seekSlider.setOnMousePressed(e -> seekSliderDragging = true);
         seekSlider.setOnMouseReleased(e -> {
@@ -156,10 +523,17 @@ public class MusicPlayerApp extends Application {
             Duration total = audioEngine.totalDurationProperty().get();
             if (total != null && total.greaterThan(Duration.ZERO)) {
                 audioEngine.seek(total.multiply(seekSlider.getValue()));
+                sessionChanged();
             }
         });
 
-        HBox seekRow = new HBox(8, elapsedLabel, seekSlider, totalLabel);
+        // The waveform overview sits behind the slider's track
+        waveformView = new WaveformView();
+        StackPane seekPane = new StackPane(waveformView, seekSlider);
+        seekPane.setMinHeight(36);
+        HBox.setHgrow(seekPane, Priority.ALWAYS);
+
+        HBox seekRow = new HBox(8, elapsedLabel, seekPane, totalLabel);
         seekRow.setAlignment(Pos.CENTER);
 
         // Transport controls
@@ -192,12 +566,47 @@ public class MusicPlayerApp extends Application {
 
         volumeSlider = new Slider(0, 1, 0.5);
         volumeSlider.setPrefWidth(100);
-        volumeSlider.valueProperty().addListener((obs, oldVal, newVal) ->
-                audioEngine.setVolume(newVal.doubleValue()));
+        volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            audioEngine.setVolume(newVal.doubleValue());
+            sessionChanged();
+        });
 
         HBox volumeBox = new HBox(6, muteButton, volumeSlider);
         volumeBox.setAlignment(Pos.CENTER_RIGHT);
 
+        // Crossfade length, 0 (gapless) to the engine's maximum in 2 s steps
+        crossfadeBox = new ComboBox<>();
+        for (int seconds = 0; seconds <= AudioEngine.MAX_CROSSFADE.toSeconds(); seconds += 2) {
+            crossfadeBox.getItems().add(seconds);
+        }
+        crossfadeBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Integer seconds) {
+                return seconds == null || seconds == 0 ? "No crossfade" : "Crossfade " + seconds + " s";
+            }
+
+            @Override
+            public Integer fromString(String text) {
+                return null;
+            }
+        });
+        crossfadeBox.setValue(0);
+        crossfadeBox.valueProperty().addListener((obs, oldVal, newVal) -> {
+            audioEngine.setCrossfade(Duration.seconds(newVal == null ? 0 : newVal));
+            sessionChanged();
+        });
+
+        ComboBox<PlaybackOrder.Mode> orderBox = new ComboBox<>();
+        orderBox.getItems().addAll(PlaybackOrder.Mode.values());
+        orderBox.setValue(playbackOrder.getMode());
+        orderBox.valueProperty().addListener((obs, oldVal, newVal) -> {
+            playbackOrder.setMode(newVal);
+            nextChanged();
+        });
+
+        HBox optionsBox = new HBox(6, orderBox, crossfadeBox);
+        optionsBox.setAlignment(Pos.CENTER_LEFT);
+
         // Combine transport and volume in one row
         HBox controlsRow = new HBox();
         controlsRow.setAlignment(Pos.CENTER);
@@ -207,7 +616,7 @@ public class MusicPlayerApp extends Application {
         Region spacerRight = new Region();
         HBox.setHgrow(spacerRight, Priority.ALWAYS);
 
-        controlsRow.getChildren().addAll(spacerLeft, transportBox, spacerRight, volumeBox);
+        controlsRow.getChildren().addAll(optionsBox, spacerLeft, transportBox, spacerRight, volumeBox);
 
         VBox controlsPanel = new VBox(8, seekRow, controlsRow);
         controlsPanel.setPadding(new Insets(12));
@@ -217,13 +626,25 @@ public class MusicPlayerApp extends Application {
     }
 
     private void setupAudioEngineBindings() {
-        audioEngine.currentTimeProperty().addListener((obs, oldVal, newVal) -> {
-            if (!seekSliderDragging && newVal != null) {
-                Duration total = audioEngine.totalDurationProperty().get();
-                if (total != null && total.greaterThan(Duration.ZERO)) {
-                    seekSlider.setValue(newVal.toMillis() / total.toMillis());
+        audioEngine.setSpectrumAnalyzer(spectrumAnalyzer);
+
+        audioEngine.positionMillisProperty().addListener(obs -> {
+            if (seekSliderDragging) return;
+            positionUpdates.increment();
+            long position = audioEngine.positionMillisProperty().get();
+            Duration total = audioEngine.totalDurationProperty().get();
+            if (total != null && total.greaterThan(Duration.ZERO)) {
+                seekSlider.setValue(position / total.toMillis());
+            }
+            // The label only changes once a second; skip the other updates
+            int second = (int) (position / 1000);
+            if (second != displayedSecond) {
+                displayedSecond = second;
+                elapsedLabel.setText(TimeFormat.format(second));
+                labelUpdates.increment();
+                if (second % 5 == 0) {
+                    sessionChanged();
                 }
-                elapsedLabel.setText(formatDuration(newVal));
             }
         });
 
@@ -236,15 +657,93 @@ public class MusicPlayerApp extends Application {
         audioEngine.statusProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal == MediaPlayer.Status.PLAYING) {
                 playPauseButton.setText("\u23F8");
+                if (firstAudioNanos < 0) {
+                    firstAudioNanos = StartupClock.sinceLaunchNanos();
+                    PlayerEvents.firstAudio(firstAudioNanos);
+                    if ("audio".equals(STARTUP_EXIT)) {
+                        System.out.printf("First audio at %.0f ms after launch%n", firstAudioNanos / 1e6);
+                        exitAfterStartup();
+                    }
+                }
             } else {
                 playPauseButton.setText("\u25B6");
             }
+            spectrumView.setActive(newVal == MediaPlayer.Status.PLAYING);
+            sessionChanged();
         });
 
         audioEngine.setOnEndOfMedia(this::nextTrack);
 
-        audioEngine.setOnMetadataAvailable((song, media) ->
-                Platform.runLater(() -> updateTrackInfoDisplay(song)));
+        audioEngine.setNextTrackProvider(() -> {
+            if (playlist.isEmpty()) return null;
+            preloadedIndex = nextIndex();
+            return playlist.get(preloadedIndex);
+        });
+
+        audioEngine.setOnTrackAdvanced(song -> {
+            int index = preloadedIndex >= 0 && preloadedIndex < playlist.size() && playlist.get(preloadedIndex) == song
+                    ? preloadedIndex
+                    : indexOfSong(song);
+            preloadedIndex = -1;
+            showPlaying(index, song);
+        });
+
+        audioEngine.setOnMetadataAvailable(song ->
+                Platform.runLater(() -> {
+                    updateTrackInfoDisplay(song);
+                    searchIndex.update(song);
+                    metadataChanged();
+                }));
+
+        // Art JavaFX decoded from tags the reader doesn't handle
+        audioEngine.setOnArtworkAvailable((song, image) ->
+                Platform.runLater(() -> albumArt.offer(song, image, thumbnail -> showArtwork(song, thumbnail))));
+    }
+
+    private void setupMetadataPipeline() {
+        metadataPipeline.setOnApplied(songs -> {
+            songs.forEach(searchIndex::update);
+            metadataChanged();
+            if (currentIndex >= 0 && songs.contains(playlist.get(currentIndex))) {
+                updateTrackInfoDisplay(playlist.get(currentIndex));
+            }
+        });
+    }
+
+    /** Saves measured loudness once the queue runs dry, and reports analysis throughput as gauges. */
+    private void setupLoudnessPipeline() {
+        loudnessPipeline.setOnIdle(this::libraryChanged);
+        Metrics metrics = Metrics.getDefault();
+        metrics.gauge("loudness.tracks", loudnessPipeline::getAnalyzed);
+        metrics.gauge("loudness.tracks-per-second", loudnessPipeline::getTracksPerSecond);
+        metrics.gauge("loudness.real-time-factor", loudnessPipeline::getRealTimeFactor);
+    }
+
+    /**
+     * Applies folder changes as they happen. New tracks go to the end and
+     * removals keep the playing track, so the current index still points
+     * at the song that is playing.
+     */
+    private void setupLibraryWatcher() {
+        libraryWatcher.setOnAdded(added -> Platform.runLater(() -> {
+            playlist.addAll(added);
+            metadataPipeline.submit(added);
+            waveformCache.precompute(added);
+            loudnessPipeline.submit(added);
+            libraryChanged();
+        }));
+        libraryWatcher.setOnChanged(changed -> Platform.runLater(() -> {
+            changed.forEach(Song::resetMetadata);
+            metadataChanged();
+            metadataPipeline.submit(changed);
+            waveformCache.precompute(changed);
+            loudnessPipeline.submit(changed);
+            libraryChanged();
+        }));
+        libraryWatcher.setOnRemoved(removed -> Platform.runLater(() -> {
+            removeSongs(removed);
+            libraryChanged();
+        }));
     }
 
     private void togglePlayPause() {
@@ -254,38 +753,86 @@ public class MusicPlayerApp extends Application {
         } else if (st == MediaPlayer.Status.PAUSED) {
             audioEngine.resume();
         } else if (!playlist.isEmpty()) {
-            if (currentIndex < 0) {
-                playTrack(0);
-            } else {
-                playTrack(currentIndex);
-            }
+            playTrack(currentIndex < 0 ? nextIndex() : currentIndex);
         }
     }
 
     private void playTrack(int index) {
         if (index < 0 || index >= playlist.size()) return;
-        currentIndex = index;
         Song song = playlist.get(index);
         audioEngine.play(song);
+        showPlaying(index, song);
+    }
+
+    private void showPlaying(int index, Song song) {
+        currentIndex = index;
+        playbackOrder.played(song.getId());
+        sessionChanged();
+        nowPlaying.set(song);
         updateTrackInfoDisplay(song);
-        playlistView.getSelectionModel().select(index);
-        playlistView.refresh();
+        selectInView(index);
+        waveformView.setPeaks(null);
+        waveformCache.request(song.getFilePath(), peaks -> {
+            if (nowPlaying.get() == song) {
+                waveformView.setPeaks(peaks);
+            }
+        });
     }
 
-    private void nextTrack() {
-        if (playlist.isEmpty()) return;
+    private void selectInView(int index) {
+        int viewIndex = index >= 0 ? visibleSongs.getViewIndex(index) : -1;
+        if (viewIndex >= 0) {
+            playlistView.getSelectionModel().select(viewIndex);
+        } else {
+            playlistView.getSelectionModel().clearSelection();
+        }
+    }
+
+    private void metadataChanged() {
+        metadataRefreshes.increment();
+        metadataRevision.set(metadataRevision.get() + 1);
+        if (!searchField.getText().isBlank()) {
+            applySearch();
+        }
+    }
+
+    private void applySearch() {
+        BitSet matches = searchIndex.search(searchField.getText());
+        if (matches == null) {
+            visibleSongs.setPredicate(null);
+        } else {
+            visibleSongs.setPredicate(song -> matches.get(song.getId()));
+        }
+        selectInView(currentIndex);
+    }
+
+    /** The queue, then the shuffle, then the playlist order. */
+    private int nextIndex() {
+        int id = playbackOrder.peekNext();
+        int index = id >= 0 ? indexOfId(id) : -1;
+        if (index >= 0) return index;
         int next = currentIndex + 1;
         if (next >= playlist.size()) {
             next = 0;
         }
-        playTrack(next);
+        return next;
+    }
+
+    private void nextTrack() {
+        if (playlist.isEmpty()) return;
+        playTrack(nextIndex());
     }
 
     private void previousTrack() {
         if (playlist.isEmpty()) return;
-        int prev = currentIndex - 1;
+        int id = playbackOrder.previous();
+        int prev = id >= 0 ? indexOfId(id) : -1;
         if (prev < 0) {
-            prev = playlist.size() - 1;
+            // Nothing played before this; step back through the playlist
+            prev = currentIndex - 1;
+            if (prev < 0) {
+                prev = playlist.size() - 1;
+            }
         }
         playTrack(prev);
     }
@@ -294,12 +841,24 @@ public class MusicPlayerApp extends Application {
         titleLabel.setText(song.getTitle());
         artistLabel.setText(song.getArtist());
         albumLabel.setText(song.getAlbum());
+        if (song == nowPlaying.get()) {
+            // A thumbnail in memory arrives right away, before the next frame
+            trackArt.setImage(null);
+            albumArt.request(song, thumbnail -> showArtwork(song, thumbnail));
+        }
+    }
+
+    private void showArtwork(Song song, Image thumbnail) {
+        if (song == nowPlaying.get()) {
+            trackArt.setImage(thumbnail);
+        }
     }
 
     private void toggleMute() {
         boolean nowMuted = !audioEngine.isMuted();
         audioEngine.setMuted(nowMuted);
         muteButton.setText(nowMuted ? "\uD83D\uDD07" : "\uD83D\uDD0A");
+        sessionChanged();
     }
 
     private void addFiles() {
@@ -309,9 +868,16 @@ public class MusicPlayerApp extends Application {
                 new FileChooser.ExtensionFilter("Audio Files", "*.mp3", "*.wav", "*.aac", "*.aiff"));
         List<File> files = chooser.showOpenMultipleDialog(playlistView.getScene().getWindow());
         if (files != null) {
+            List<Song> songs = new ArrayList<>(files.size());
             for (File file : files) {
-                playlist.add(new Song(file.getAbsolutePath()));
+                Song song = new Song(file.getAbsolutePath());
+                libraryIndex.put(song, file.lastModified(), file.length());
+                songs.add(song);
             }
+            playlist.addAll(songs);
+            metadataPipeline.submit(songs);
+            waveformCache.precompute(songs);
+            loudnessPipeline.submit(songs);
         }
     }
 
@@ -320,78 +886,280 @@ public class MusicPlayerApp extends Application {
         chooser.setTitle("Add Folder");
         File dir = chooser.showDialog(playlistView.getScene().getWindow());
         if (dir != null) {
-            addAudioFilesFromDirectory(dir);
+            Path root = dir.toPath().toAbsolutePath();
+            libraryIndex.addRoot(root);
+            libraryWatcher.watch(root);
+            scanDirectories(List.of(root));
         }
     }
 
-    private void addAudioFilesFromDirectory(File dir) {
-        File[] files = dir.listFiles();
-        if (files == null) return;
-        Arrays.sort(files);
-        for (File file : files) {
-            if (file.isFile() && isAudioFile(file.getName())) {
-                playlist.add(new Song(file.getAbsolutePath()));
+    private void importPlaylist() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Playlist");
+        chooser.getExtensionFilters().add(PLAYLIST_FILTER);
+        File file = chooser.showOpenDialog(playlistView.getScene().getWindow());
+        if (file == null) return;
+
+        cancelImport();
+        PlaylistImporter importer = new PlaylistImporter(libraryIndex);
+        // Library tracks are already rows; listing a song twice would save it twice
+        int[] alreadyListed = {0};
+        importer.setOnBatch(batch -> Platform.runLater(() -> {
+            if (importer.isCancelled()) return;
+            List<Song> added = new ArrayList<>(batch.size());
+            BitSet inBatch = new BitSet();
+            for (Song song : batch) {
+                if (indexOfSong(song) >= 0 || inBatch.get(song.getId())) {
+                    alreadyListed[0]++;
+                } else {
+                    inBatch.set(song.getId());
+                    added.add(song);
+                }
             }
-        }
+            if (added.isEmpty()) return;
+            playlist.addAll(added);
+            metadataPipeline.submit(added);
+            waveformCache.precompute(added);
+            loudnessPipeline.submit(added);
+        }));
+        importer.setOnProgress(imported -> Platform.runLater(() ->
+                scanStatusLabel.setText("Importing\u2026 " + imported + " tracks")));
+        importer.setOnFinished(() -> Platform.runLater(() -> {
+            if (activeImport == importer) {
+                activeImport = null;
+                List<String> notes = new ArrayList<>();
+                if (importer.getSkipped() > 0) {
+                    notes.add(importer.getSkipped() + " playlist entries not found");
+                }
+                if (alreadyListed[0] > 0) {
+                    notes.add(alreadyListed[0] + " already in the playlist");
+                }
+                scanStatusLabel.setText(String.join(", ", notes));
+            }
+            if (!importer.isCancelled()) {
+                libraryChanged();
+            }
+        }));
+        activeImport = importer;
+        scanStatusLabel.setText("Importing\u2026");
+        importer.start(file.toPath());
     }
 
-    private boolean isAudioFile(String name) {
-        String lower = name.toLowerCase();
-        for (String ext : AUDIO_EXTENSIONS) {
-            if (lower.endsWith(ext)) return true;
-        }
-        return false;
+    private void exportPlaylist() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Playlist");
+        chooser.getExtensionFilters().add(PLAYLIST_FILTER);
+        chooser.setInitialFileName("playlist.m3u8");
+        File file = chooser.showSaveDialog(playlistView.getScene().getWindow());
+        if (file == null) return;
+        Path target = PlaylistFile.isPlaylist(file.getName())
+                ? file.toPath() : file.toPath().resolveSibling(file.getName() + ".m3u8");
+        List<Song> snapshot = new ArrayList<>(playlist);
+        Thread.ofVirtual().name("playlist-export").start(() -> {
+            try {
+                PlaylistFile.write(target, snapshot);
+            } catch (IOException e) {
+                System.err.println("Cannot export playlist: " + e.getMessage());
+            }
+        });
     }
 
-    private String formatDuration(Duration d) {
-        if (d == null || d.isUnknown() || d.isIndefinite()) return "0:00";
-        int totalSeconds = (int) Math.floor(d.toSeconds());
-        int minutes = totalSeconds / 60;
-        int seconds = totalSeconds % 60;
-        return String.format("%d:%02d", minutes, seconds);
+    private void cancelImport() {
+        if (activeImport != null) {
+            activeImport.cancel();
+            activeImport = null;
+            scanStatusLabel.setText("");
+        }
     }
 
-    private String getStylesheet() {
-        return String.join("",
-                ".root-pane { -fx-background-color: %232b2b2b; }",
-
-                ".track-info-bar { -fx-background-color: %23333333; }",
-
-                ".track-title { -fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: %23e0e0e0; }",
-
-                ".track-detail { -fx-font-size: 12px; -fx-text-fill: %23aaaaaa; }",
-
-                ".playlist-view { -fx-background-color: %23252525; -fx-control-inner-background: %23252525; }",
-
-                ".playlist-view .list-cell { -fx-background-color: %23252525; -fx-text-fill: %23cccccc; -fx-padding: 6 12; }",
-
-                ".playlist-view .list-cell:selected { -fx-background-color: %23444444; -fx-text-fill: %23ffffff; }",
-
-                ".playlist-view .list-cell:hover { -fx-background-color: %233a3a3a; }",
-
-                ".playing-cell { -fx-text-fill: %2300ccff !important; -fx-font-weight: bold; }",
-
-                ".controls-panel { -fx-background-color: %23333333; }",
+    /** Scans {@code roots}, or queues them behind the running scan so it still completes. */
+    private void scanDirectories(List<Path> roots) {
+        if (activeScanner != null) {
+            for (Path root : roots) {
+                if (!queuedRoots.contains(root)) {
+                    queuedRoots.add(root);
+                }
+            }
+            return;
+        }
+        LibraryScanner scanner = new LibraryScanner(libraryIndex);
+        scanner.setOnBatch(batch -> Platform.runLater(() -> {
+            if (!scanner.isCancelled()) {
+                playlist.addAll(batch);
+                metadataPipeline.submit(batch);
+                waveformCache.precompute(batch);
+                loudnessPipeline.submit(batch);
+            }
+        }));
+        scanner.setOnChanged(changed -> Platform.runLater(() -> {
+            changed.forEach(Song::resetMetadata);
+            metadataChanged();
+            metadataPipeline.submit(changed);
+            waveformCache.precompute(changed);
+            loudnessPipeline.submit(changed);
+        }));
+        scanner.setOnRemoved(removed -> Platform.runLater(() -> removeSongs(removed)));
+        scanner.setOnProgress(found -> Platform.runLater(() ->
+                scanStatusLabel.setText("Scanning\u2026 " + found + " tracks")));
+        scanner.setOnFinished(() -> Platform.runLater(() -> {
+            if (!scanner.isCancelled()) {
+                libraryChanged();
+            }
+            if (activeScanner == scanner) {
+                activeScanner = null;
+                scanStatusLabel.setText("");
+                if (!queuedRoots.isEmpty()) {
+                    List<Path> next = List.copyOf(queuedRoots);
+                    queuedRoots.clear();
+                    scanDirectories(next);
+                }
+            }
+        }));
+        activeScanner = scanner;
+        scanStatusLabel.setText("Scanning\u2026");
+        scanner.start(roots);
+    }
 
-                ".transport-btn { -fx-font-size: 16px; -fx-background-color: %23444444; -fx-text-fill: %23e0e0e0; -fx-background-radius: 20; -fx-min-width: 40; -fx-min-height: 40; -fx-cursor: hand; }",
+    private void sortPlaylist(PlaylistSorter.SortKey key) {
+        List<Song> snapshot = new ArrayList<>(playlist);
+        int version = playlistVersion;
+        Thread.ofVirtual().name("playlist-sort").start(() -> {
+            Song[] sorted = playlistSorter.sort(snapshot, key);
+            Platform.runLater(() -> {
+                if (playlistVersion != version) {
+                    // Tracks arrived while sorting; sort again with them included
+                    sortPlaylist(key);
+                    return;
+                }
+                Song playing = nowPlaying.get();
+                reordering = true;
+                try {
+                    playlist.setAll(sorted);
+                } finally {
+                    reordering = false;
+                }
+                currentIndex = playing == null ? -1 : indexOfSong(playing);
+                preloadedIndex = -1;
+                audioEngine.clearPreloaded();
+                selectInView(currentIndex);
+            });
+        });
+    }
 
-                ".transport-btn:hover { -fx-background-color: %23555555; }",
+    private int indexOfSong(Song song) {
+        int index = indexOfId(song.getId());
+        return index >= 0 && playlist.get(index) == song ? index : -1;
+    }
 
-                ".play-btn { -fx-font-size: 20px; -fx-min-width: 48; -fx-min-height: 48; -fx-background-color: %230088cc; }",
+    private int indexOfId(int id) {
+        return id >= 0 && id < playlistPositions.length ? playlistPositions[id] : -1;
+    }
 
-                ".play-btn:hover { -fx-background-color: %2300aaee; }",
+    /**
+     * Clears the positions of removed songs and renumbers the playlist from
+     * the first changed row on, so appending costs only the new rows. A song
+     * listed twice keeps a position while any copy is left: when the removed
+     * row held it, the rows before the change are searched for the other copy.
+     */
+    private void updatePositions(ListChangeListener.Change<? extends Song> change) {
+        int tracks = TrackStore.getDefault().size();
+        if (tracks > playlistPositions.length) {
+            int old = playlistPositions.length;
+            int length = Math.max(tracks, old * 2);
+            playlistPositions = Arrays.copyOf(playlistPositions, length);
+            Arrays.fill(playlistPositions, old, length, -1);
+            playlistCopies = Arrays.copyOf(playlistCopies, length);
+        }
+        int from = playlist.size();
+        BitSet orphaned = null;
+        while (change.next()) {
+            from = Math.min(from, change.getFrom());
+            if (change.wasPermutated()) continue;
+            for (Song song : change.getRemoved()) {
+                int id = song.getId();
+                playlistCopies[id]--;
+                if (playlistPositions[id] >= change.getFrom()) {
+                    playlistPositions[id] = -1;
+                    if (playlistCopies[id] > 0) {
+                        if (orphaned == null) orphaned = new BitSet();
+                        orphaned.set(id);
+                    }
+                }
+            }
+            for (Song song : change.getAddedSubList()) {
+                playlistCopies[song.getId()]++;
+            }
+        }
+        for (int i = from, n = playlist.size(); i < n; i++) {
+            playlistPositions[playlist.get(i).getId()] = i;
+        }
+        if (orphaned != null) {
+            // Renumbering may have found the other copy already
+            for (int id = orphaned.nextSetBit(0); id >= 0; id = orphaned.nextSetBit(id + 1)) {
+                if (playlistPositions[id] >= 0) {
+                    orphaned.clear(id);
+                }
+            }
+            for (int i = from - 1; i >= 0 && !orphaned.isEmpty(); i--) {
+                int id = playlist.get(i).getId();
+                if (orphaned.get(id)) {
+                    playlistPositions[id] = i;
+                    orphaned.clear(id);
+                }
+            }
+        }
+    }
 
-                ".time-label { -fx-text-fill: %23aaaaaa; -fx-font-size: 12px; }",
+    /** Queues the selected track to play next or after the rest of the queue. */
+    private void queueSelected(boolean first) {
+        Song song = playlistView.getSelectionModel().getSelectedItem();
+        if (song == null) return;
+        if (first) {
+            playbackOrder.enqueueFirst(song.getId());
+        } else {
+            playbackOrder.enqueue(song.getId());
+        }
+        nextChanged();
+    }
 
-                ".seek-slider .track { -fx-background-color: %23555555; }",
+    /** What plays next may have changed, so the engine's preloaded track may be the wrong one. */
+    private void nextChanged() {
+        preloadedIndex = -1;
+        audioEngine.clearPreloaded();
+    }
 
-                ".seek-slider .thumb { -fx-background-color: %2300ccff; }",
+    /** Removes songs whose files are gone, except the one playing, which keeps its index valid. */
+    private void removeSongs(List<Song> removed) {
+        if (removed.isEmpty()) return;
+        Song playing = currentIndex >= 0 ? playlist.get(currentIndex) : null;
+        Song audible = nowPlaying.get();
+        HashSet<Song> gone = new HashSet<>(removed);
+        gone.remove(playing);
+        gone.remove(audible);
+        if (gone.isEmpty()) return;
+        playlist.removeAll(gone);
+        currentIndex = playing == null ? -1 : indexOfSong(playing);
+        preloadedIndex = -1;
+    }
 
-                ".label { -fx-text-fill: %23cccccc; }",
+    private void cancelScan() {
+        queuedRoots.clear();
+        if (activeScanner != null) {
+            activeScanner.cancel();
+            activeScanner = null;
+            scanStatusLabel.setText("");
+        }
+    }
 
-                ".button { -fx-background-color: %23444444; -fx-text-fill: %23e0e0e0; -fx-background-radius: 4; -fx-cursor: hand; }",
+    static boolean isAudioFile(String name) {
+        for (String ext : AUDIO_EXTENSIONS) {
+            if (name.regionMatches(true, name.length() - ext.length(), ext, 0, ext.length())) return true;
+        }
+        return false;
+    }
 
-                ".button:hover { -fx-background-color: %23555555; }"
-        );
+    static String formatDuration(Duration d) {
+        if (d == null || d.isUnknown() || d.isIndefinite()) return "0:00";
+        return TimeFormat.format((int) Math.floor(d.toSeconds()));
     }
 }
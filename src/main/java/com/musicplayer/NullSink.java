@@ -0,0 +1,108 @@
+package com.musicplayer;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link AudioSink} that drops the audio, optionally consuming it at the
+ * format's frame rate to stand in for a sound card.
+ */
+final class NullSink implements AudioSink {
+
+    private final boolean realTime;
+
+    private int frameSize = 1;
+    private float frameRate = 44100;
+    private long bufferFrames = 0;
+    private long framesWritten = 0;
+
+    // Real-time clock: frames consumed before the last start, and when it was
+    private long framesBeforeStart = 0;
+    private long startNanos = 0;
+    private boolean running = false;
+
+    NullSink(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferBytes) {
+        frameSize = Math.max(1, format.getFrameSize());
+        frameRate = format.getFrameRate();
+        bufferFrames = bufferBytes / frameSize;
+        framesWritten = 0;
+        framesBeforeStart = 0;
+        running = false;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        if (realTime && running && getFramePosition() >= framesWritten) {
+            // Underrun: the clock ran dry, so playback resumes from here
+            framesBeforeStart = framesWritten;
+            startNanos = System.nanoTime();
+        }
+        framesWritten += length / frameSize;
+        if (!realTime) return;
+        // Block like a full device buffer until the clock has played enough
+        while (framesWritten - getFramePosition() > bufferFrames) {
+            if (!running) start();
+            long excess = framesWritten - getFramePosition() - bufferFrames;
+            LockSupport.parkNanos((long) (excess * 1e9 / frameRate));
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer data) {
+        int length = data.remaining();
+        data.position(data.limit());
+        write(null, 0, length);
+    }
+
+    @Override
+    public void write(ByteBuffer data, float gain) {
+        // Discarded, so there's nothing to scale
+        write(data);
+    }
+
+    @Override
+    public void start() {
+        if (!running) {
+            startNanos = System.nanoTime();
+            running = true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            framesBeforeStart = getFramePosition();
+            running = false;
+        }
+    }
+
+    @Override
+    public void flush() {
+        framesWritten = getFramePosition();
+    }
+
+    @Override
+    public long getFramePosition() {
+        if (!realTime) return framesWritten;
+        long played = framesBeforeStart;
+        if (running) {
+            played += (long) ((System.nanoTime() - startNanos) * (double) frameRate / 1e9);
+        }
+        return Math.min(played, framesWritten);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+    }
+}
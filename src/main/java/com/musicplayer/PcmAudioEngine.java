@@ -0,0 +1,1045 @@
+package com.musicplayer;
+
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link AudioEngine} that plays WAV and AIFF as 16-bit PCM to an
+ * {@link AudioSink} from a dedicated playback thread. Uncompressed files are
+ * read through {@link MappedPcmReader}; 16-bit little-endian audio goes to
+ * the sink straight from the mapping, anything else is converted by a
+ * decoder thread (javax.sound for formats the reader can't map) into a
+ * lock-free {@link PcmRingBuffer} that the playback thread drains one
+ * period at a time. Consecutive tracks with the same format are written
+ * back to back without reopening the sink.
+ *
+ * <p>Properties change and callbacks run on the callback executor, so with
+ * a direct executor the engine runs without JavaFX started.
+ */
+public class PcmAudioEngine implements AudioEngine {
+
+    private static final String ENGINE = "pcm";
+    private static final Duration PRELOAD_LEAD = Duration.seconds(15);
+    private static final double DEFAULT_POSITION_UPDATE_RATE = 10.0;
+    private static final int MIN_RING_MILLIS = 1000;
+
+    private final AudioSink sink;
+    private final Executor callbackExecutor;
+    private Thread playbackThread;
+    private final Object lock = new Object();
+
+    // Shared with the playback thread
+    private volatile Track current;
+    private volatile Track next;
+    // Replaced on other threads; their readers are closed by the playback thread
+    private final Queue<Track> dropped = new ConcurrentLinkedQueue<>();
+    private volatile boolean paused = false;
+    private volatile boolean running = true;
+    private volatile float gain = 0.5f;
+    private volatile boolean normalization = true;
+    private volatile long crossfadeMillis = 0;
+    private volatile int bufferMillis = 100;
+    private volatile int periodMillis = 10;
+    private volatile long publishIntervalNanos = (long) (1e9 / DEFAULT_POSITION_UPDATE_RATE);
+    private volatile long transitionStartNanos = 0;
+    private volatile long underruns = 0;
+    private volatile SpectrumAnalyzer spectrum;
+    private final AtomicBoolean publishScheduled = new AtomicBoolean(false);
+
+    // Playback thread only: the outgoing track's samples during a crossfade
+    private byte[] fadeBuffer = new byte[0];
+
+    // Callback thread only
+    private final ObjectProperty<Duration> currentTime = new SimpleObjectProperty<>(Duration.ZERO);
+    private final ObjectProperty<Duration> totalDuration = new SimpleObjectProperty<>(Duration.ZERO);
+    private final ObjectProperty<MediaPlayer.Status> status = new SimpleObjectProperty<>(MediaPlayer.Status.UNKNOWN);
+    private final ObjectProperty<Duration> transitionLatency = new SimpleObjectProperty<>(Duration.ZERO);
+    private final LongProperty positionMillis = new SimpleLongProperty(0);
+    private final PositionStats positionStats = new PositionStats();
+    private final CrossfadeStats crossfadeStats = new CrossfadeStats();
+    private double positionUpdateRate = DEFAULT_POSITION_UPDATE_RATE;
+
+    private TrackCache trackCache;
+    private double volume = 0.5;
+    private boolean muted = false;
+    private boolean gapless = true;
+    private boolean advancing = false;
+
+    private Runnable onEndOfMedia;
+    private Supplier<Song> nextTrackProvider;
+    private Consumer<Song> onTrackAdvanced;
+
+    private PcmAudioEngine(AudioSink sink, Executor callbackExecutor) {
+        this.sink = sink;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /** Creates an engine playing to {@code sink} and starts its playback thread. */
+    public static PcmAudioEngine create(AudioSink sink, Executor callbackExecutor) {
+        PcmAudioEngine engine = new PcmAudioEngine(sink, callbackExecutor);
+        // Started only once the engine is fully constructed
+        Thread thread = new Thread(engine::playbackLoop, "pcm-playback");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        engine.playbackThread = thread;
+        thread.start();
+        return engine;
+    }
+
+    /**
+     * Sets the sink's buffer, i.e. the output latency, used from the next
+     * track on. The decoder ring holds at least a second or four buffers.
+     */
+    public void setBufferMillis(int millis) {
+        this.bufferMillis = Math.max(5, millis);
+    }
+
+    public int getBufferMillis() {
+        return bufferMillis;
+    }
+
+    /** Sets how much audio the playback thread writes to the sink at a time. */
+    public void setPeriodMillis(int millis) {
+        this.periodMillis = Math.max(1, millis);
+    }
+
+    public int getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /** Times the sink ran dry while the decoder was still behind. */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    @Override
+    public void play(Song song) {
+        if (!advancing) {
+            transitionStartNanos = 0;
+        }
+        Track track;
+        Track preloaded = next;
+        if (preloaded != null && preloaded.song == song) {
+            next = null;
+            track = preloaded;
+        } else {
+            discardNext();
+            long requested = System.nanoTime();
+            try {
+                track = openTrack(song, 0);
+                track.requestNanos = requested;
+            } catch (IOException e) {
+                System.err.println("Cannot play " + song.getFilePath() + ": " + e.getMessage());
+                PlayerEvents.playbackError(ENGINE, song.getFilePath(), e.getMessage());
+                replaceCurrent(null);
+                status.set(MediaPlayer.Status.STOPPED);
+                return;
+            }
+        }
+        paused = false;
+        replaceCurrent(track);
+        totalDuration.set(Duration.millis(track.totalMillis()));
+        song.setDurationMillis(track.totalMillis());
+        setPosition(0);
+    }
+
+    @Override
+    public void cue(Song song, Duration position) {
+        transitionStartNanos = 0;
+        discardNext();
+        Track track;
+        try {
+            track = openTrack(song, 0);
+            long frame = (long) (Math.max(0, position.toMillis()) * track.format.getFrameRate() / 1000);
+            if (frame > 0 && (track.totalFrames <= 0 || frame < track.totalFrames)) {
+                // The format is only known once open; reopen at the cue point
+                track.release();
+                track = openTrack(song, frame);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot cue " + song.getFilePath() + ": " + e.getMessage());
+            PlayerEvents.playbackError(ENGINE, song.getFilePath(), e.getMessage());
+            return;
+        }
+        paused = true;
+        replaceCurrent(track);
+        status.set(MediaPlayer.Status.PAUSED);
+        totalDuration.set(Duration.millis(track.totalMillis()));
+        song.setDurationMillis(track.totalMillis());
+        setPosition((long) (track.startFrame * 1000.0 / track.format.getFrameRate()));
+    }
+
+    private Track openTrack(Song song, long startFrame) throws IOException {
+        String path = song.getFilePath();
+        Path cached = trackCache != null ? trackCache.lookup(path) : null;
+        if (trackCache != null && cached == null) {
+            trackCache.add(path);
+        }
+        File file = cached != null ? cached.toFile() : new File(path);
+
+        MappedPcmReader mapped = openMapped(file);
+        if (mapped != null) {
+            mapped.seekFrame(startFrame);
+            if (mapped.isPcm16LittleEndian()) {
+                // Played straight from the mapping: no decoder, no ring, no copy
+                return new Track(song, mapped.getFormat(), startFrame, mapped.getFrameLength(), null, mapped);
+            }
+            AudioFormat format = pcm16(mapped.getFormat());
+            Track track = new Track(song, format, startFrame, mapped.getFrameLength(), newRing(format), null);
+            Thread.ofVirtual().name("pcm-decoder").start(() -> decode(track, mapped::read16, mapped));
+            return track;
+        }
+
+        AudioInputStream source;
+        try {
+            source = AudioSystem.getAudioInputStream(file);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio format", e);
+        }
+        AudioFormat sourceFormat = source.getFormat();
+        AudioFormat format = pcm16(sourceFormat);
+        AudioInputStream pcm;
+        try {
+            pcm = sourceFormat.matches(format) ? source : AudioSystem.getAudioInputStream(format, source);
+        } catch (IllegalArgumentException e) {
+            source.close();
+            throw new IOException("Cannot convert " + sourceFormat + " to PCM", e);
+        }
+
+        Track track = new Track(song, format, startFrame, source.getFrameLength(), newRing(format), null);
+        Thread.ofVirtual().name("pcm-decoder").start(() -> {
+            try {
+                pcm.skipNBytes(startFrame * format.getFrameSize());
+            } catch (IOException e) {
+                track.error = e;
+            }
+            decode(track, pcm::read, pcm);
+        });
+        return track;
+    }
+
+    /** The file as a mapped PCM stream, or {@code null} if it needs javax.sound to decode. */
+    private static MappedPcmReader openMapped(File file) {
+        try {
+            return MappedPcmReader.open(file.toPath());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static AudioFormat pcm16(AudioFormat source) {
+        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(), 16,
+                source.getChannels(), source.getChannels() * 2, source.getSampleRate(), false);
+    }
+
+    private PcmRingBuffer newRing(AudioFormat format) {
+        return new PcmRingBuffer(bytesFor(format, Math.max(MIN_RING_MILLIS, bufferMillis * 4)));
+    }
+
+    private void decode(Track track, PcmInput input, Closeable resource) {
+        byte[] chunk = new byte[bytesFor(track.format, periodMillis) * 4];
+        long parkNanos = periodMillis * 500_000L;
+        try (resource) {
+            int n;
+            while (!track.cancelled && track.error == null && (n = input.read(chunk, 0, chunk.length)) > 0) {
+                int offset = 0;
+                while (offset < n && !track.cancelled) {
+                    int written = track.ring.write(chunk, offset, n - offset);
+                    offset += written;
+                    if (written == 0) {
+                        LockSupport.parkNanos(parkNanos);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            track.error = e;
+        }
+        track.decoded = true;
+        LockSupport.unpark(playbackThread);
+    }
+
+    private void playbackLoop() {
+        Track playing = null;
+        AudioFormat sinkFormat = null;
+        boolean sinkRunning = false;
+        long sinkWritten = 0;
+        long lastWriteNanos = 0;
+        boolean starved = false;
+        byte[] period = new byte[0];
+
+        while (running) {
+            Track track = current;
+            releaseDropped();
+            if (track == null || paused) {
+                if (sinkRunning) {
+                    sink.stop();
+                    sinkRunning = false;
+                }
+                if (track != null) {
+                    updatePosition(track);
+                    // Don't count the pause as a gap between fade updates
+                    track.lastFadeWriteNanos = 0;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            if (track != playing) {
+                if (sinkFormat == null || !track.format.matches(sinkFormat)) {
+                    try {
+                        sink.open(track.format, bytesFor(track.format, bufferMillis));
+                    } catch (IOException e) {
+                        fail(track, e);
+                        sinkFormat = null;
+                        continue;
+                    }
+                    sinkFormat = track.format;
+                    sinkRunning = false;
+                    sinkWritten = sink.getFramePosition();
+                } else if (!track.advanced) {
+                    // Started or seeked: drop what's left of the previous audio
+                    sink.flush();
+                    sinkWritten = sink.getFramePosition();
+                }
+                track.sinkBase = sinkWritten;
+                playing = track;
+                int bytes = bytesFor(track.format, periodMillis);
+                if (period.length != bytes) {
+                    period = new byte[bytes];
+                }
+            }
+            if (!sinkRunning) {
+                sink.start();
+                sinkRunning = true;
+            }
+
+            if (startCrossfade(track, sinkFormat)) {
+                continue;
+            }
+
+            int frameSize = track.format.getFrameSize();
+            int n;
+            try {
+                n = writePeriod(track, period);
+            } catch (IOException e) {
+                if (!track.cancelled) {
+                    fail(track, e);
+                }
+                continue;
+            }
+            if (n > 0) {
+                sinkWritten += n / frameSize;
+                track.framesRead += n / frameSize;
+                starved = false;
+                SpectrumAnalyzer analyzer = spectrum;
+                if (analyzer != null) {
+                    analyzer.setDelayFrames(sinkWritten - sink.getFramePosition());
+                }
+                if (track.requestNanos != 0) {
+                    long nanos = System.nanoTime() - track.requestNanos;
+                    track.requestNanos = 0;
+                    callbackExecutor.execute(() -> firstAudioWritten(track, nanos));
+                }
+                if (track.advanced && track.gapNanos < 0) {
+                    track.gapNanos = System.nanoTime() - lastWriteNanos;
+                }
+                lastWriteNanos = System.nanoTime();
+                updatePosition(track);
+                continue;
+            }
+
+            if (!track.decoded) {
+                if (!starved && sink.getFramePosition() >= sinkWritten) {
+                    underruns++;
+                    starved = true;
+                }
+                LockSupport.parkNanos(periodMillis * 500_000L);
+                continue;
+            }
+            if (track.error != null) {
+                fail(track, track.error);
+                continue;
+            }
+
+            // Everything decoded has been written: move straight on if the
+            // next track is ready and can share the open sink
+            Track following = next;
+            if (following != null && following.format.matches(sinkFormat)) {
+                synchronized (lock) {
+                    if (current == track && next == following) {
+                        following.advanced = true;
+                        next = null;
+                        current = following;
+                    }
+                }
+                track.release();
+                continue;
+            }
+
+            // Otherwise let the sink play out before reporting the end
+            if (sink.getFramePosition() < sinkWritten) {
+                updatePosition(track);
+                LockSupport.parkNanos(periodMillis * 500_000L);
+                continue;
+            }
+            boolean ended;
+            synchronized (lock) {
+                ended = current == track;
+                if (ended) {
+                    current = null;
+                }
+            }
+            track.release();
+            if (ended) {
+                transitionStartNanos = System.nanoTime();
+                callbackExecutor.execute(this::endOfMedia);
+            }
+        }
+        releaseDropped();
+        sink.close();
+    }
+
+    /**
+     * Playback thread, between periods: closes the readers of tracks other
+     * threads have replaced, now that nothing here is reading them.
+     */
+    private void releaseDropped() {
+        Track track;
+        while ((track = dropped.poll()) != null) {
+            track.release();
+        }
+    }
+
+    /**
+     * Playback thread: once the track is within the crossfade length of its
+     * end, makes the ready next track current and keeps this one as its
+     * {@code fadeFrom}. The hand-off happens on an exact frame.
+     */
+    private boolean startCrossfade(Track track, AudioFormat sinkFormat) {
+        long millis = crossfadeMillis;
+        Track following = next;
+        if (millis == 0 || following == null || track.fadeFrom != null || track.totalFrames <= 0
+                || !following.format.matches(sinkFormat)) {
+            return false;
+        }
+        long remaining = track.totalFrames - track.framesRead;
+        if (remaining > (long) (millis * track.format.getFrameRate() / 1000)) return false;
+        synchronized (lock) {
+            if (current != track || next != following) return false;
+            following.advanced = true;
+            following.fadeFrom = track;
+            following.fadeFrames = Math.max(1, remaining);
+            next = null;
+            current = following;
+        }
+        return true;
+    }
+
+    /**
+     * Playback thread: writes the next period of the track to the sink and
+     * returns its size in bytes, 0 if nothing is buffered yet. Mapped 16-bit
+     * audio goes to the sink as a view of the file, which applies the gain
+     * in whatever copy it makes.
+     */
+    private int writePeriod(Track track, byte[] period) throws IOException {
+        float g = normalization ? gain * track.normalizationGain : gain;
+        Track outgoing = track.fadeFrom;
+        if (outgoing != null) {
+            return writeCrossfade(track, outgoing, period, g);
+        }
+        SpectrumAnalyzer analyzer = spectrum;
+        int channels = track.format.getChannels();
+        if (track.mapped != null) {
+            ByteBuffer slice = track.mapped.read(period.length);
+            int n = slice.remaining();
+            if (n > 0 && analyzer != null) {
+                analyzer.write(slice, slice.position(), n, channels, track.format.getFrameRate());
+            }
+            if (n > 0) {
+                sink.write(slice, g);
+            }
+            return n;
+        }
+        int n = Math.min(track.ring.available(), period.length);
+        n -= n % track.format.getFrameSize();
+        if (n > 0) {
+            track.ring.read(period, 0, n);
+            if (analyzer != null) {
+                // Before the volume, so the display doesn't shrink with it
+                analyzer.write(period, 0, n, channels, track.format.getFrameRate());
+            }
+            applyGain(period, n, g);
+            sink.write(period, 0, n);
+        }
+        return n;
+    }
+
+    /**
+     * Playback thread: mixes the incoming track with the tail of the
+     * outgoing one along the equal-power curve, computing both gains for
+     * every frame from its offset into the fade.
+     */
+    private int writeCrossfade(Track track, Track outgoing, byte[] period, float g) throws IOException {
+        int n = readPeriod(track, period, period.length);
+        if (n == 0) return 0;
+        SpectrumAnalyzer analyzer = spectrum;
+        if (analyzer != null) {
+            // The incoming track alone: the one the display belongs to
+            analyzer.write(period, 0, n, track.format.getChannels(), track.format.getFrameRate());
+        }
+        if (fadeBuffer.length < n) {
+            fadeBuffer = new byte[period.length];
+        }
+        int m;
+        try {
+            m = readPeriod(outgoing, fadeBuffer, n);
+        } catch (IOException e) {
+            // The outgoing track is gone; finish on the incoming one alone
+            m = 0;
+        }
+        float og = normalization ? gain * outgoing.normalizationGain : gain;
+        int frameSize = track.format.getFrameSize();
+        long position = track.fadePosition;
+        double length = track.fadeFrames;
+        for (int i = 0, frame = 0; i < n; i += frameSize, frame++) {
+            double t = (position + frame) / length;
+            float in = (float) (CrossfadeStats.fadeIn(t) * g);
+            float out = (float) (CrossfadeStats.fadeOut(t) * og);
+            for (int k = i; k < i + frameSize; k += 2) {
+                int mixed = (int) (sample(period, k) * in + (k < m ? sample(fadeBuffer, k) * out : 0));
+                mixed = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mixed));
+                period[k] = (byte) mixed;
+                period[k + 1] = (byte) (mixed >> 8);
+            }
+        }
+        sink.write(period, 0, n);
+        track.fadePosition = position + n / frameSize;
+        outgoing.framesRead += m / frameSize;
+
+        long now = System.nanoTime();
+        if (track.lastFadeWriteNanos != 0) {
+            // Gains move smoothly within a period; the largest step is between adjacent frames
+            crossfadeStats.update(now - track.lastFadeWriteNanos, Math.PI / 2 / length);
+        }
+        track.lastFadeWriteNanos = now;
+
+        boolean outgoingDone = m < n && outgoing.decoded && (outgoing.ring == null || outgoing.ring.available() == 0);
+        if (track.fadePosition >= track.fadeFrames || outgoingDone) {
+            long plannedNanos = (long) (track.fadeFrames * 1e9 / track.format.getFrameRate());
+            long actualNanos = (long) (track.fadePosition * 1e9 / track.format.getFrameRate());
+            crossfadeStats.finished(plannedNanos, actualNanos);
+            track.fadeFrom = null;
+            outgoing.release();
+        }
+        return n;
+    }
+
+    /** Playback thread: copies up to {@code max} bytes of whole frames without gain. */
+    private static int readPeriod(Track track, byte[] dst, int max) throws IOException {
+        if (track.mapped != null) {
+            ByteBuffer slice = track.mapped.read(max);
+            int n = slice.remaining();
+            slice.get(dst, 0, n);
+            return n;
+        }
+        int n = Math.min(track.ring.available(), max);
+        n -= n % track.format.getFrameSize();
+        return n > 0 ? track.ring.read(dst, 0, n) : 0;
+    }
+
+    private static int sample(byte[] data, int i) {
+        return (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+    }
+
+    /** Playback thread: tracks what the sink has actually played of the track. */
+    private void updatePosition(Track track) {
+        long played = sink.getFramePosition() - track.sinkBase;
+        if (played < 0) return;
+        track.positionFrames = track.startFrame + played;
+        if (!track.started) {
+            track.started = true;
+            long startedNanos = System.nanoTime();
+            callbackExecutor.execute(() -> trackStarted(track, startedNanos));
+        }
+        long now = System.nanoTime();
+        if (now - track.lastPublishNanos >= publishIntervalNanos && publishScheduled.compareAndSet(false, true)) {
+            track.lastPublishNanos = now;
+            callbackExecutor.execute(this::publishPosition);
+        }
+    }
+
+    private void fail(Track track, IOException e) {
+        System.err.println("Playback error: " + e.getMessage());
+        PlayerEvents.playbackError(ENGINE, track.song.getFilePath(), e.getMessage());
+        track.release();
+        synchronized (lock) {
+            if (current == track) {
+                current = null;
+            }
+        }
+        callbackExecutor.execute(() -> status.set(MediaPlayer.Status.STOPPED));
+    }
+
+    /** Load or seek latency: from the request until its first audio reached the sink. */
+    private void firstAudioWritten(Track track, long nanos) {
+        if (track.seekTargetMillis >= 0) {
+            PlayerEvents.seeked(ENGINE, track.song.getFilePath(), track.seekTargetMillis, nanos);
+        } else {
+            PlayerEvents.trackLoaded(ENGINE, track.song.getFilePath(), false, nanos);
+        }
+    }
+
+    private void trackStarted(Track track, long startedNanos) {
+        if (track != current) return;
+        if (!paused) {
+            status.set(MediaPlayer.Status.PLAYING);
+        }
+        if (track.advanced) {
+            transitionLatency.set(Duration.millis(track.gapNanos / 1_000_000.0));
+            PlayerEvents.transition(ENGINE, track.song.getFilePath(), true, track.gapNanos);
+            totalDuration.set(Duration.millis(track.totalMillis()));
+            track.song.setDurationMillis(track.totalMillis());
+            if (onTrackAdvanced != null) {
+                onTrackAdvanced.accept(track.song);
+            }
+        } else if (transitionStartNanos != 0) {
+            long gap = startedNanos - transitionStartNanos;
+            transitionLatency.set(Duration.millis(gap / 1_000_000.0));
+            transitionStartNanos = 0;
+            PlayerEvents.transition(ENGINE, track.song.getFilePath(), false, gap);
+        }
+    }
+
+    private void endOfMedia() {
+        status.set(MediaPlayer.Status.STOPPED);
+        if (onEndOfMedia != null) {
+            advancing = true;
+            try {
+                onEndOfMedia.run();
+            } finally {
+                advancing = false;
+            }
+        }
+    }
+
+    private void publishPosition() {
+        publishScheduled.set(false);
+        Track track = current;
+        if (track == null) return;
+        long allocated = positionStats.beginUpdate();
+        long millis = (long) (track.positionFrames * 1000.0 / track.format.getFrameRate());
+        setPosition(millis);
+        maybePreloadNext(track, millis);
+        positionStats.endUpdate(allocated);
+    }
+
+    private void setPosition(long millis) {
+        if (millis != positionMillis.get()) {
+            positionMillis.set(millis);
+            currentTime.set(Duration.millis(millis));
+        }
+    }
+
+    private void maybePreloadNext(Track track, long position) {
+        if ((!gapless && crossfadeMillis == 0) || next != null || nextTrackProvider == null) return;
+        long total = track.totalMillis();
+        if (total <= 0 || total - position > PRELOAD_LEAD.toMillis() + crossfadeMillis) return;
+
+        Song song = nextTrackProvider.get();
+        if (song == null) return;
+        long requested = System.nanoTime();
+        try {
+            next = openTrack(song, 0);
+            PlayerEvents.trackLoaded(ENGINE, song.getFilePath(), true, System.nanoTime() - requested);
+        } catch (IOException e) {
+            System.err.println("Cannot preload " + song.getFilePath() + ": " + e.getMessage());
+            PlayerEvents.playbackError(ENGINE, song.getFilePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Makes {@code track} current. The previous one may still be mid-read on
+     * the playback thread, so it is only cancelled here and handed to that
+     * thread to release.
+     */
+    private void replaceCurrent(Track track) {
+        Track previous;
+        synchronized (lock) {
+            previous = current;
+            current = track;
+        }
+        if (previous != null && previous != track) {
+            previous.cancel();
+            dropped.add(previous);
+            Track fading = previous.fadeFrom;
+            if (fading != null) {
+                // Skipped, seeked or stopped mid-fade: cut the outgoing track too
+                fading.cancel();
+                dropped.add(fading);
+                crossfadeStats.aborted();
+            }
+        }
+        LockSupport.unpark(playbackThread);
+    }
+
+    private void discardNext() {
+        Track preloaded;
+        // Under the lock the playback thread can't be taking it over, so it is never read again
+        synchronized (lock) {
+            preloaded = next;
+            next = null;
+        }
+        if (preloaded != null) {
+            preloaded.release();
+        }
+    }
+
+    private static int bytesFor(AudioFormat format, int millis) {
+        int frames = Math.max(1, (int) (format.getFrameRate() * millis / 1000));
+        return frames * format.getFrameSize();
+    }
+
+    /**
+     * Copies the remaining 16-bit little-endian samples of {@code source}
+     * into {@code target} scaled by {@code gain}, clipping gains above 1.
+     */
+    static void copyWithGain(ByteBuffer source, byte[] target, float gain) {
+        int length = source.remaining();
+        if (gain == 1f) {
+            source.get(target, 0, length);
+            return;
+        }
+        int base = source.position();
+        ByteBuffer samples = source.order() == ByteOrder.LITTLE_ENDIAN
+                ? source : source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i + 1 < length; i += 2) {
+            int sample = samples.getShort(base + i);
+            sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int) (sample * gain)));
+            target[i] = (byte) sample;
+            target[i + 1] = (byte) (sample >> 8);
+        }
+        source.position(base + length);
+    }
+
+    /** Scales 16-bit little-endian samples in place, clipping gains above 1. */
+    static void applyGain(byte[] data, int length, float gain) {
+        if (gain == 1f) return;
+        for (int i = 0; i + 1 < length; i += 2) {
+            int sample = (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+            sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int) (sample * gain)));
+            data[i] = (byte) sample;
+            data[i + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    @Override
+    public void pause() {
+        if (current != null && status.get() == MediaPlayer.Status.PLAYING) {
+            paused = true;
+            status.set(MediaPlayer.Status.PAUSED);
+            LockSupport.unpark(playbackThread);
+        }
+    }
+
+    @Override
+    public void resume() {
+        if (current != null && status.get() == MediaPlayer.Status.PAUSED) {
+            paused = false;
+            status.set(MediaPlayer.Status.PLAYING);
+            LockSupport.unpark(playbackThread);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (current != null) {
+            replaceCurrent(null);
+            status.set(MediaPlayer.Status.STOPPED);
+            setPosition(0);
+        }
+    }
+
+    @Override
+    public void seek(Duration target) {
+        Track track = current;
+        if (track == null) return;
+        long frame = (long) (Math.max(0, target.toMillis()) * track.format.getFrameRate() / 1000);
+        long requested = System.nanoTime();
+        try {
+            Track seeked = openTrack(track.song, frame);
+            seeked.requestNanos = requested;
+            seeked.seekTargetMillis = (long) target.toMillis();
+            // Already playing: report PLAYING again only if it was
+            seeked.started = track.started;
+            replaceCurrent(seeked);
+        } catch (IOException e) {
+            System.err.println("Cannot seek " + track.song.getFilePath() + ": " + e.getMessage());
+            PlayerEvents.playbackError(ENGINE, track.song.getFilePath(), e.getMessage());
+            return;
+        }
+        setPosition((long) target.toMillis());
+    }
+
+    @Override
+    public void setVolume(double value) {
+        this.volume = Math.max(0.0, Math.min(1.0, value));
+        updateGain();
+    }
+
+    @Override
+    public double getVolume() {
+        return volume;
+    }
+
+    @Override
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+        updateGain();
+    }
+
+    @Override
+    public boolean isMuted() {
+        return muted;
+    }
+
+    @Override
+    public void setLoudnessNormalization(boolean enabled) {
+        this.normalization = enabled;
+    }
+
+    @Override
+    public boolean isLoudnessNormalization() {
+        return normalization;
+    }
+
+    private void updateGain() {
+        gain = muted ? 0f : (float) volume;
+    }
+
+    @Override
+    public void setTrackCache(TrackCache cache) {
+        this.trackCache = cache;
+    }
+
+    @Override
+    public void setGapless(boolean gapless) {
+        this.gapless = gapless;
+        if (!gapless && crossfadeMillis == 0) {
+            discardNext();
+        }
+    }
+
+    @Override
+    public boolean isGapless() {
+        return gapless;
+    }
+
+    @Override
+    public void setCrossfade(Duration duration) {
+        double millis = duration == null ? 0 : Math.max(0, Math.min(MAX_CROSSFADE.toMillis(), duration.toMillis()));
+        this.crossfadeMillis = (long) millis;
+    }
+
+    @Override
+    public Duration getCrossfade() {
+        return Duration.millis(crossfadeMillis);
+    }
+
+    @Override
+    public CrossfadeStats getCrossfadeStats() {
+        return crossfadeStats;
+    }
+
+    @Override
+    public void clearPreloaded() {
+        discardNext();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> currentTimeProperty() {
+        return currentTime;
+    }
+
+    @Override
+    public ReadOnlyLongProperty positionMillisProperty() {
+        return positionMillis;
+    }
+
+    @Override
+    public void setPositionUpdateRate(double hz) {
+        this.positionUpdateRate = Math.max(1.0, Math.min(60.0, hz));
+        this.publishIntervalNanos = (long) (1e9 / positionUpdateRate);
+    }
+
+    @Override
+    public double getPositionUpdateRate() {
+        return positionUpdateRate;
+    }
+
+    @Override
+    public PositionStats getPositionStats() {
+        return positionStats;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> totalDurationProperty() {
+        return totalDuration;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<MediaPlayer.Status> statusProperty() {
+        return status;
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Duration> transitionLatencyProperty() {
+        return transitionLatency;
+    }
+
+    @Override
+    public void setOnEndOfMedia(Runnable handler) {
+        this.onEndOfMedia = handler;
+    }
+
+    @Override
+    public void setOnMetadataAvailable(Consumer<Song> handler) {
+        // WAV and AIFF carry no tags beyond what MetadataReader already
+        // reads, so playback never reveals new metadata
+    }
+
+    @Override
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        this.spectrum = analyzer;
+    }
+
+    @Override
+    public void setOnArtworkAvailable(BiConsumer<Song, Image> handler) {
+        // Embedded pictures are read by MetadataReader, never by playback
+    }
+
+    @Override
+    public void setNextTrackProvider(Supplier<Song> provider) {
+        this.nextTrackProvider = provider;
+    }
+
+    @Override
+    public void setOnTrackAdvanced(Consumer<Song> handler) {
+        this.onTrackAdvanced = handler;
+    }
+
+    @Override
+    public void dispose() {
+        discardNext();
+        replaceCurrent(null);
+        running = false;
+        LockSupport.unpark(playbackThread);
+        try {
+            playbackThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface PcmInput {
+        int read(byte[] dst, int offset, int length) throws IOException;
+    }
+
+    /** One decode of a song from a start frame; a seek makes a new one. */
+    private static final class Track {
+        final Song song;
+        final AudioFormat format;
+        final long startFrame;
+        final long totalFrames;
+        final PcmRingBuffer ring;
+        final MappedPcmReader mapped;
+        // Fixed per track so a gapless hand-off switches gain on the exact frame
+        final float normalizationGain;
+
+        volatile boolean decoded = false;
+        volatile boolean cancelled = false;
+        volatile IOException error;
+        volatile boolean advanced = false;
+        volatile long positionFrames;
+        // Set before the track is published; the playback thread clears requestNanos once reported
+        long requestNanos = 0;
+        long seekTargetMillis = -1;
+        // The track fading out under this one; cleared when the fade ends
+        volatile Track fadeFrom;
+
+        // Playback thread only
+        long framesRead;
+        long fadeFrames;
+        long fadePosition = 0;
+        long lastFadeWriteNanos = 0;
+        long sinkBase;
+        boolean started = false;
+        long gapNanos = -1;
+        long lastPublishNanos = 0;
+
+        /** Exactly one of {@code ring} (decoded) and {@code mapped} (direct) is set. */
+        Track(Song song, AudioFormat format, long startFrame, long totalFrames, PcmRingBuffer ring,
+              MappedPcmReader mapped) {
+            this.song = song;
+            this.format = format;
+            this.startFrame = startFrame;
+            this.totalFrames = totalFrames;
+            this.ring = ring;
+            this.mapped = mapped;
+            this.normalizationGain = (float) song.getNormalizationGain();
+            this.positionFrames = startFrame;
+            this.framesRead = startFrame;
+            this.decoded = mapped != null;
+        }
+
+        /** Stops the decoder and playback of this track; safe from any thread. */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Cancels the track and closes its mapped reader. Only for the thread
+         * that reads from it: the playback thread, or the opener before the
+         * track is published.
+         */
+        void release() {
+            cancelled = true;
+            if (mapped != null) {
+                try {
+                    mapped.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        long totalMillis() {
+            return totalFrames < 0 ? 0 : (long) (totalFrames * 1000.0 / format.getFrameRate());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.musicplayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer, single-consumer byte ring between the PCM decoder and
+ * the playback thread. Neither side takes a lock: each owns one counter and
+ * only reads the other's, so a full or empty buffer shows up as a short
+ * read or write rather than blocking.
+ */
+final class PcmRingBuffer {
+
+    private final byte[] buffer;
+    private final int mask;
+
+    // Total bytes ever written and read; the difference is what's buffered
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+
+    /** Capacity is rounded up to a power of two. */
+    PcmRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /** Bytes available to the consumer. */
+    int available() {
+        return (int) (written.get() - read.get());
+    }
+
+    /** Producer side: copies up to {@code length} bytes, returning how many fit. */
+    int write(byte[] src, int offset, int length) {
+        long w = written.get();
+        int count = Math.min(length, buffer.length - (int) (w - read.get()));
+        if (count <= 0) return 0;
+        int start = (int) (w & mask);
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(src, offset, buffer, start, first);
+        System.arraycopy(src, offset + first, buffer, 0, count - first);
+        written.lazySet(w + count);
+        return count;
+    }
+
+    /** Consumer side: copies up to {@code length} bytes, returning how many were read. */
+    int read(byte[] dst, int offset, int length) {
+        long r = read.get();
+        int count = Math.min(length, (int) (written.get() - r));
+        if (count <= 0) return 0;
+        int start = (int) (r & mask);
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(buffer, start, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, count - first);
+        read.lazySet(r + count);
+        return count;
+    }
+}
@@ -0,0 +1,263 @@
+package com.musicplayer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Decides what plays next: an up-next queue first, then either the playlist
+ * order or a shuffle, plus the history that "previous" walks back through.
+ * Tracks are {@link Song#getId() ids}, so sorting the playlist leaves the
+ * order alone and nothing here is boxed.
+ *
+ * <p>The shuffle is one Fisher-Yates permutation per cycle, split into the
+ * tracks already played this cycle and the ones still to come. An added
+ * track is swapped into a random upcoming slot and a removed one is
+ * swapped out, both O(1); only starting a new cycle is O(n), once every n
+ * tracks. The artist-spread variant looks a few upcoming tracks ahead for
+ * one by a different artist than the current one. History and the queue
+ * drop removed tracks lazily when they come up.
+ *
+ * <p>Not thread-safe; the player uses it on the FX thread.
+ */
+public class PlaybackOrder {
+
+    public enum Mode {
+        IN_ORDER("In order"),
+        SHUFFLE("Shuffle"),
+        ARTIST_SPREAD("Shuffle, spread artists");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /** How far ahead artist spread looks for a different artist. */
+    static final int SPREAD_LOOKAHEAD = 16;
+
+    private final TrackStore store;
+    private final Random random;
+    private Mode mode = Mode.IN_ORDER;
+
+    // Shuffle permutation: perm[0, cursor) played this cycle, perm[cursor, size) upcoming
+    private int[] perm = new int[1024];
+    private int size = 0;
+    private int cursor = 0;
+    // Per id: slot in perm, -1 if not in the playlist, and how many times it is in it
+    private int[] slot = new int[1024];
+    private int[] copies = new int[1024];
+
+    // Up-next queue as a ring buffer
+    private int[] queue = new int[16];
+    private int queueHead = 0;
+    private int queueSize = 0;
+
+    private final IntList history = new IntList();
+    private int current = -1;
+
+    public PlaybackOrder(TrackStore store) {
+        this(store, new Random());
+    }
+
+    PlaybackOrder(TrackStore store, Random random) {
+        this.store = store;
+        this.random = random;
+        Arrays.fill(slot, -1);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        if (mode != this.mode && mode != Mode.IN_ORDER) {
+            newCycle();
+            if (contains(current)) {
+                swap(slot[current], cursor++);
+            }
+        }
+        this.mode = mode;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < slot.length && slot[id] >= 0;
+    }
+
+    /** A track was added to the playlist. It comes up at a random point of the rest of this cycle. */
+    public void add(int id) {
+        ensureId(id);
+        if (copies[id]++ > 0) return;
+        if (size == perm.length) {
+            perm = Arrays.copyOf(perm, size + (size >> 1));
+        }
+        place(id, size++);
+        swap(size - 1, cursor + random.nextInt(size - cursor));
+    }
+
+    /** A track was removed from the playlist. */
+    public void remove(int id) {
+        if (!contains(id) || --copies[id] > 0) return;
+        int i = slot[id];
+        if (i < cursor) {
+            // Keep the played part contiguous: its last track fills the hole
+            cursor--;
+            place(perm[cursor], i);
+            i = cursor;
+        }
+        place(perm[size - 1], i);
+        size--;
+        slot[id] = -1;
+        if (current == id) {
+            current = -1;
+        }
+    }
+
+    /** Plays {@code id} after everything already queued. */
+    public void enqueue(int id) {
+        growQueue();
+        queue[(queueHead + queueSize++) % queue.length] = id;
+    }
+
+    /** Plays {@code id} next, ahead of the rest of the queue. */
+    public void enqueueFirst(int id) {
+        growQueue();
+        queueHead = (queueHead + queue.length - 1) % queue.length;
+        queue[queueHead] = id;
+        queueSize++;
+    }
+
+    public int getQueued() {
+        return queueSize;
+    }
+
+    public void clearQueue() {
+        queueSize = 0;
+    }
+
+    /**
+     * The track to play after the current one without committing to it: the
+     * head of the queue, else the next shuffled track. -1 means the
+     * playlist order applies.
+     */
+    public int peekNext() {
+        while (queueSize > 0) {
+            int id = queue[queueHead];
+            if (contains(id)) return id;
+            pollQueue();
+        }
+        if (mode == Mode.IN_ORDER || size == 0) return -1;
+        if (cursor == size) {
+            newCycle();
+        }
+        if (mode == Mode.ARTIST_SPREAD && current >= 0) {
+            spreadArtist();
+        }
+        return perm[cursor];
+    }
+
+    /**
+     * Records that {@code id} started playing, whatever chose it; the track
+     * it replaces goes onto the history.
+     */
+    public void played(int id) {
+        if (id == current) return;
+        if (queueSize > 0 && queue[queueHead] == id) {
+            pollQueue();
+        }
+        if (contains(id) && slot[id] >= cursor) {
+            swap(slot[id], cursor++);
+        }
+        if (current >= 0) {
+            history.add(current);
+        }
+        current = id;
+    }
+
+    /**
+     * Steps back: returns the track played before the current one and makes
+     * it current, without adding to the history. -1 when there is none.
+     */
+    public int previous() {
+        while (!history.isEmpty()) {
+            int id = history.removeLast();
+            if (contains(id)) {
+                current = id;
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    /** Reshuffles everything for a new cycle, never starting with the current track. */
+    private void newCycle() {
+        cursor = 0;
+        for (int i = size - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+        if (size > 1 && perm[0] == current) {
+            swap(0, 1 + random.nextInt(size - 1));
+        }
+    }
+
+    private void spreadArtist() {
+        int artist = store.artistId(current);
+        if (store.artistId(perm[cursor]) != artist) return;
+        int end = Math.min(size, cursor + 1 + SPREAD_LOOKAHEAD);
+        for (int i = cursor + 1; i < end; i++) {
+            if (store.artistId(perm[i]) != artist) {
+                swap(cursor, i);
+                return;
+            }
+        }
+    }
+
+    private void growQueue() {
+        if (queueSize < queue.length) return;
+        int[] grown = new int[queue.length * 2];
+        for (int i = 0; i < queueSize; i++) {
+            grown[i] = queue[(queueHead + i) % queue.length];
+        }
+        queue = grown;
+        queueHead = 0;
+    }
+
+    private void pollQueue() {
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+    }
+
+    private void swap(int i, int j) {
+        int a = perm[i];
+        place(perm[j], i);
+        place(a, j);
+    }
+
+    private void place(int id, int i) {
+        perm[i] = id;
+        slot[id] = i;
+    }
+
+    private void ensureId(int id) {
+        if (id >= slot.length) {
+            int capacity = Math.max(id + 1, slot.length + (slot.length >> 1));
+            int old = slot.length;
+            slot = Arrays.copyOf(slot, capacity);
+            Arrays.fill(slot, old, capacity, -1);
+            copies = Arrays.copyOf(copies, capacity);
+        }
+    }
+}
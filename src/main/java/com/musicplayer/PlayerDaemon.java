@@ -0,0 +1,423 @@
+package com.musicplayer;
+
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The player without a window: the PCM engine (WAV/AIFF) and the library,
+ * controlled over a Unix domain socket with one text command per line.
+ *
+ * <pre>
+ * play [index] | pause | toggle | stop | next | prev | seek SECONDS |
+ * volume 0..1 | enqueue PATH | add PATH | status | shutdown
+ * </pre>
+ *
+ * Each answer is one line starting with {@code OK} or {@code ERR}. Every
+ * client gets a virtual thread that only parses and waits; commands that
+ * change state run one at a time on the "player" thread, which also
+ * receives the engine's callbacks, so player state needs no locks.
+ * {@code status} is answered from a snapshot the player thread publishes
+ * and never waits for it.
+ */
+public class PlayerDaemon {
+
+    static final long COMMAND_TIMEOUT_MILLIS = 5000;
+    // Pending connections; the default of 50 refuses a burst of clients connecting at once
+    static final int ACCEPT_BACKLOG = 1024;
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private final Path socket;
+    private final AudioEngine engine;
+    private final ExecutorService player;
+    private final ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+    private final PlaybackOrder order = new PlaybackOrder(TrackStore.getDefault());
+
+    // Player thread only
+    private final List<Song> playlist = new ArrayList<>();
+    private final Map<String, Song> songsByPath = new HashMap<>();
+    private int[] positions = new int[1024];
+    private int currentIndex = -1;
+
+    private volatile Status status = new Status(MediaPlayer.Status.UNKNOWN, -1, null, 0, 0, 0.5, 0, 0);
+    private ServerSocketChannel server;
+    private volatile boolean closed = false;
+
+    /** What {@code status} reports; published by the player thread after every change. */
+    record Status(MediaPlayer.Status state, int index, String path, long positionMillis, long durationMillis,
+                  double volume, int queued, int tracks) {
+
+        String format() {
+            return String.format(Locale.ROOT,
+                    "state=%s index=%d position=%.1f duration=%.1f volume=%.2f queued=%d tracks=%d path=%s",
+                    state, index, positionMillis / 1000.0, durationMillis / 1000.0, volume, queued, tracks,
+                    path == null ? "" : path);
+        }
+    }
+
+    public PlayerDaemon(Path socket, AudioSink sink) {
+        this.socket = socket;
+        this.player = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "player");
+            t.setDaemon(true);
+            return t;
+        });
+        this.engine = PcmAudioEngine.create(sink, player);
+        Arrays.fill(positions, -1);
+        player.execute(this::setupEngine);
+    }
+
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("user.home"), ".musicplayer", "player.sock");
+    }
+
+    /**
+     * Runs the daemon until a {@code shutdown} command or the process is
+     * stopped. Plays to the sound card, or discards audio in real time with
+     * {@code -Dmusicplayer.sink=discard}. The library is the one the window
+     * uses; audio files named as arguments are appended to it.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path socket = System.getProperty("musicplayer.socket") != null
+                ? Path.of(System.getProperty("musicplayer.socket")) : defaultSocket();
+        AudioSink sink = "discard".equals(System.getProperty("musicplayer.sink"))
+                ? AudioSink.discard(true) : AudioSink.line();
+        PlayerDaemon daemon = new PlayerDaemon(socket, sink);
+
+        List<Song> songs = new ArrayList<>();
+        try {
+            songs.addAll(new LibraryIndex(LibraryIndex.defaultLocation()).load());
+        } catch (IOException e) {
+            System.err.println("Cannot read library index: " + e.getMessage());
+        }
+        Map<String, Song> byPath = new HashMap<>();
+        for (Song song : songs) {
+            byPath.putIfAbsent(song.getFilePath(), song);
+        }
+        for (String arg : args) {
+            // A file already in the library is played as that track, not added again
+            String path = Path.of(arg).toAbsolutePath().toString();
+            if (!byPath.containsKey(path)) {
+                Song song = new Song(path);
+                byPath.put(path, song);
+                songs.add(song);
+            }
+        }
+        daemon.addAll(songs);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "daemon-shutdown"));
+        daemon.start();
+        System.out.println("Listening on " + socket + " with " + songs.size() + " tracks");
+        daemon.awaitClose();
+    }
+
+    /** Appends tracks to the playlist. */
+    public void addAll(List<Song> songs) {
+        List<Song> copy = List.copyOf(songs);
+        player.execute(() -> {
+            copy.forEach(this::append);
+            publishStatus();
+        });
+    }
+
+    /**
+     * Binds the socket and starts accepting clients. Fails if another daemon
+     * already answers on it; a socket file nobody listens on is replaced.
+     */
+    public synchronized void start() throws IOException {
+        Path directory = socket.toAbsolutePath().getParent();
+        createPrivateDirectory(directory);
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            if (answers(address)) {
+                throw new IOException("Another daemon is listening on " + socket);
+            }
+            // Left behind by a daemon that didn't shut down cleanly
+            Files.deleteIfExists(socket);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address, ACCEPT_BACKLOG);
+        try {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the directory's permissions apply
+        }
+        Thread acceptor = new Thread(this::acceptLoop, "daemon-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static boolean answers(UnixDomainSocketAddress address) {
+        try (SocketChannel probe = SocketChannel.open(address)) {
+            return probe.isConnected();
+        } catch (IOException e) {
+            // Refused, or not a socket at all
+            return false;
+        }
+    }
+
+    /**
+     * Creates the socket's directory readable by its owner only, so the
+     * socket is never reachable by others, not even between bind and chmod.
+     * The player's own directory is tightened if it already exists; any
+     * other existing directory is left as it is.
+     */
+    private static void createPrivateDirectory(Path directory) throws IOException {
+        try {
+            if (Files.notExists(directory)) {
+                Files.createDirectories(directory.getParent());
+                Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+            } else if (directory.equals(defaultSocket().getParent())) {
+                Files.setPosixFilePermissions(directory, PRIVATE_DIRECTORY);
+            }
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+            Files.createDirectories(directory);
+        } catch (FileAlreadyExistsException e) {
+            // Created by someone else meanwhile
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            // Only a socket this daemon bound; a failed start leaves another daemon's alone
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(socket);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot close " + socket + ": " + e.getMessage());
+        }
+        clients.shutdownNow();
+        player.execute(engine::dispose);
+        player.shutdown();
+        notifyAll();
+    }
+
+    public synchronized void awaitClose() throws InterruptedException {
+        while (!closed) {
+            wait();
+        }
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                SocketChannel client = server.accept();
+                clients.execute(() -> serve(client));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Cannot accept control client: " + e.getMessage());
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (ControlConnection connection = new ControlConnection(client)) {
+            String line;
+            while ((line = connection.readLine()) != null) {
+                long start = System.nanoTime();
+                String command = line.strip();
+                String reply = handle(command);
+                connection.writeLine(reply);
+                PlayerEvents.daemonCommand(commandOf(command), reply.startsWith("OK"), System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    String handle(String line) {
+        if (line.isEmpty()) return "ERR empty command";
+        String command = commandOf(line);
+        String argument = line.length() > command.length() ? line.substring(command.length()).strip() : "";
+        switch (command) {
+            case "status":
+                return "OK " + status.format();
+            case "shutdown":
+                Thread.ofVirtual().start(this::close);
+                return "OK";
+            case "play", "pause", "toggle", "stop", "next", "prev", "seek", "volume", "enqueue", "add":
+                break;
+            default:
+                return "ERR unknown command " + command;
+        }
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        try {
+            player.execute(() -> {
+                try {
+                    reply.complete(execute(command, argument));
+                } catch (RuntimeException e) {
+                    reply.complete("ERR " + e.getMessage());
+                }
+                publishStatus();
+            });
+            return reply.get(COMMAND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return "ERR shutting down";
+        } catch (TimeoutException e) {
+            return "ERR timed out";
+        } catch (ExecutionException e) {
+            return "ERR " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR interrupted";
+        }
+    }
+
+    /** On the player thread. */
+    private String execute(String command, String argument) {
+        switch (command) {
+            case "play" -> {
+                if (argument.isEmpty()) {
+                    togglePlayPause(false);
+                } else {
+                    int index = Integer.parseInt(argument);
+                    if (index < 0 || index >= playlist.size()) return "ERR no track " + index;
+                    playTrack(index);
+                }
+            }
+            case "pause" -> engine.pause();
+            case "toggle" -> togglePlayPause(true);
+            case "stop" -> engine.stop();
+            case "next" -> {
+                if (playlist.isEmpty()) return "ERR playlist is empty";
+                playTrack(nextIndex());
+            }
+            case "prev" -> {
+                if (playlist.isEmpty()) return "ERR playlist is empty";
+                int id = order.previous();
+                int prev = id >= 0 ? positionOf(id) : -1;
+                playTrack(prev >= 0 ? prev : Math.floorMod(currentIndex - 1, playlist.size()));
+            }
+            case "seek" -> engine.seek(Duration.seconds(Double.parseDouble(argument)));
+            case "volume" -> engine.setVolume(Math.max(0, Math.min(1, Double.parseDouble(argument))));
+            case "enqueue", "add" -> {
+                if (argument.isEmpty()) return "ERR missing path";
+                Path path = Path.of(argument).toAbsolutePath();
+                if (!Files.isRegularFile(path)) return "ERR no such file " + argument;
+                Song song = songsByPath.get(path.toString());
+                if (song == null) {
+                    song = new Song(path.toString());
+                    append(song);
+                }
+                if (command.equals("enqueue")) {
+                    order.enqueue(song.getId());
+                    engine.clearPreloaded();
+                }
+            }
+            default -> {
+                return "ERR unknown command " + command;
+            }
+        }
+        return "OK";
+    }
+
+    private void setupEngine() {
+        engine.setOnEndOfMedia(() -> {
+            if (!playlist.isEmpty()) {
+                playTrack(nextIndex());
+            }
+        });
+        engine.setNextTrackProvider(() -> playlist.isEmpty() ? null : playlist.get(nextIndex()));
+        engine.setOnTrackAdvanced(song -> {
+            currentIndex = positionOf(song.getId());
+            order.played(song.getId());
+            publishStatus();
+        });
+        engine.statusProperty().addListener((obs, oldVal, newVal) -> publishStatus());
+        engine.positionMillisProperty().addListener((obs, oldVal, newVal) -> publishStatus());
+    }
+
+    private void togglePlayPause(boolean pauseIfPlaying) {
+        MediaPlayer.Status st = engine.statusProperty().get();
+        if (st == MediaPlayer.Status.PLAYING) {
+            if (pauseIfPlaying) {
+                engine.pause();
+            }
+        } else if (st == MediaPlayer.Status.PAUSED) {
+            engine.resume();
+        } else if (!playlist.isEmpty()) {
+            playTrack(currentIndex < 0 ? nextIndex() : currentIndex);
+        }
+    }
+
+    private void playTrack(int index) {
+        Song song = playlist.get(index);
+        currentIndex = index;
+        order.played(song.getId());
+        engine.play(song);
+    }
+
+    private int nextIndex() {
+        int id = order.peekNext();
+        int index = id >= 0 ? positionOf(id) : -1;
+        return index >= 0 ? index : (currentIndex + 1) % playlist.size();
+    }
+
+    /** The playlist only grows, so a track's position never changes once it is in. */
+    private void append(Song song) {
+        int id = song.getId();
+        if (positionOf(id) >= 0) return;
+        if (id >= positions.length) {
+            int old = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(id + 1, old + (old >> 1)));
+            Arrays.fill(positions, old, positions.length, -1);
+        }
+        positions[id] = playlist.size();
+        playlist.add(song);
+        songsByPath.putIfAbsent(song.getFilePath(), song);
+        order.add(id);
+    }
+
+    private int positionOf(int id) {
+        return id < positions.length ? positions[id] : -1;
+    }
+
+    private void publishStatus() {
+        Song song = currentIndex >= 0 ? playlist.get(currentIndex) : null;
+        Duration total = engine.totalDurationProperty().get();
+        status = new Status(engine.statusProperty().get(), currentIndex, song == null ? null : song.getFilePath(),
+                engine.positionMillisProperty().get(), total == null ? 0 : (long) total.toMillis(),
+                engine.getVolume(), order.getQueued(), playlist.size());
+    }
+
+    private static String commandOf(String line) {
+        int space = line.indexOf(' ');
+        return (space < 0 ? line : line.substring(0, space)).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,440 @@
+package com.musicplayer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for playback and the background pipelines.
+ * Each helper commits one event and feeds the matching {@link Metrics}
+ * histogram or counter, so a recording and the in-process registry see the
+ * same numbers. Events are instant with the measured time as a field,
+ * because most of these spans start and end on different threads.
+ *
+ * <p>Record with {@code -XX:StartFlightRecording:filename=player.jfr} and
+ * open the "Music Player" category in JDK Mission Control.
+ */
+final class PlayerEvents {
+
+    private static final Metrics METRICS = Metrics.getDefault();
+
+    private PlayerEvents() {
+    }
+
+    /** Emits {@link UiUpdates} once a second while a recording is running. */
+    static void registerPeriodic() {
+        FlightRecorder.addPeriodicEvent(UiUpdates.class, () -> {
+            UiUpdates event = new UiUpdates();
+            event.positionUpdates = METRICS.counter("ui.position.updates").get();
+            event.labelUpdates = METRICS.counter("ui.label.updates").get();
+            event.cellUpdates = METRICS.counter("ui.cell.updates").get();
+            event.metadataRefreshes = METRICS.counter("ui.metadata.refreshes").get();
+            event.commit();
+        });
+    }
+
+    static void trackLoaded(String engine, String path, boolean preload, long nanos) {
+        METRICS.histogram(preload ? "track.preload" : "track.load").record(nanos);
+        TrackLoad event = new TrackLoad();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.path = path;
+            event.preload = preload;
+            event.loadTime = nanos;
+            event.commit();
+        }
+    }
+
+    static void seeked(String engine, String path, long targetMillis, long nanos) {
+        METRICS.histogram("seek").record(nanos);
+        Seek event = new Seek();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.path = path;
+            event.targetMillis = targetMillis;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    static void transition(String engine, String path, boolean gapless, long nanos) {
+        METRICS.histogram("transition.gap").record(nanos);
+        TrackTransition event = new TrackTransition();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.path = path;
+            event.gapless = gapless;
+            event.gap = nanos;
+            event.commit();
+        }
+    }
+
+    static void playbackError(String engine, String path, String message) {
+        METRICS.counter("playback.errors").increment();
+        PlaybackError event = new PlaybackError();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.path = path;
+            event.message = message;
+            event.commit();
+        }
+    }
+
+    static void scanBatch(int files, long nanos) {
+        METRICS.histogram("scan.batch").record(nanos);
+        METRICS.counter("scan.files").add(files);
+        ScanBatch event = new ScanBatch();
+        if (event.shouldCommit()) {
+            event.files = files;
+            event.collectTime = nanos;
+            event.commit();
+        }
+    }
+
+    static void libraryScan(int roots, long files, boolean cancelled, long nanos) {
+        METRICS.histogram("library.scan").record(nanos);
+        LibraryScan event = new LibraryScan();
+        if (event.shouldCommit()) {
+            event.roots = roots;
+            event.files = files;
+            event.cancelled = cancelled;
+            event.scanTime = nanos;
+            event.commit();
+        }
+    }
+
+    /** One coalesced flush: {@code latencyNanos} runs from the first event, {@code flushNanos} is the flush itself. */
+    static void libraryWatch(int events, int added, int changed, int removed, long latencyNanos, long flushNanos) {
+        METRICS.histogram("library.watch.latency").record(latencyNanos);
+        METRICS.histogram("library.watch.flush").record(flushNanos);
+        METRICS.counter("library.watch.events").add(events);
+        LibraryWatch event = new LibraryWatch();
+        if (event.shouldCommit()) {
+            event.events = events;
+            event.added = added;
+            event.changed = changed;
+            event.removed = removed;
+            event.latency = latencyNanos;
+            event.flushTime = flushNanos;
+            event.commit();
+        }
+    }
+
+    /** One control command, from reading it until the reply was written. */
+    static void daemonCommand(String command, boolean ok, long nanos) {
+        METRICS.histogram("daemon.command").record(nanos);
+        if (!ok) METRICS.counter("daemon.errors").increment();
+        DaemonCommand event = new DaemonCommand();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.ok = ok;
+            event.handleTime = nanos;
+            event.commit();
+        }
+    }
+
+    static void metadataBatch(int files, int parsed, long nanos) {
+        METRICS.histogram("metadata.batch").record(nanos);
+        METRICS.counter("metadata.files").add(parsed);
+        MetadataBatch event = new MetadataBatch();
+        if (event.shouldCommit()) {
+            event.files = files;
+            event.parsed = parsed;
+            event.parseTime = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * One album's thumbnail fetched by a background worker: read from the
+     * thumbnail store ({@code disk}) or extracted and scaled from the file or
+     * the player's metadata ({@code decode}).
+     */
+    static void artworkLoad(String source, boolean found, long nanos) {
+        METRICS.histogram("artwork." + source).record(nanos);
+        ArtworkLoad event = new ArtworkLoad();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.found = found;
+            event.loadTime = nanos;
+            event.commit();
+        }
+    }
+
+    static void playlistImport(long imported, long skipped, boolean cancelled, long nanos) {
+        METRICS.histogram("playlist.import").record(nanos);
+        PlaylistImport event = new PlaylistImport();
+        if (event.shouldCommit()) {
+            event.imported = imported;
+            event.skipped = skipped;
+            event.cancelled = cancelled;
+            event.importTime = nanos;
+            event.commit();
+        }
+    }
+
+    /** Times from launch; any but {@code loadNanos} is negative when it didn't happen first. */
+    static void startup(int tracks, long firstFrameNanos, long firstScreenNanos, long cueNanos, long loadNanos) {
+        if (firstFrameNanos >= 0) METRICS.histogram("startup.first-frame").record(firstFrameNanos);
+        if (firstScreenNanos >= 0) METRICS.histogram("startup.first-screen").record(firstScreenNanos);
+        if (cueNanos >= 0) METRICS.histogram("startup.cued").record(cueNanos);
+        METRICS.histogram("startup.library").record(loadNanos);
+        Startup event = new Startup();
+        if (event.shouldCommit()) {
+            event.tracks = tracks;
+            event.firstFrame = firstFrameNanos;
+            event.firstScreen = firstScreenNanos;
+            event.cued = cueNanos;
+            event.libraryLoaded = loadNanos;
+            event.commit();
+        }
+    }
+
+    /** Time from launch until the first track started playing. */
+    static void firstAudio(long nanos) {
+        METRICS.histogram("startup.first-audio").record(nanos);
+        FirstAudio event = new FirstAudio();
+        if (event.shouldCommit()) {
+            event.sinceLaunch = nanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.musicplayer.TrackLoad")
+    @Label("Track Load")
+    @Category({"Music Player", "Playback"})
+    @Description("From opening a track's file until it is ready to play")
+    @StackTrace(false)
+    static final class TrackLoad extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Path")
+        String path;
+        @Label("Preload")
+        @Description("Prepared ahead for gapless playback rather than requested")
+        boolean preload;
+        @Label("Load Time")
+        @Timespan
+        long loadTime;
+    }
+
+    @Name("com.musicplayer.Seek")
+    @Label("Seek")
+    @Category({"Music Player", "Playback"})
+    @Description("From a seek request until playback resumed at the target")
+    @StackTrace(false)
+    static final class Seek extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Path")
+        String path;
+        @Label("Target (ms)")
+        long targetMillis;
+        @Label("Latency")
+        @Timespan
+        long latency;
+    }
+
+    @Name("com.musicplayer.TrackTransition")
+    @Label("Track Transition")
+    @Category({"Music Player", "Playback"})
+    @Description("Silence between the end of one track and the start of the next")
+    @StackTrace(false)
+    static final class TrackTransition extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Path")
+        @Description("The track that started")
+        String path;
+        @Label("Gapless")
+        boolean gapless;
+        @Label("Gap")
+        @Timespan
+        long gap;
+    }
+
+    @Name("com.musicplayer.PlaybackError")
+    @Label("Playback Error")
+    @Category({"Music Player", "Playback"})
+    static final class PlaybackError extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Path")
+        String path;
+        @Label("Message")
+        String message;
+    }
+
+    @Name("com.musicplayer.ScanBatch")
+    @Label("Scan Batch")
+    @Category({"Music Player", "Library"})
+    @Description("Time the scanner took to collect one batch of new files")
+    @StackTrace(false)
+    static final class ScanBatch extends Event {
+        @Label("Files")
+        int files;
+        @Label("Collect Time")
+        @Timespan
+        long collectTime;
+    }
+
+    @Name("com.musicplayer.LibraryScan")
+    @Label("Library Scan")
+    @Category({"Music Player", "Library"})
+    @StackTrace(false)
+    static final class LibraryScan extends Event {
+        @Label("Roots")
+        int roots;
+        @Label("Files")
+        long files;
+        @Label("Cancelled")
+        boolean cancelled;
+        @Label("Scan Time")
+        @Timespan
+        long scanTime;
+    }
+
+    @Name("com.musicplayer.LibraryWatch")
+    @Label("Library Watch")
+    @Category({"Music Player", "Library"})
+    @Description("File system events coalesced into one playlist update")
+    @StackTrace(false)
+    static final class LibraryWatch extends Event {
+        @Label("Events")
+        int events;
+        @Label("Added")
+        int added;
+        @Label("Changed")
+        int changed;
+        @Label("Removed")
+        int removed;
+        @Label("Latency")
+        @Description("From the first event until the update was reported")
+        @Timespan
+        long latency;
+        @Label("Flush Time")
+        @Timespan
+        long flushTime;
+    }
+
+    @Name("com.musicplayer.DaemonCommand")
+    @Label("Daemon Command")
+    @Category({"Music Player", "Daemon"})
+    @Description("A command received on the control socket")
+    @StackTrace(false)
+    static final class DaemonCommand extends Event {
+        @Label("Command")
+        String command;
+        @Label("OK")
+        boolean ok;
+        @Label("Handle Time")
+        @Timespan
+        long handleTime;
+    }
+
+    @Name("com.musicplayer.MetadataBatch")
+    @Label("Metadata Batch")
+    @Category({"Music Player", "Library"})
+    @Description("One chunk of files parsed by the metadata pipeline")
+    @StackTrace(false)
+    static final class MetadataBatch extends Event {
+        @Label("Files")
+        int files;
+        @Label("Parsed")
+        int parsed;
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+    }
+
+    @Name("com.musicplayer.ArtworkLoad")
+    @Label("Artwork Load")
+    @Category({"Music Player", "Library"})
+    @Description("An album thumbnail read from the thumbnail store or decoded from a track")
+    @StackTrace(false)
+    static final class ArtworkLoad extends Event {
+        @Label("Source")
+        String source;
+        @Label("Found")
+        boolean found;
+        @Label("Load Time")
+        @Timespan
+        long loadTime;
+    }
+
+    @Name("com.musicplayer.PlaylistImport")
+    @Label("Playlist Import")
+    @Category({"Music Player", "Library"})
+    @StackTrace(false)
+    static final class PlaylistImport extends Event {
+        @Label("Imported")
+        long imported;
+        @Label("Skipped")
+        @Description("Entries that were missing or not audio files")
+        long skipped;
+        @Label("Cancelled")
+        boolean cancelled;
+        @Label("Import Time")
+        @Timespan
+        long importTime;
+    }
+
+    @Name("com.musicplayer.Startup")
+    @Label("Startup")
+    @Category({"Music Player", "Library"})
+    @Description("Times from launch until the restored session was usable")
+    @StackTrace(false)
+    static final class Startup extends Event {
+        @Label("Tracks")
+        int tracks;
+        @Label("First Frame")
+        @Description("The window was first laid out and drawn")
+        @Timespan
+        long firstFrame;
+        @Label("First Screen")
+        @Description("The first tracks of the library were in the playlist")
+        @Timespan
+        long firstScreen;
+        @Label("Cued")
+        @Description("The saved track was loaded at its saved position")
+        @Timespan
+        long cued;
+        @Label("Library Loaded")
+        @Timespan
+        long libraryLoaded;
+    }
+
+    @Name("com.musicplayer.FirstAudio")
+    @Label("First Audio")
+    @Category({"Music Player", "Playback"})
+    @Description("The first track of the run started playing")
+    @StackTrace(false)
+    static final class FirstAudio extends Event {
+        @Label("Since Launch")
+        @Timespan
+        long sinceLaunch;
+    }
+
+    @Name("com.musicplayer.UiUpdates")
+    @Label("UI Updates")
+    @Category({"Music Player", "UI"})
+    @Description("Running totals of UI refreshes since startup")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class UiUpdates extends Event {
+        @Label("Position Updates")
+        long positionUpdates;
+        @Label("Label Updates")
+        long labelUpdates;
+        @Label("Playlist Cell Updates")
+        long cellUpdates;
+        @Label("Metadata Refreshes")
+        long metadataRefreshes;
+    }
+}
@@ -0,0 +1,92 @@
+package com.musicplayer;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WeakChangeListener;
+import javafx.css.PseudoClass;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Playlist row. Text comes from the song's cached display string and the
+ * now-playing highlight is a pseudo-class, so changing tracks only flips
+ * state on the two affected rows instead of rebuilding every visible cell.
+ * The album thumbnail comes from the {@link AlbumArtCache}, at once when it
+ * is in memory and otherwise as soon as a worker has it.
+ */
+class PlaylistCell extends ListCell<Song> {
+
+    static final PseudoClass PLAYING = PseudoClass.getPseudoClass("playing");
+    static final int ART_SIZE = 32;
+
+    private static final Metrics.Counter UPDATES = Metrics.getDefault().counter("ui.cell.updates");
+
+    private final ObservableValue<Song> nowPlaying;
+    private final AlbumArtCache artwork;
+    private final ImageView thumbnail = new ImageView();
+    private final StackPane thumbnailFrame = new StackPane(thumbnail);
+
+    // Held strongly here and registered weakly, so cells the ListView drops
+    // are not kept alive by the app-wide observables
+    private final ChangeListener<Song> nowPlayingListener = (obs, oldVal, newVal) -> {
+        Song item = getItem();
+        if (item != null && (item == oldVal || item == newVal)) {
+            pseudoClassStateChanged(PLAYING, item == newVal);
+        }
+    };
+    private final InvalidationListener metadataListener = obs -> {
+        Song item = getItem();
+        if (item != null && !isEmpty()) {
+            setText(item.getDisplayText());
+            if (thumbnail.getImage() == null) {
+                // The album may only now be known
+                showArtwork(item);
+            }
+        }
+    };
+
+    PlaylistCell(ObservableValue<Song> nowPlaying, Observable metadataChanged, AlbumArtCache artwork) {
+        this.nowPlaying = nowPlaying;
+        this.artwork = artwork;
+        thumbnail.setFitWidth(ART_SIZE);
+        thumbnail.setFitHeight(ART_SIZE);
+        thumbnail.setPreserveRatio(true);
+        thumbnail.setSmooth(true);
+        thumbnailFrame.getStyleClass().add("playlist-art");
+        thumbnailFrame.setMinSize(ART_SIZE, ART_SIZE);
+        thumbnailFrame.setPrefSize(ART_SIZE, ART_SIZE);
+        nowPlaying.addListener(new WeakChangeListener<>(nowPlayingListener));
+        metadataChanged.addListener(new WeakInvalidationListener(metadataListener));
+    }
+
+    @Override
+    protected void updateItem(Song song, boolean empty) {
+        super.updateItem(song, empty);
+        UPDATES.increment();
+        if (empty || song == null) {
+            setText(null);
+            setGraphic(null);
+            thumbnail.setImage(null);
+            pseudoClassStateChanged(PLAYING, false);
+        } else {
+            setText(song.getDisplayText());
+            setGraphic(thumbnailFrame);
+            pseudoClassStateChanged(PLAYING, song == nowPlaying.getValue());
+            thumbnail.setImage(null);
+            showArtwork(song);
+        }
+    }
+
+    private void showArtwork(Song song) {
+        artwork.request(song, image -> {
+            // The cell may have moved on to another song while this loaded
+            if (getItem() == song && !isEmpty()) {
+                thumbnail.setImage(image);
+            }
+        });
+    }
+}
@@ -0,0 +1,319 @@
+package com.musicplayer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes M3U/M3U8, PLS and XSPF playlists one entry at a time, so
+ * memory stays constant however long the playlist is. The format comes from
+ * the file extension.
+ *
+ * <p>Entries are resolved against the playlist's directory. Stream URLs and
+ * entries that are not valid paths are skipped; whether a file exists is
+ * left to the caller ({@link PlaylistImporter} checks in parallel).
+ */
+public final class PlaylistFile {
+
+    public enum Format {
+        M3U, PLS, XSPF
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String XSPF_NS = "http://xspf.org/ns/0/";
+
+    private PlaylistFile() {
+    }
+
+    public static boolean isPlaylist(String name) {
+        return formatOf(name) != null;
+    }
+
+    static Format formatOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".m3u") || lower.endsWith(".m3u8")) return Format.M3U;
+        if (lower.endsWith(".pls")) return Format.PLS;
+        if (lower.endsWith(".xspf")) return Format.XSPF;
+        return null;
+    }
+
+    private static Format requireFormat(Path file) throws IOException {
+        Format format = formatOf(file.getFileName().toString());
+        if (format == null) {
+            throw new IOException("Unsupported playlist format: " + file.getFileName());
+        }
+        return format;
+    }
+
+    /** Streams the playlist's entries, as absolute normalized paths, to {@code sink} in file order. */
+    public static void read(Path file, Consumer<Path> sink) throws IOException {
+        Format format = requireFormat(file);
+        Path dir = file.toAbsolutePath().getParent();
+        if (format == Format.XSPF) {
+            readXspf(file, dir, sink);
+            return;
+        }
+        try (BufferedReader in = newReader(file)) {
+            String line;
+            boolean first = true;
+            while ((line = in.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                        line = line.substring(1);
+                    }
+                }
+                String entry = format == Format.M3U ? m3uEntry(line) : plsEntry(line);
+                Path path = entry == null ? null : resolve(entry, dir);
+                if (path != null) {
+                    sink.accept(path);
+                }
+            }
+        }
+    }
+
+    /** Buffered channel reader; bad bytes decode to U+FFFD instead of failing the whole import. */
+    private static BufferedReader newReader(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    private static String m3uEntry(String line) {
+        String entry = line.strip();
+        return entry.isEmpty() || entry.charAt(0) == '#' ? null : entry;
+    }
+
+    /** The value of a {@code FileN=} line; entries are taken in file order. */
+    private static String plsEntry(String line) {
+        String entry = line.strip();
+        int eq = entry.indexOf('=');
+        if (eq < 5 || !entry.regionMatches(true, 0, "File", 0, 4)) return null;
+        for (int i = 4; i < eq; i++) {
+            if (!Character.isDigit(entry.charAt(i))) return null;
+        }
+        return entry.substring(eq + 1).strip();
+    }
+
+    private static void readXspf(Path file, Path dir, Consumer<Path> sink) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+            XMLStreamReader xml = factory.createXMLStreamReader(new BufferedInputStream(in, BUFFER_SIZE));
+            try {
+                // Only the first location of each track is played
+                boolean inTrack = false;
+                boolean located = false;
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = xml.getLocalName();
+                        if (name.equals("track")) {
+                            inTrack = true;
+                            located = false;
+                        } else if (inTrack && !located && name.equals("location")) {
+                            located = true;
+                            Path path = resolveUri(xml.getElementText().strip(), dir);
+                            if (path != null) {
+                                sink.accept(path);
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("track")) {
+                        inTrack = false;
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed XSPF: " + e.getMessage(), e);
+        }
+    }
+
+    static Path resolve(String entry, Path dir) {
+        if (entry.regionMatches(true, 0, "file:", 0, 5)) {
+            return resolveUri(entry, dir);
+        }
+        if (entry.contains("://")) return null;
+        if (File.separatorChar == '/') {
+            // Playlists written on Windows
+            entry = entry.replace('\\', '/');
+        }
+        try {
+            return dir.resolve(entry).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static Path resolveUri(String location, Path dir) {
+        try {
+            URI uri = new URI(location);
+            if (!uri.isAbsolute()) {
+                String path = uri.getPath();
+                return path == null || path.isEmpty() ? null : dir.resolve(path).normalize();
+            }
+            return "file".equalsIgnoreCase(uri.getScheme()) ? Path.of(uri).normalize() : null;
+        } catch (URISyntaxException e) {
+            // Unescaped spaces and the like; take it as a plain path
+            if (location.regionMatches(true, 0, "file://", 0, 7)) {
+                location = location.substring(7);
+            } else if (location.regionMatches(true, 0, "file:", 0, 5)) {
+                location = location.substring(5);
+            }
+            return location.contains("://") ? null : resolve(location, dir);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code songs} in the format of {@code file}'s extension, replacing
+     * it atomically. Tracks under the playlist's directory are written relative
+     * to it so the folder can be moved as a whole.
+     */
+    public static void write(Path file, List<Song> songs) throws IOException {
+        Format format = requireFormat(file);
+        Path target = file.toAbsolutePath();
+        String dir = target.getParent().toString() + File.separator;
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(
+                Channels.newWriter(FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            switch (format) {
+                case M3U -> writeM3u(out, songs, dir);
+                case PLS -> writePls(out, songs, dir);
+                case XSPF -> writeXspf(out, songs, dir);
+            }
+        } catch (XMLStreamException e) {
+            Files.deleteIfExists(tmp);
+            throw new IOException(e.getMessage(), e);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeM3u(Writer out, List<Song> songs, String dir) throws IOException {
+        out.write("#EXTM3U\n");
+        for (Song song : songs) {
+            out.write("#EXTINF:");
+            out.write(Long.toString(seconds(song)));
+            out.write(',');
+            out.write(song.getDisplayText());
+            out.write('\n');
+            out.write(relative(song.getFilePath(), dir));
+            out.write('\n');
+        }
+    }
+
+    private static void writePls(Writer out, List<Song> songs, String dir) throws IOException {
+        out.write("[playlist]\n");
+        int n = 0;
+        for (Song song : songs) {
+            n++;
+            out.write("File" + n + "=");
+            out.write(relative(song.getFilePath(), dir));
+            out.write("\nTitle" + n + "=");
+            out.write(song.getDisplayText());
+            out.write("\nLength" + n + "=" + seconds(song) + "\n");
+        }
+        // The count goes last so the entries can be streamed
+        out.write("NumberOfEntries=" + n + "\nVersion=2\n");
+    }
+
+    private static void writeXspf(Writer out, List<Song> songs, String dir) throws XMLStreamException {
+        XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeCharacters("\n");
+        xml.writeStartElement("playlist");
+        xml.writeDefaultNamespace(XSPF_NS);
+        xml.writeAttribute("version", "1");
+        xml.writeCharacters("\n");
+        xml.writeStartElement("trackList");
+        xml.writeCharacters("\n");
+        for (Song song : songs) {
+            xml.writeStartElement("track");
+            element(xml, "location", uriOf(relative(song.getFilePath(), dir)));
+            element(xml, "title", song.getTitle());
+            if (!song.getArtist().equals(TrackStore.UNKNOWN_ARTIST)) {
+                element(xml, "creator", song.getArtist());
+            }
+            if (!song.getAlbum().equals(TrackStore.UNKNOWN_ALBUM)) {
+                element(xml, "album", song.getAlbum());
+            }
+            if (song.getDurationMillis() > 0) {
+                element(xml, "duration", Long.toString(song.getDurationMillis()));
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        }
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+        xml.writeEndDocument();
+        xml.flush();
+    }
+
+    private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static long seconds(Song song) {
+        long millis = song.getDurationMillis();
+        return millis > 0 ? Math.round(millis / 1000.0) : -1;
+    }
+
+    private static String relative(String path, String dir) {
+        return path.startsWith(dir) ? path.substring(dir.length()) : path;
+    }
+
+    /**
+     * A relative or absolute file URI for the path, built without touching the
+     * file system (unlike {@link Path#toUri()}, which stats every entry).
+     */
+    private static String uriOf(String path) {
+        String slashed = File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
+        boolean absolute = new File(path).isAbsolute();
+        try {
+            if (!absolute) {
+                // "./" keeps a colon in the first segment from reading as a scheme
+                int colon = slashed.indexOf(':');
+                if (colon >= 0 && (colon < slashed.indexOf('/') || slashed.indexOf('/') < 0)) {
+                    slashed = "./" + slashed;
+                }
+                return new URI(null, null, slashed, null).toASCIIString();
+            }
+            return new URI("file", "", slashed.startsWith("/") ? slashed : "/" + slashed, null).toASCIIString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
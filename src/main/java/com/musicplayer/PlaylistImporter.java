@@ -0,0 +1,190 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports a playlist file in the background. Entries are streamed from
+ * {@link PlaylistFile} in batches; each batch is checked for existence on
+ * virtual threads in parallel and handed back in playlist order, so only one
+ * batch is ever held in memory. Callbacks run on importer threads; callers
+ * marshal them onto the FX thread themselves, as with {@link LibraryScanner}.
+ *
+ * <p>Missing files and non-audio entries are counted and skipped. With a
+ * {@link LibraryIndex} attached, imported tracks are recorded in it.
+ */
+public class PlaylistImporter {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_CONCURRENT_CHECKS = 32;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore ioPermits = new Semaphore(MAX_CONCURRENT_CHECKS);
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final LibraryIndex index;
+
+    private volatile boolean cancelled = false;
+    private boolean started = false;
+
+    private Consumer<List<Song>> onBatch;
+    private LongConsumer onProgress;
+    private Runnable onFinished;
+
+    public PlaylistImporter() {
+        this(null);
+    }
+
+    public PlaylistImporter(LibraryIndex index) {
+        this.index = index;
+    }
+
+    public synchronized void start(Path playlist) {
+        if (started) {
+            throw new IllegalStateException("Importer already started");
+        }
+        started = true;
+        Thread.ofVirtual().name("playlist-import").start(() -> run(playlist));
+    }
+
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    /** Entries that were missing, unreadable or not audio files. */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public void setOnBatch(Consumer<List<Song>> handler) {
+        this.onBatch = handler;
+    }
+
+    public void setOnProgress(LongConsumer handler) {
+        this.onProgress = handler;
+    }
+
+    public void setOnFinished(Runnable handler) {
+        this.onFinished = handler;
+    }
+
+    private void run(Path playlist) {
+        long startNanos = System.nanoTime();
+        List<Path> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            PlaylistFile.read(playlist, path -> {
+                if (cancelled) throw new CancellationException();
+                batch.add(path);
+                if (batch.size() == BATCH_SIZE) {
+                    check(batch);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty() && !cancelled) {
+                check(batch);
+            }
+        } catch (CancellationException e) {
+            // Stopped mid-file
+        } catch (IOException e) {
+            System.err.println("Cannot import " + playlist + ": " + e.getMessage());
+        } finally {
+            executor.shutdown();
+            PlayerEvents.playlistImport(imported.get(), skipped.get(), cancelled, System.nanoTime() - startNanos);
+            if (onFinished != null) {
+                onFinished.run();
+            }
+        }
+    }
+
+    /** Stats every path in parallel and delivers the ones that exist, in order. */
+    private void check(List<Path> paths) {
+        List<Callable<Song>> checks = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            checks.add(() -> {
+                ioPermits.acquire();
+                try {
+                    return songFor(path);
+                } finally {
+                    ioPermits.release();
+                }
+            });
+        }
+        List<Future<Song>> results;
+        try {
+            results = executor.invokeAll(checks);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            throw new CancellationException();
+        }
+        List<Song> songs = new ArrayList<>(paths.size());
+        for (Future<Song> result : results) {
+            Song song = null;
+            try {
+                song = result.get();
+            } catch (ExecutionException | CancellationException | InterruptedException e) {
+                // Counted as skipped below
+            }
+            if (song != null) {
+                songs.add(song);
+            }
+        }
+        skipped.addAndGet(paths.size() - songs.size());
+        if (songs.isEmpty() || cancelled) return;
+        imported.addAndGet(songs.size());
+        if (onBatch != null) {
+            onBatch.accept(songs);
+        }
+        if (onProgress != null) {
+            onProgress.accept(imported.get());
+        }
+    }
+
+    private Song songFor(Path path) {
+        Path name = path.getFileName();
+        if (cancelled || name == null || !MusicPlayerApp.isAudioFile(name.toString())) return null;
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!attrs.isRegularFile()) return null;
+        String file = path.toString();
+        if (index == null) {
+            return new Song(file);
+        }
+        // A library track keeps its tags; if the file changed since, the next
+        // scan still sees the old mtime and size and re-reads it
+        Song known = index.get(file);
+        if (known != null) {
+            return known;
+        }
+        Song song = new Song(file);
+        // A scanner or watcher may have just indexed the same file
+        Song raced = index.putIfAbsent(song, attrs.lastModifiedTime().toMillis(), attrs.size());
+        return raced != null ? raced : song;
+    }
+}
@@ -0,0 +1,204 @@
+package com.musicplayer;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts songs by artist, album, title, duration or file location using
+ * locale-aware collation. Collation keys are computed once per title and
+ * once per distinct artist, album or directory and reused across sorts;
+ * the sort itself runs on {@link Arrays#parallelSort} over precomputed
+ * primary keys so no collation happens inside the comparator.
+ */
+public class PlaylistSorter {
+
+    public enum SortKey {
+        FILE("File"),
+        TITLE("Title"),
+        ARTIST("Artist"),
+        ALBUM("Album"),
+        DURATION("Duration");
+
+        private final String label;
+
+        SortKey(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final TrackStore store;
+    private final ThreadLocal<Collator> collators = ThreadLocal.withInitial(() -> {
+        Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        return collator;
+    });
+
+    // Cached collation keys: per track for titles, per dictionary id otherwise
+    private byte[][] titleKeys = new byte[1024][];
+    private int[] titleHashes = new int[1024];
+    private final DictionaryKeys artistKeys = new DictionaryKeys();
+    private final DictionaryKeys albumKeys = new DictionaryKeys();
+    private final DictionaryKeys directoryKeys = new DictionaryKeys();
+
+    public PlaylistSorter(TrackStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns {@code songs} in the order given by {@code key}. Safe to call
+     * off the FX thread; calls must not overlap.
+     */
+    public synchronized Song[] sort(List<Song> songs, SortKey key) {
+        Song[] result = songs.toArray(new Song[0]);
+        if (result.length < 2) return result;
+
+        int[] ids = new int[result.length];
+        int maxId = 0;
+        for (int i = 0; i < result.length; i++) {
+            ids[i] = result[i].getId();
+            maxId = Math.max(maxId, ids[i]);
+        }
+        ensureCapacity(maxId);
+
+        Entry[] entries = new Entry[result.length];
+        switch (key) {
+            case FILE -> {
+                int[] dirRanks = directoryKeys.ranks(ids, store::directoryId, store::directory);
+                for (int i = 0; i < ids.length; i++) {
+                    entries[i] = new Entry(result[i], dirRanks[store.directoryId(ids[i])], null, result[i].getFilePath());
+                }
+            }
+            case TITLE -> {
+                updateTitleKeys(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    entries[i] = new Entry(result[i], 0, titleKeys[ids[i]], null);
+                }
+            }
+            case ARTIST -> {
+                updateTitleKeys(ids);
+                int[] artistRanks = artistKeys.ranks(ids, store::artistId, store::artistName);
+                int[] albumRanks = albumKeys.ranks(ids, store::albumId, store::albumName);
+                for (int i = 0; i < ids.length; i++) {
+                    int id = ids[i];
+                    long primary = ((long) artistRanks[store.artistId(id)] << 32) | albumRanks[store.albumId(id)];
+                    entries[i] = new Entry(result[i], primary, titleKeys[id], null);
+                }
+            }
+            case ALBUM -> {
+                // Group by album, then keep each album's tracks in file order
+                int[] albumRanks = albumKeys.ranks(ids, store::albumId, store::albumName);
+                int[] dirRanks = directoryKeys.ranks(ids, store::directoryId, store::directory);
+                for (int i = 0; i < ids.length; i++) {
+                    int id = ids[i];
+                    long primary = ((long) albumRanks[store.albumId(id)] << 32) | dirRanks[store.directoryId(id)];
+                    entries[i] = new Entry(result[i], primary, null, result[i].getFilePath());
+                }
+            }
+            case DURATION -> {
+                updateTitleKeys(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    entries[i] = new Entry(result[i], store.durationMillis(ids[i]), titleKeys[ids[i]], null);
+                }
+            }
+        }
+
+        Arrays.parallelSort(entries, ENTRY_ORDER);
+        for (int i = 0; i < entries.length; i++) {
+            result[i] = entries[i].song;
+        }
+        return result;
+    }
+
+    private void updateTitleKeys(int[] ids) {
+        IntStream.range(0, ids.length).parallel().forEach(i -> {
+            int id = ids[i];
+            String title = store.title(id);
+            int hash = title.hashCode();
+            if (titleKeys[id] == null || titleHashes[id] != hash) {
+                titleKeys[id] = collators.get().getCollationKey(title).toByteArray();
+                titleHashes[id] = hash;
+            }
+        });
+    }
+
+    private void ensureCapacity(int maxId) {
+        if (maxId >= titleKeys.length) {
+            int capacity = Math.max(maxId + 1, titleKeys.length * 2);
+            titleKeys = Arrays.copyOf(titleKeys, capacity);
+            titleHashes = Arrays.copyOf(titleHashes, capacity);
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER = (a, b) -> {
+        int c = Long.compare(a.primary, b.primary);
+        if (c != 0) return c;
+        if (a.collationKey != null) {
+            c = Arrays.compareUnsigned(a.collationKey, b.collationKey);
+            if (c != 0) return c;
+        }
+        if (a.path != null) {
+            return a.path.compareTo(b.path);
+        }
+        return 0;
+    };
+
+    private record Entry(Song song, long primary, byte[] collationKey, String path) {
+    }
+
+    /**
+     * Collation ranks for one dictionary. Keys are computed the first time a
+     * value is seen; ranks are recomputed per sort over the values in use,
+     * which is cheap because there are far fewer values than tracks.
+     */
+    private final class DictionaryKeys {
+        private byte[][] keys = new byte[64][];
+
+        int[] ranks(int[] trackIds, IntUnaryOperator valueOf, IntFunction<String> nameOf) {
+            int maxValue = 0;
+            boolean[] used = new boolean[64];
+            for (int id : trackIds) {
+                int value = valueOf.applyAsInt(id);
+                if (value >= used.length) used = Arrays.copyOf(used, Math.max(value + 1, used.length * 2));
+                used[value] = true;
+                maxValue = Math.max(maxValue, value);
+            }
+            if (maxValue >= keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(maxValue + 1, keys.length * 2));
+            }
+            Collator collator = collators.get();
+            Integer[] values = new Integer[countUsed(used)];
+            int n = 0;
+            for (int v = 0; v <= maxValue; v++) {
+                if (!used[v]) continue;
+                if (keys[v] == null) {
+                    keys[v] = collator.getCollationKey(nameOf.apply(v)).toByteArray();
+                }
+                values[n++] = v;
+            }
+            Arrays.sort(values, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+            int[] ranks = new int[maxValue + 1];
+            for (int rank = 0; rank < values.length; rank++) {
+                ranks[values[rank]] = rank;
+            }
+            return ranks;
+        }
+
+        private static int countUsed(boolean[] used) {
+            int count = 0;
+            for (boolean u : used) {
+                if (u) count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.musicplayer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts playback position updates and the heap allocated while publishing
+ * each one (engine tick plus every listener it triggers), measured with the
+ * per-thread allocation counter.
+ */
+public final class PositionStats {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final long startNanos = System.nanoTime();
+    // Written by the publishing thread only; volatile so metrics can read them anywhere
+    private volatile long updates = 0;
+    private volatile long allocatedBytes = 0;
+    private long windowStartNanos = startNanos;
+    private long windowUpdates = 0;
+    private volatile double updatesPerSecond = 0;
+
+    long beginUpdate() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    void endUpdate(long allocatedAtStart) {
+        if (THREADS != null) {
+            allocatedBytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedAtStart;
+        }
+        updates++;
+        windowUpdates++;
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= 1_000_000_000L) {
+            updatesPerSecond = windowUpdates * 1e9 / elapsed;
+            windowStartNanos = now;
+            windowUpdates = 0;
+        }
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    /** Rate over the most recent full second. */
+    public double getUpdatesPerSecond() {
+        return updatesPerSecond;
+    }
+
+    public double getAllocatedBytesPerUpdate() {
+        return updates == 0 ? 0 : (double) allocatedBytes / updates;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d position updates, %.1f/s, %.0f B allocated/update",
+                updates, updatesPerSecond, getAllocatedBytesPerUpdate());
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,350 @@
+package com.musicplayer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory trigram index for playlist search. Titles and file names are
+ * indexed per track; artists, albums and directories are indexed once per
+ * distinct value in the {@link TrackStore} dictionaries and expanded to
+ * their tracks at query time, so a shared artist costs one posting per track
+ * rather than one per trigram per track.
+ *
+ * <p>A query is split on whitespace and every term must occur in one of the
+ * fields. Terms of up to three characters are matched exactly; longer terms
+ * match when all of their trigrams occur. Results are track ids
+ * ({@link Song#getId()}). Not thread-safe; the app uses it on the FX thread.
+ */
+public class SearchIndex {
+
+    private static final int COLUMN_SCAN_THRESHOLD = 64;
+
+    private final TrackStore store;
+
+    private final Trigrams trackGrams = new Trigrams();
+    private final Trigrams artistGrams = new Trigrams();
+    private final Trigrams albumGrams = new Trigrams();
+    private final Trigrams directoryGrams = new Trigrams();
+
+    private final Map<Integer, IntList> tracksByArtist = new HashMap<>();
+    private final Map<Integer, IntList> tracksByAlbum = new HashMap<>();
+    private final Map<Integer, IntList> tracksByDirectory = new HashMap<>();
+    private final BitSet indexedArtists = new BitSet();
+    private final BitSet indexedAlbums = new BitSet();
+    private final BitSet indexedDirectories = new BitSet();
+
+    // What each track was last indexed under, to detect stale postings
+    private int[] indexedArtist = new int[1024];
+    private int[] indexedAlbum = new int[1024];
+    private int[] indexedDirectory = new int[1024];
+    // The store's own title strings, so this holds references, not copies
+    private String[] indexedTitle = new String[1024];
+    private final BitSet indexed = new BitSet();
+    private final BitSet stale = new BitSet();
+
+    public SearchIndex(TrackStore store) {
+        this.store = store;
+    }
+
+    public void addAll(List<? extends Song> songs) {
+        for (Song song : songs) {
+            add(song);
+        }
+    }
+
+    public void add(Song song) {
+        int id = song.getId();
+        if (indexed.get(id)) {
+            update(song);
+            return;
+        }
+        ensureCapacity(id);
+        indexed.set(id);
+
+        String title = song.hasExplicitTitle() ? song.getTitle() : "";
+        String path = song.getFilePath();
+        trackGrams.add(id, title + '\u0000' + path.substring(path.lastIndexOf(File.separatorChar) + 1));
+        indexedTitle[id] = song.hasExplicitTitle() ? title : null;
+
+        int directoryId = store.directoryId(id);
+        indexedDirectory[id] = directoryId;
+        if (!indexedDirectories.get(directoryId)) {
+            indexedDirectories.set(directoryId);
+            directoryGrams.add(directoryId, store.directory(directoryId));
+        }
+        tracksByDirectory.computeIfAbsent(directoryId, k -> new IntList()).add(id);
+
+        indexArtist(id, store.artistId(id));
+        indexAlbum(id, store.albumId(id));
+    }
+
+    /**
+     * Re-indexes a track whose metadata changed; fields that are still what
+     * was indexed are left alone. Postings only ever grow; when a value is
+     * replaced the track is marked stale and checked against its current
+     * fields at query time.
+     */
+    public void update(Song song) {
+        int id = song.getId();
+        if (!indexed.get(id)) {
+            add(song);
+            return;
+        }
+        if (song.hasExplicitTitle()) {
+            String title = song.getTitle();
+            if (!title.equals(indexedTitle[id])) {
+                if (indexedTitle[id] != null) stale.set(id);
+                trackGrams.add(id, title);
+                indexedTitle[id] = title;
+            }
+        }
+        int artistId = store.artistId(id);
+        if (artistId != indexedArtist[id]) {
+            if (indexedArtist[id] != 0) stale.set(id);
+            indexArtist(id, artistId);
+        }
+        int albumId = store.albumId(id);
+        if (albumId != indexedAlbum[id]) {
+            if (indexedAlbum[id] != 0) stale.set(id);
+            indexAlbum(id, albumId);
+        }
+    }
+
+    /**
+     * Returns the ids of matching tracks, or {@code null} for a blank query
+     * meaning "everything".
+     */
+    public BitSet search(String query) {
+        String[] terms = normalize(query).trim().split("\\s+");
+        if (terms.length == 0 || terms[0].isEmpty()) return null;
+
+        BitSet result = null;
+        for (String term : terms) {
+            BitSet matches = trackGrams.match(term);
+            expand(artistGrams.match(term), tracksByArtist, indexedArtist, matches);
+            expand(albumGrams.match(term), tracksByAlbum, indexedAlbum, matches);
+            expand(directoryGrams.match(term), tracksByDirectory, indexedDirectory, matches);
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) return result;
+        }
+
+        BitSet check = (BitSet) stale.clone();
+        check.and(result);
+        for (int id = check.nextSetBit(0); id >= 0; id = check.nextSetBit(id + 1)) {
+            if (!matchesCurrent(id, terms)) result.clear(id);
+        }
+        return result;
+    }
+
+    private void indexArtist(int trackId, int artistId) {
+        indexedArtist[trackId] = artistId;
+        if (artistId == 0) return;
+        if (!indexedArtists.get(artistId)) {
+            indexedArtists.set(artistId);
+            artistGrams.add(artistId, store.artistName(artistId));
+        }
+        tracksByArtist.computeIfAbsent(artistId, k -> new IntList()).add(trackId);
+    }
+
+    private void indexAlbum(int trackId, int albumId) {
+        indexedAlbum[trackId] = albumId;
+        if (albumId == 0) return;
+        if (!indexedAlbums.get(albumId)) {
+            indexedAlbums.set(albumId);
+            albumGrams.add(albumId, store.albumName(albumId));
+        }
+        tracksByAlbum.computeIfAbsent(albumId, k -> new IntList()).add(trackId);
+    }
+
+    /**
+     * Adds the tracks of every matching dictionary value. With few matching
+     * values the per-value track lists are walked; with many it is cheaper to
+     * sweep the per-track column once.
+     */
+    private void expand(BitSet keys, Map<Integer, IntList> tracksByKey, int[] column, BitSet into) {
+        if (keys.isEmpty()) return;
+        if (keys.cardinality() > COLUMN_SCAN_THRESHOLD) {
+            // Unindexed rows read as 0, the dictionaries' "unknown" value,
+            // which is never indexed and so never matches
+            for (int id = 0, end = indexed.length(); id < end; id++) {
+                if (keys.get(column[id])) into.set(id);
+            }
+            return;
+        }
+        for (int key = keys.nextSetBit(0); key >= 0; key = keys.nextSetBit(key + 1)) {
+            IntList tracks = tracksByKey.get(key);
+            if (tracks == null) continue;
+            for (int i = 0; i < tracks.size(); i++) {
+                into.set(tracks.get(i));
+            }
+        }
+    }
+
+    private boolean matchesCurrent(int id, String[] terms) {
+        String haystack = normalize(store.title(id) + '\u0000' + store.artist(id)
+                + '\u0000' + store.album(id) + '\u0000' + store.filePath(id));
+        for (String term : terms) {
+            if (!haystack.contains(term)) return false;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= indexedArtist.length) {
+            int capacity = Math.max(id + 1, indexedArtist.length * 2);
+            indexedArtist = Arrays.copyOf(indexedArtist, capacity);
+            indexedAlbum = Arrays.copyOf(indexedAlbum, capacity);
+            indexedDirectory = Arrays.copyOf(indexedDirectory, capacity);
+            indexedTitle = Arrays.copyOf(indexedTitle, capacity);
+        }
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Trigram postings for one field, in an open-addressing table keyed by
+     * the packed trigram so indexing doesn't box a key per gram. Text is
+     * padded with two trailing separators so every substring of one or two
+     * characters is the prefix of some indexed trigram.
+     */
+    private static final class Trigrams {
+        private static final char PAD = '\u0000';
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newKeyTable(1 << 12);
+        private int[] slots = new int[1 << 12];
+        private int[][] postings = new int[1 << 11][];
+        private int[] counts = new int[1 << 11];
+        private int gramCount = 0;
+
+        void add(int id, String text) {
+            String s = normalize(text);
+            int n = s.length();
+            if (n == 0) return;
+            long[] grams = new long[n];
+            for (int i = 0; i < n; i++) {
+                grams[i] = key(s.charAt(i), i + 1 < n ? s.charAt(i + 1) : PAD, i + 2 < n ? s.charAt(i + 2) : PAD);
+            }
+            Arrays.sort(grams);
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && grams[i] == grams[i - 1]) continue;
+                int slot = slotFor(grams[i]);
+                int count = counts[slot];
+                int[] list = postings[slot];
+                if (count > 0 && list[count - 1] == id) continue;
+                if (count == list.length) {
+                    list = postings[slot] = Arrays.copyOf(list, count + (count >> 1) + 2);
+                }
+                list[count] = id;
+                counts[slot] = count + 1;
+            }
+        }
+
+        BitSet match(String term) {
+            int n = term.length();
+            if (n >= 3) {
+                BitSet result = null;
+                for (int i = 0; i + 3 <= n; i++) {
+                    int slot = find(key(term.charAt(i), term.charAt(i + 1), term.charAt(i + 2)));
+                    if (slot < 0) return new BitSet();
+                    BitSet bits = new BitSet();
+                    setAll(slot, bits);
+                    if (result == null) {
+                        result = bits;
+                    } else {
+                        result.and(bits);
+                    }
+                }
+                return result;
+            }
+            // Short term: union every trigram it is a prefix of
+            BitSet result = new BitSet();
+            long prefix = n == 1 ? key(term.charAt(0), PAD, PAD) : key(term.charAt(0), term.charAt(1), PAD);
+            long mask = n == 1 ? 0xFFFFL << 32 : 0xFFFFFFFFL << 16;
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                if (key != EMPTY && (key & mask) == prefix) {
+                    setAll(slots[i], result);
+                }
+            }
+            return result;
+        }
+
+        private void setAll(int slot, BitSet bits) {
+            int[] list = postings[slot];
+            for (int i = 0, count = counts[slot]; i < count; i++) {
+                bits.set(list[i]);
+            }
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return slots[i];
+                if (keys[i] == EMPTY) return -1;
+            }
+        }
+
+        private int slotFor(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY) {
+                if (keys[i] == key) return slots[i];
+                i = (i + 1) & mask;
+            }
+            int slot = gramCount++;
+            if (slot == postings.length) {
+                postings = Arrays.copyOf(postings, slot * 2);
+                counts = Arrays.copyOf(counts, slot * 2);
+            }
+            postings[slot] = new int[2];
+            keys[i] = key;
+            slots[i] = slot;
+            if (gramCount * 2 > keys.length) {
+                rehash();
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = newKeyTable(oldKeys.length * 2);
+            slots = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == EMPTY) continue;
+                int i = hash(oldKeys[j]) & mask;
+                while (keys[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+
+        private static long[] newKeyTable(int size) {
+            long[] table = new long[size];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static long key(char a, char b, char c) {
+            return ((long) a << 32) | ((long) b << 16) | c;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.musicplayer;
+
+/**
+ * What the player was doing: the current track and position, and the
+ * volume, mute and crossfade settings. {@code trackIndex} is where the
+ * track sat in the saved playlist, so restoring doesn't have to search for
+ * it; {@code trackPath} confirms the match. No track is a null path.
+ */
+public record Session(String trackPath, int trackIndex, long positionMillis, double volume, boolean muted,
+                      long crossfadeMillis) {
+}
@@ -0,0 +1,177 @@
+package com.musicplayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link Session} and the library on disk as they change, so a
+ * restart picks up where the player left off. Changes only mark state
+ * dirty; a write follows at most {@link #WRITE_DELAY_MILLIS} later, taking
+ * one snapshot on the publish executor and writing it on a background
+ * thread, so bursts of changes cost one write and the caller never waits
+ * on the disk.
+ */
+public class SessionStore {
+
+    static final long WRITE_DELAY_MILLIS = 2000;
+
+    private static final int MAGIC = 0x4D505353; // "MPSS"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final LibraryIndex library;
+    private final Executor publisher;
+    private final ScheduledThreadPoolExecutor writer;
+    private final AtomicBoolean sessionDirty = new AtomicBoolean(false);
+    private final AtomicBoolean libraryDirty = new AtomicBoolean(false);
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+
+    private Supplier<Session> sessionSource;
+    private Supplier<List<Song>> playlistSource;
+
+    public SessionStore(Path file, LibraryIndex library, Executor publisher) {
+        this.file = file;
+        this.library = library;
+        this.publisher = publisher;
+        this.writer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "session-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        // close() takes the last snapshot itself
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".musicplayer", "session.bin");
+    }
+
+    /** Supplies the current session; called on the publish executor. */
+    public void setSessionSource(Supplier<Session> source) {
+        this.sessionSource = source;
+    }
+
+    /** Supplies the playlist in order; called on the publish executor and copied there. */
+    public void setPlaylistSource(Supplier<List<Song>> source) {
+        this.playlistSource = source;
+    }
+
+    /** The saved session, or {@code null} if there is none or it can't be read. */
+    public Session load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String path = in.readBoolean() ? in.readUTF() : null;
+            return new Session(path, in.readInt(), in.readLong(), in.readDouble(), in.readBoolean(), in.readLong());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Cannot read session: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void sessionChanged() {
+        sessionDirty.set(true);
+        scheduleWrite();
+    }
+
+    /** The playlist order or the tracks' indexed data changed. */
+    public void libraryChanged() {
+        libraryDirty.set(true);
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(() -> publisher.execute(this::snapshot), WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed
+            }
+        }
+    }
+
+    /** On the publish executor: copies what changed and queues the write. */
+    private void snapshot() {
+        writeScheduled.set(false);
+        Session session = sessionDirty.getAndSet(false) && sessionSource != null ? sessionSource.get() : null;
+        List<Song> songs = libraryDirty.getAndSet(false) && playlistSource != null
+                ? new ArrayList<>(playlistSource.get()) : null;
+        if (session != null || songs != null) {
+            try {
+                writer.execute(() -> write(session, songs));
+            } catch (RejectedExecutionException e) {
+                // Closed
+            }
+        }
+    }
+
+    /**
+     * Writes whatever is still dirty and waits briefly for the writer to
+     * finish. Called on the publish executor when the app closes.
+     */
+    public void close() {
+        snapshot();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("Session write still running at exit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Session session, List<Song> songs) {
+        if (session != null) {
+            try {
+                save(session);
+            } catch (IOException e) {
+                System.err.println("Cannot write session: " + e.getMessage());
+            }
+        }
+        if (songs != null) {
+            try {
+                library.save(songs);
+            } catch (IOException e) {
+                System.err.println("Cannot write library index: " + e.getMessage());
+            }
+        }
+    }
+
+    private void save(Session session) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(session.trackPath() != null);
+            if (session.trackPath() != null) {
+                out.writeUTF(session.trackPath());
+            }
+            out.writeInt(session.trackIndex());
+            out.writeLong(session.positionMillis());
+            out.writeDouble(session.volume());
+            out.writeBoolean(session.muted());
+            out.writeLong(session.crossfadeMillis());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
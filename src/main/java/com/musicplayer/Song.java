@@ -2,65 +2,137 @@ package com.musicplayer;
 
 import javafx.util.Duration;
 
-import java.io.File;
-
 public class Song {
 
-    private final String filePath;
-    private String title;
-    private String artist;
-    private String album;
-    private Duration duration;
+    private final TrackStore store;
+    private final int id;
+    private String displayText;
 
     public Song(String filePath) {
-        this.filePath = filePath;
-        this.title = new File(filePath).getName().replaceFirst("\\.[^.]+$", "");
-        this.artist = "Unknown Artist";
-        this.album = "Unknown Album";
-        this.duration = Duration.ZERO;
+        this(TrackStore.getDefault(), filePath);
+    }
+
+    Song(TrackStore store, String filePath) {
+        this.store = store;
+        this.id = store.add(filePath);
+    }
+
+    public void resetMetadata() {
+        store.reset(id);
+        this.displayText = null;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    TrackStore getStore() {
+        return store;
     }
 
     public String getFilePath() {
-        return filePath;
+        return store.filePath(id);
     }
 
     public String getTitle() {
-        return title;
+        return store.title(id);
+    }
+
+    boolean hasExplicitTitle() {
+        return store.hasTitle(id);
     }
 
     public void setTitle(String title) {
-        this.title = title;
+        store.setTitle(id, title);
+        this.displayText = null;
     }
 
     public String getArtist() {
-        return artist;
+        return store.artist(id);
     }
 
     public void setArtist(String artist) {
-        this.artist = artist;
+        store.setArtist(id, artist);
+        this.displayText = null;
     }
 
     public String getAlbum() {
-        return album;
+        return store.album(id);
     }
 
     public void setAlbum(String album) {
-        this.album = album;
+        store.setAlbum(id, album);
     }
 
     public Duration getDuration() {
-        return duration;
+        return Duration.millis(store.durationMillis(id));
+    }
+
+    public long getDurationMillis() {
+        return store.durationMillis(id);
+    }
+
+    void setDurationMillis(long millis) {
+        store.setDurationMillis(id, millis);
     }
 
     public void setDuration(Duration duration) {
-        this.duration = duration;
+        store.setDurationMillis(id, duration == null || duration.isUnknown() || duration.isIndefinite()
+                ? 0 : (long) duration.toMillis());
+    }
+
+    /** Whether the file's tags have been read; until then the fields come from the file name. */
+    public boolean hasParsedTags() {
+        return store.tagsParsed(id);
+    }
+
+    void setTagsParsed() {
+        store.setTagsParsed(id);
+    }
+
+    /** Integrated loudness in LUFS; NaN until analyzed, negative infinity for silence. */
+    public double getLoudness() {
+        return store.loudness(id);
+    }
+
+    /** Sample peak from 0 to 1; 0 until analyzed. */
+    public double getPeak() {
+        return store.peak(id);
+    }
+
+    public boolean hasLoudness() {
+        return !Double.isNaN(store.loudness(id));
+    }
+
+    void setLoudness(double lufs, double peak) {
+        store.setLoudness(id, (float) lufs, (float) peak);
+    }
+
+    /** Linear gain to play the track at the reference loudness; 1 until analyzed. */
+    public double getNormalizationGain() {
+        return LoudnessAnalyzer.gainFor(store.loudness(id), store.peak(id));
+    }
+
+    /**
+     * The playlist label, built once and reused until the title or artist
+     * changes so cell updates don't concatenate strings.
+     */
+    public String getDisplayText() {
+        String text = displayText;
+        if (text == null) {
+            String artist = getArtist();
+            if (!artist.equals(TrackStore.UNKNOWN_ARTIST)) {
+                text = artist + " - " + getTitle();
+            } else {
+                text = getTitle();
+            }
+            displayText = text;
+        }
+        return text;
     }
 
     @Override
     public String toString() {
-        if (artist != null && !artist.equals("Unknown Artist")) {
-            return artist + " - " + title;
-        }
-        return title;
+        return getDisplayText();
     }
 }
@@ -0,0 +1,316 @@
+package com.musicplayer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns what is playing into smoothed levels for a row of log-spaced
+ * frequency bands, for {@link SpectrumView}. It is fed either 16-bit PCM by
+ * {@link PcmAudioEngine}'s playback thread or ready-made magnitudes from
+ * JavaFX's audio spectrum listener; {@link #update} runs on the FX thread
+ * once per pulse.
+ *
+ * <p>Nothing on either path allocates: PCM goes into a preallocated mono
+ * history, and an update windows the most recent {@link #FFT_SIZE} samples
+ * into fixed float arrays, runs an in-place radix-2 FFT over them and
+ * smooths the band levels in primitive buffers.
+ */
+public final class SpectrumAnalyzer {
+
+    public static final int FFT_SIZE = 2048;
+    public static final int DEFAULT_BANDS = 48;
+
+    static final float MIN_DB = -72f;
+    private static final float MIN_HZ = 40f;
+    private static final float MAX_HZ = 16000f;
+    // Mono frames kept so the analysed window can trail the write position by the output latency
+    private static final int HISTORY = 16384;
+    private static final int HISTORY_MASK = HISTORY - 1;
+    // Bars rise most of the way in one frame and fall at a steady rate
+    private static final float RISE = 0.6f;
+    private static final float FALL_PER_SECOND = 1.6f;
+    private static final float PEAK_FALL_PER_SECOND = 0.5f;
+    private static final long PEAK_HOLD_NANOS = 600_000_000L;
+    // With no new audio for this long the bars drop, e.g. after a pause
+    private static final long SILENCE_NANOS = 200_000_000L;
+
+    private final int bands;
+
+    // Written by the playback thread only
+    private final float[] history = new float[HISTORY];
+    private volatile long written = 0;
+    private volatile int delayFrames = 0;
+    private volatile float sampleRate = 44100f;
+
+    // FX thread only
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    private final float[] window = new float[FFT_SIZE];
+    private final float[] cos = new float[FFT_SIZE / 2];
+    private final float[] sin = new float[FFT_SIZE / 2];
+    private final int[] reverse = new int[FFT_SIZE];
+    private final int[] bandStart;
+    private final int[] bandEnd;
+    private float bandRate = 0;
+    private int bandBins = 0;
+
+    private final float[] magnitudes = new float[FFT_SIZE / 2];
+    private int magnitudeCount = 0;
+    private float magnitudeRate = 44100f;
+    private boolean magnitudesFresh = false;
+
+    private final float[] targets;
+    private final float[] levels;
+    private final float[] peaks;
+    private final long[] peakUntil;
+    private long analyzedUpTo = -1;
+    private long lastInputNanos = 0;
+    private long lastUpdateNanos = 0;
+    private boolean idle = true;
+
+    public SpectrumAnalyzer(int bands) {
+        this.bands = bands;
+        this.bandStart = new int[bands];
+        this.bandEnd = new int[bands];
+        this.targets = new float[bands];
+        this.levels = new float[bands];
+        this.peaks = new float[bands];
+        this.peakUntil = new long[bands];
+        int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            reverse[i] = Integer.reverse(i) >>> (32 - bits);
+            // Hann window
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FFT_SIZE - 1)));
+        }
+        for (int i = 0; i < FFT_SIZE / 2; i++) {
+            cos[i] = (float) Math.cos(2 * Math.PI * i / FFT_SIZE);
+            sin[i] = (float) Math.sin(2 * Math.PI * i / FFT_SIZE);
+        }
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    /** Playback thread: appends interleaved 16-bit little-endian frames, mixed down to mono. */
+    void write(byte[] data, int offset, int length, int channels, float rate) {
+        int frameSize = channels * 2;
+        float scale = 1f / (32768f * channels);
+        long w = written;
+        for (int i = offset, end = offset + length - frameSize + 1; i < end; i += frameSize) {
+            int sum = 0;
+            for (int c = i; c < i + frameSize; c += 2) {
+                sum += (short) ((data[c] & 0xFF) | (data[c + 1] << 8));
+            }
+            history[(int) (w++ & HISTORY_MASK)] = sum * scale;
+        }
+        sampleRate = rate;
+        written = w;
+    }
+
+    /** Like {@link #write(byte[], int, int, int, float)}, reading {@code data} at absolute positions. */
+    void write(ByteBuffer data, int offset, int length, int channels, float rate) {
+        int frameSize = channels * 2;
+        float scale = 1f / (32768f * channels);
+        long w = written;
+        for (int i = offset, end = offset + length - frameSize + 1; i < end; i += frameSize) {
+            int sum = 0;
+            for (int c = i; c < i + frameSize; c += 2) {
+                sum += (short) ((data.get(c) & 0xFF) | (data.get(c + 1) << 8));
+            }
+            history[(int) (w++ & HISTORY_MASK)] = sum * scale;
+        }
+        sampleRate = rate;
+        written = w;
+    }
+
+    /**
+     * Playback thread: how far the written audio is ahead of what is heard,
+     * so the bars follow the speakers rather than the decoder.
+     */
+    void setDelayFrames(long frames) {
+        delayFrames = (int) Math.max(0, Math.min(HISTORY - FFT_SIZE, frames));
+    }
+
+    /**
+     * FX thread: magnitudes in dB for {@code count} equal-width bands from 0
+     * to half of {@code rate}, as JavaFX's spectrum listener reports them.
+     */
+    void setMagnitudes(float[] db, int count, float rate) {
+        int n = Math.min(count, magnitudes.length);
+        System.arraycopy(db, 0, magnitudes, 0, n);
+        magnitudeCount = n;
+        magnitudeRate = rate;
+        magnitudesFresh = true;
+    }
+
+    /** FX thread: drops everything so the bars fall, e.g. on stop. */
+    void clear() {
+        analyzedUpTo = written - delayFrames;
+        magnitudesFresh = false;
+        lastInputNanos = 0;
+    }
+
+    /**
+     * FX thread: analyses the newest input and moves the levels and peak
+     * marks towards it. Returns whether anything visible changed.
+     */
+    public boolean update(long now) {
+        float dt = lastUpdateNanos == 0 ? 0 : Math.min(0.1f, (now - lastUpdateNanos) / 1e9f);
+        lastUpdateNanos = now;
+
+        if (magnitudesFresh) {
+            magnitudesFresh = false;
+            fromMagnitudes();
+            lastInputNanos = now;
+        } else {
+            long end = written - delayFrames;
+            if (end != analyzedUpTo && end >= FFT_SIZE) {
+                analyzedUpTo = end;
+                analyze(end);
+                lastInputNanos = now;
+            } else if (now - lastInputNanos > SILENCE_NANOS) {
+                for (int b = 0; b < bands; b++) {
+                    targets[b] = 0;
+                }
+            }
+        }
+
+        boolean changed = false;
+        boolean quiet = true;
+        float fall = FALL_PER_SECOND * dt;
+        float peakFall = PEAK_FALL_PER_SECOND * dt;
+        for (int b = 0; b < bands; b++) {
+            float level = levels[b];
+            float target = targets[b];
+            float next = target > level ? level + (target - level) * RISE : Math.max(target, level - fall);
+            if (next < 0.002f) next = 0;
+            float peak = peaks[b];
+            if (next >= peak) {
+                peak = next;
+                peakUntil[b] = now + PEAK_HOLD_NANOS;
+            } else if (now > peakUntil[b]) {
+                peak = Math.max(next, peak - peakFall);
+            }
+            if (next != level || peak != peaks[b]) {
+                changed = true;
+            }
+            if (peak > 0) {
+                quiet = false;
+            }
+            levels[b] = next;
+            peaks[b] = peak;
+        }
+        idle = quiet;
+        return changed;
+    }
+
+    /** Whether every bar and peak mark is down, as of the last update. */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /** Band levels from 0 to 1; owned by the analyzer, read on the FX thread. */
+    public float[] getLevels() {
+        return levels;
+    }
+
+    /** Recent maxima of the levels, held briefly before they fall. */
+    public float[] getPeaks() {
+        return peaks;
+    }
+
+    private void analyze(long end) {
+        long start = end - FFT_SIZE;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            re[i] = history[(int) ((start + i) & HISTORY_MASK)] * window[i];
+            im[i] = 0;
+        }
+        transform(re, im);
+
+        float rate = sampleRate;
+        if (rate != bandRate || bandBins != FFT_SIZE / 2) {
+            layoutBands(rate, FFT_SIZE / 2, rate / FFT_SIZE);
+        }
+        // A full-scale sine peaks at FFT_SIZE / 4 through the Hann window
+        float norm = 4f / FFT_SIZE;
+        float normSquared = norm * norm;
+        for (int b = 0; b < bands; b++) {
+            float power = 0;
+            for (int k = bandStart[b]; k <= bandEnd[b]; k++) {
+                power = Math.max(power, re[k] * re[k] + im[k] * im[k]);
+            }
+            targets[b] = level(10f * (float) Math.log10(power * normSquared + 1e-12f));
+        }
+    }
+
+    private void fromMagnitudes() {
+        float rate = magnitudeRate;
+        if (rate != bandRate || bandBins != magnitudeCount) {
+            layoutBands(rate, magnitudeCount, rate / 2 / Math.max(1, magnitudeCount));
+        }
+        for (int b = 0; b < bands; b++) {
+            float db = MIN_DB;
+            for (int k = bandStart[b]; k <= bandEnd[b] && k < magnitudeCount; k++) {
+                db = Math.max(db, magnitudes[k]);
+            }
+            targets[b] = level(db);
+        }
+    }
+
+    /** Assigns each log-spaced band the bins it covers; narrow low bands share a bin. */
+    private void layoutBands(float rate, int bins, float binHz) {
+        float top = Math.min(MAX_HZ, rate / 2);
+        double ratio = Math.log(top / MIN_HZ);
+        for (int b = 0; b < bands; b++) {
+            double lo = MIN_HZ * Math.exp(ratio * b / bands);
+            double hi = MIN_HZ * Math.exp(ratio * (b + 1) / bands);
+            int first = Math.max(1, Math.min(bins - 1, (int) (lo / binHz)));
+            int last = Math.max(first, Math.min(bins - 1, (int) Math.ceil(hi / binHz) - 1));
+            bandStart[b] = first;
+            bandEnd[b] = last;
+        }
+        bandRate = rate;
+        bandBins = bins;
+    }
+
+    private static float level(float db) {
+        return Math.max(0f, Math.min(1f, (db - MIN_DB) / -MIN_DB));
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of {@link #FFT_SIZE} complex values,
+     * using the precomputed bit-reversal permutation and twiddle factors.
+     */
+    void transform(float[] re, float[] im) {
+        int n = FFT_SIZE;
+        for (int i = 0; i < n; i++) {
+            int j = reverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += step) {
+                    float wr = cos[t];
+                    float wi = -sin[t];
+                    int a = start + k;
+                    int b = a + half;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.musicplayer;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws a {@link SpectrumAnalyzer}'s bands as bars with peak marks, sized
+ * by its parent. While audio plays it updates and redraws at most once per
+ * pulse, and only when a bar moved; once playback stops and the bars have
+ * fallen, the timer stops too.
+ */
+class SpectrumView extends Canvas {
+
+    private static final Color BAR = Color.web("#00ccff", 0.55);
+    private static final Color PEAK = Color.web("#00ccff");
+    private static final double GAP = 2;
+
+    private final SpectrumAnalyzer analyzer;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (analyzer.update(now)) {
+                draw();
+            } else if (!active && analyzer.isIdle()) {
+                stop();
+                running = false;
+            }
+        }
+    };
+    private boolean active = false;
+    private boolean running = false;
+
+    SpectrumView(SpectrumAnalyzer analyzer) {
+        this.analyzer = analyzer;
+        widthProperty().addListener(obs -> draw());
+        heightProperty().addListener(obs -> draw());
+        setMouseTransparent(true);
+    }
+
+    /** Runs the view while audio plays; when it stops, the bars fall and the view goes idle. */
+    void setActive(boolean active) {
+        this.active = active;
+        if (!active) {
+            analyzer.clear();
+        }
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    @Override
+    public boolean isResizable() {
+        return true;
+    }
+
+    @Override
+    public double prefWidth(double height) {
+        return 0;
+    }
+
+    @Override
+    public double prefHeight(double width) {
+        return 0;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        setWidth(width);
+        setHeight(height);
+    }
+
+    private void draw() {
+        double width = getWidth();
+        double height = getHeight();
+        GraphicsContext g = getGraphicsContext2D();
+        g.clearRect(0, 0, width, height);
+        if (width <= 0 || height <= 0) return;
+
+        float[] levels = analyzer.getLevels();
+        float[] peaks = analyzer.getPeaks();
+        int bands = levels.length;
+        double slot = width / bands;
+        double bar = Math.max(1, slot - GAP);
+        g.setFill(BAR);
+        for (int b = 0; b < bands; b++) {
+            double h = levels[b] * height;
+            if (h >= 1) {
+                g.fillRect(b * slot, height - h, bar, h);
+            }
+        }
+        g.setFill(PEAK);
+        for (int b = 0; b < bands; b++) {
+            if (peaks[b] > 0) {
+                g.fillRect(b * slot, Math.max(0, height - peaks[b] * height - 1), bar, 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.musicplayer;
+
+import java.time.Instant;
+
+/**
+ * Time since the process was launched, for startup measurements. The launch
+ * instant is the OS's process start time (to within its clock tick), so JVM
+ * boot and class loading before {@code main} are included.
+ */
+final class StartupClock {
+
+    private static final long LAUNCH_NANOS = launchNanos();
+
+    private StartupClock() {
+    }
+
+    static long sinceLaunchNanos() {
+        return System.nanoTime() - LAUNCH_NANOS;
+    }
+
+    private static long launchNanos() {
+        long now = System.nanoTime();
+        long elapsed = ProcessHandle.current().info().startInstant()
+                .map(start -> java.time.Duration.between(start, Instant.now()).toNanos())
+                .orElse(0L);
+        return now - Math.max(0, elapsed);
+    }
+}
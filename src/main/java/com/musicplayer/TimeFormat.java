@@ -0,0 +1,48 @@
+package com.musicplayer;
+
+import java.util.Arrays;
+
+/**
+ * "m:ss" strings for whole seconds, formatted once and then served from a
+ * cache so the position display doesn't build a string on every update.
+ */
+final class TimeFormat {
+
+    // Longest position cached; longer recordings fall back to formatting
+    private static final int MAX_CACHED_SECONDS = 24 * 60 * 60;
+
+    private static String[] cache = new String[60 * 60];
+
+    private TimeFormat() {
+    }
+
+    static String format(int totalSeconds) {
+        if (totalSeconds < 0) totalSeconds = 0;
+        if (totalSeconds >= MAX_CACHED_SECONDS) {
+            return build(totalSeconds);
+        }
+        String[] table = cache;
+        if (totalSeconds >= table.length) {
+            table = grow(totalSeconds);
+        }
+        String text = table[totalSeconds];
+        if (text == null) {
+            text = build(totalSeconds);
+            table[totalSeconds] = text;
+        }
+        return text;
+    }
+
+    private static synchronized String[] grow(int totalSeconds) {
+        if (totalSeconds >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.min(MAX_CACHED_SECONDS, Math.max(totalSeconds + 1, cache.length * 2)));
+        }
+        return cache;
+    }
+
+    private static String build(int totalSeconds) {
+        int minutes = totalSeconds / 60;
+        int seconds = totalSeconds % 60;
+        return seconds < 10 ? minutes + ":0" + seconds : minutes + ":" + seconds;
+    }
+}
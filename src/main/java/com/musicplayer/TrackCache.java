@@ -0,0 +1,202 @@
+package com.musicplayer;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Least-recently-used cache of local copies of recently played tracks,
+ * bounded by a byte budget. Copies live in a temp directory so replaying or
+ * seeking a track from slow (e.g. network-mounted) storage reads from local
+ * disk and the OS page cache instead.
+ *
+ * <p>By default only files on a different file store than the cache
+ * directory are copied; a copy of a local file would gain nothing.
+ */
+public class TrackCache {
+
+    public static final long DEFAULT_BUDGET_BYTES = 512L * 1024 * 1024;
+
+    private final Path directory;
+    private final long budgetBytes;
+    private final FileStore cacheStore;
+    private final ExecutorService copier;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pending = new HashSet<>();
+    private long bytesUsed = 0;
+    private boolean cacheLocalFiles = false;
+    private int nextFileId = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TrackCache(Path directory, long budgetBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.budgetBytes = budgetBytes;
+        this.cacheStore = Files.getFileStore(directory);
+        this.copier = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "track-cache");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static TrackCache createTemporary(long budgetBytes) throws IOException {
+        return new TrackCache(Files.createTempDirectory("musicplayer-cache"), budgetBytes);
+    }
+
+    /** Also cache files on the same file store as the cache directory. */
+    public synchronized void setCacheLocalFiles(boolean cacheLocalFiles) {
+        this.cacheLocalFiles = cacheLocalFiles;
+    }
+
+    /**
+     * Returns the local copy of {@code filePath}, or {@code null} when it is
+     * not cached or the source changed since it was copied.
+     */
+    public synchronized Path lookup(String filePath) {
+        Entry entry = entries.get(filePath);
+        if (entry != null && entry.matches(Path.of(filePath))) {
+            hits++;
+            return entry.copy;
+        }
+        if (entry != null) {
+            remove(filePath);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Copies {@code filePath} into the cache in the background unless it is
+     * already cached, being copied, or larger than the whole budget.
+     */
+    public synchronized void add(String filePath) {
+        if (entries.containsKey(filePath) || !pending.add(filePath)) return;
+        Path target = directory.resolve((nextFileId++) + ".track");
+        copier.execute(() -> copy(filePath, target));
+    }
+
+    private void copy(String filePath, Path target) {
+        Path source = Path.of(filePath);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+            if (attrs.size() > budgetBytes || (!isCacheLocalFiles() && Files.getFileStore(source).equals(cacheStore))) {
+                finish(filePath, null);
+                return;
+            }
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            finish(filePath, new Entry(target, attrs.size(), attrs.lastModifiedTime().toMillis()));
+        } catch (IOException e) {
+            System.err.println("Cannot cache " + filePath + ": " + e.getMessage());
+            deleteQuietly(target);
+            finish(filePath, null);
+        }
+    }
+
+    private synchronized void finish(String filePath, Entry entry) {
+        pending.remove(filePath);
+        if (entry == null) return;
+        entries.put(filePath, entry);
+        bytesUsed += entry.size;
+        evictToBudget();
+    }
+
+    private synchronized boolean isCacheLocalFiles() {
+        return cacheLocalFiles;
+    }
+
+    private void evictToBudget() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // The newest entry is last and always fits (see add), so this stops before it
+        while (bytesUsed > budgetBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            bytesUsed -= entry.size;
+            evictions++;
+            deleteQuietly(entry.copy);
+        }
+    }
+
+    private void remove(String filePath) {
+        Entry entry = entries.remove(filePath);
+        if (entry != null) {
+            bytesUsed -= entry.size;
+            deleteQuietly(entry.copy);
+        }
+    }
+
+    /** Stops copying and deletes every cached file. */
+    public synchronized void shutdown() {
+        copier.shutdownNow();
+        for (Entry entry : entries.values()) {
+            deleteQuietly(entry.copy);
+        }
+        entries.clear();
+        bytesUsed = 0;
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Left behind by a copy still in flight; it's in the temp dir anyway
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d tracks, %d MB of %d MB, %d hits, %d misses, %d evictions",
+                entries.size(), bytesUsed >> 20, budgetBytes >> 20, hits, misses, evictions);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Cannot delete cached file " + path + ": " + e.getMessage());
+        }
+    }
+
+    private record Entry(Path copy, long size, long modified) {
+        boolean matches(Path source) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+                return attrs.size() == size && attrs.lastModifiedTime().toMillis() == modified
+                        && Files.exists(copy);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.musicplayer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented storage for track data. Each {@link Song} is a small view
+ * holding an id into these arrays. Artist, album and parent directory are
+ * dictionary-encoded so repeated values are stored once, durations are
+ * primitive millis, loudness and peak are floats, titles are only stored
+ * once they differ from the file name, and whether the tags were read is
+ * one bit per track.
+ *
+ * <p>Ids are append-only; rows of removed songs are not reclaimed.
+ */
+public final class TrackStore {
+
+    private static final TrackStore DEFAULT = new TrackStore();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    static final String UNKNOWN_ARTIST = "Unknown Artist";
+    static final String UNKNOWN_ALBUM = "Unknown Album";
+
+    private final Dictionary directories = new Dictionary("");
+    private final Dictionary artists = new Dictionary(UNKNOWN_ARTIST);
+    private final Dictionary albums = new Dictionary(UNKNOWN_ALBUM);
+
+    private int[] directoryIds = new int[INITIAL_CAPACITY];
+    private String[] fileNames = new String[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private int[] artistIds = new int[INITIAL_CAPACITY];
+    private int[] albumIds = new int[INITIAL_CAPACITY];
+    private long[] durationMillis = new long[INITIAL_CAPACITY];
+    private float[] loudness = new float[INITIAL_CAPACITY];
+    private float[] peaks = new float[INITIAL_CAPACITY];
+    private final BitSet tagsParsed = new BitSet();
+    private int size = 0;
+
+    public static TrackStore getDefault() {
+        return DEFAULT;
+    }
+
+    synchronized int add(String filePath) {
+        if (size == fileNames.length) {
+            grow();
+        }
+        int slash = filePath.lastIndexOf(File.separatorChar);
+        int id = size++;
+        // The directory keeps its trailing separator so paths rebuild by plain concatenation
+        directoryIds[id] = directories.idOf(filePath.substring(0, slash + 1));
+        fileNames[id] = filePath.substring(slash + 1);
+        loudness[id] = Float.NaN;
+        return id;
+    }
+
+    synchronized String filePath(int id) {
+        return directories.valueOf(directoryIds[id]).concat(fileNames[id]);
+    }
+
+    synchronized int directoryId(int id) {
+        return directoryIds[id];
+    }
+
+    synchronized String directory(int directoryId) {
+        return directories.valueOf(directoryId);
+    }
+
+    synchronized int directoryCount() {
+        return directories.size();
+    }
+
+    synchronized String title(int id) {
+        String title = titles[id];
+        return title != null ? title : titleFromFileName(fileNames[id]);
+    }
+
+    synchronized boolean hasTitle(int id) {
+        return titles[id] != null;
+    }
+
+    synchronized void setTitle(int id, String title) {
+        titles[id] = title;
+    }
+
+    synchronized String artist(int id) {
+        return artists.valueOf(artistIds[id]);
+    }
+
+    synchronized int artistId(int id) {
+        return artistIds[id];
+    }
+
+    synchronized void setArtist(int id, String artist) {
+        artistIds[id] = artists.idOf(artist == null ? UNKNOWN_ARTIST : artist);
+    }
+
+    synchronized String album(int id) {
+        return albums.valueOf(albumIds[id]);
+    }
+
+    synchronized int albumId(int id) {
+        return albumIds[id];
+    }
+
+    synchronized void setAlbum(int id, String album) {
+        albumIds[id] = albums.idOf(album == null ? UNKNOWN_ALBUM : album);
+    }
+
+    synchronized long durationMillis(int id) {
+        return durationMillis[id];
+    }
+
+    synchronized void setDurationMillis(int id, long millis) {
+        durationMillis[id] = millis;
+    }
+
+    /** Integrated loudness in LUFS, NaN until the track has been analyzed. */
+    synchronized float loudness(int id) {
+        return loudness[id];
+    }
+
+    synchronized float peak(int id) {
+        return peaks[id];
+    }
+
+    synchronized void setLoudness(int id, float lufs, float peak) {
+        loudness[id] = lufs;
+        peaks[id] = peak;
+    }
+
+    /** Whether the metadata pipeline has read the file's tags, rather than the fields coming from the file name. */
+    synchronized boolean tagsParsed(int id) {
+        return tagsParsed.get(id);
+    }
+
+    synchronized void setTagsParsed(int id) {
+        tagsParsed.set(id);
+    }
+
+    synchronized void reset(int id) {
+        titles[id] = null;
+        tagsParsed.clear(id);
+        artistIds[id] = 0;
+        albumIds[id] = 0;
+        durationMillis[id] = 0;
+        loudness[id] = Float.NaN;
+        peaks[id] = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int artistCount() {
+        return artists.size();
+    }
+
+    public synchronized int albumCount() {
+        return albums.size();
+    }
+
+    synchronized String artistName(int artistId) {
+        return artists.valueOf(artistId);
+    }
+
+    synchronized String albumName(int albumId) {
+        return albums.valueOf(albumId);
+    }
+
+    static String titleFromFileName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && dot < name.length() - 1 ? name.substring(0, dot) : name;
+    }
+
+    private void grow() {
+        int capacity = fileNames.length * 2;
+        directoryIds = Arrays.copyOf(directoryIds, capacity);
+        fileNames = Arrays.copyOf(fileNames, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        artistIds = Arrays.copyOf(artistIds, capacity);
+        albumIds = Arrays.copyOf(albumIds, capacity);
+        durationMillis = Arrays.copyOf(durationMillis, capacity);
+        loudness = Arrays.copyOf(loudness, capacity);
+        peaks = Arrays.copyOf(peaks, capacity);
+    }
+
+    /**
+     * Interns strings to dense ids. Id 0 is the default value so a freshly
+     * zeroed column reads as "unknown".
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] values = new String[64];
+        private int size = 0;
+
+        Dictionary(String defaultValue) {
+            idOf(defaultValue);
+        }
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            ids.put(value, size);
+            return size++;
+        }
+
+        String valueOf(int id) {
+            return values[id];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
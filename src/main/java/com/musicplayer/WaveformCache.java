@@ -0,0 +1,142 @@
+package com.musicplayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Computes {@link WaveformPeaks} on a background pool and keeps them in a
+ * directory with one small file per track. A file is named after the
+ * track's path and records the path, modification time and size it was
+ * computed from, so a changed track is recomputed and a hit is one read.
+ */
+public class WaveformCache {
+
+    private static final int MAGIC = 0x4D505750; // "MPWP"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final ExecutorService workers;
+    private final Executor publisher;
+
+    public WaveformCache(Path directory, int parallelism, Executor publisher) {
+        this.directory = directory;
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "waveform");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.publisher = publisher;
+    }
+
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".musicplayer", "waveforms");
+    }
+
+    /** Whether peaks can be computed for the file; only WAV and AIFF are decoded. */
+    static boolean isSupported(String path) {
+        return path.regionMatches(true, path.length() - 4, ".wav", 0, 4)
+                || path.regionMatches(true, path.length() - 5, ".aiff", 0, 5)
+                || path.regionMatches(true, path.length() - 4, ".aif", 0, 4);
+    }
+
+    /**
+     * Loads or computes the peaks for {@code path} and hands them to
+     * {@code onReady} on the publish executor; nothing is delivered if the
+     * file can't be decoded.
+     */
+    public void request(String path, Consumer<WaveformPeaks> onReady) {
+        if (!isSupported(path)) return;
+        workers.execute(() -> {
+            WaveformPeaks peaks = get(path);
+            if (peaks != null) {
+                publisher.execute(() -> onReady.accept(peaks));
+            }
+        });
+    }
+
+    /** Computes and stores peaks for the supported songs that aren't cached yet. */
+    public void precompute(List<Song> songs) {
+        for (Song song : songs) {
+            String path = song.getFilePath();
+            if (isSupported(path)) {
+                workers.execute(() -> get(path));
+            }
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private WaveformPeaks get(String path) {
+        Path source = Path.of(path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        long modified = attrs.lastModifiedTime().toMillis();
+        Path file = cacheFile(path);
+
+        WaveformPeaks peaks = load(file, path, modified, attrs.size());
+        if (peaks != null) return peaks;
+        try {
+            peaks = WaveformPeaks.compute(source);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        store(file, path, modified, attrs.size(), peaks);
+        return peaks;
+    }
+
+    private static WaveformPeaks load(Path file, String path, long modified, long size) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!in.readUTF().equals(path) || in.readLong() != modified || in.readLong() != size) return null;
+            return WaveformPeaks.read(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable waveform cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Path file, String path, long modified, long size, WaveformPeaks peaks) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "peaks", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(path);
+                out.writeLong(modified);
+                out.writeLong(size);
+                peaks.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot cache waveform for " + path + ": " + e.getMessage());
+        }
+    }
+
+    private Path cacheFile(String path) {
+        // Colliding paths share a file and overwrite each other; the stored path tells them apart
+        return directory.resolve(String.format("%08x%08x.peaks", path.hashCode(), path.length()));
+    }
+}
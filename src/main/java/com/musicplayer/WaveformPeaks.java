@@ -0,0 +1,101 @@
+package com.musicplayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Min/max sample peaks of a track at a fixed number of buckets, stored as
+ * signed bytes (the top 8 bits of a 16-bit sample) so an overview is a
+ * couple of kilobytes.
+ */
+public final class WaveformPeaks {
+
+    public static final int RESOLUTION = 1000;
+
+    private static final int READ_BYTES = 64 * 1024;
+
+    private final byte[] min;
+    private final byte[] max;
+
+    private WaveformPeaks(byte[] min, byte[] max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public int size() {
+        return min.length;
+    }
+
+    /** Lowest sample in bucket {@code i}, from -1 to 1. */
+    public double min(int i) {
+        return min[i] / 128.0;
+    }
+
+    /** Highest sample in bucket {@code i}, from -1 to 1. */
+    public double max(int i) {
+        return max[i] / 128.0;
+    }
+
+    /**
+     * Streams the file once with a fixed-size buffer and reduces every
+     * channel's samples into {@link #RESOLUTION} buckets. Only WAV and AIFF
+     * can be decoded here; other files fail with an IOException.
+     */
+    static WaveformPeaks compute(Path path) throws IOException {
+        try (MappedPcmReader reader = MappedPcmReader.open(path)) {
+            long frames = reader.getFrameLength();
+            int channels = reader.getFormat().getChannels();
+            int buckets = (int) Math.max(1, Math.min(RESOLUTION, frames));
+            byte[] min = new byte[buckets];
+            byte[] max = new byte[buckets];
+            int bucketMin = 0;
+            int bucketMax = 0;
+            int bucket = 0;
+            long frame = 0;
+            long bucketEnd = frames * (bucket + 1) / buckets;
+
+            byte[] buffer = new byte[READ_BYTES];
+            int n;
+            while ((n = reader.read16(buffer, 0, buffer.length)) > 0) {
+                for (int i = 0; i < n; i += 2 * channels) {
+                    for (int c = 0; c < channels; c++) {
+                        // High byte only: that's all the overview keeps
+                        int sample = buffer[i + 2 * c + 1];
+                        if (sample < bucketMin) bucketMin = sample;
+                        if (sample > bucketMax) bucketMax = sample;
+                    }
+                    if (++frame >= bucketEnd && bucket < buckets) {
+                        min[bucket] = (byte) bucketMin;
+                        max[bucket] = (byte) bucketMax;
+                        bucketMin = 0;
+                        bucketMax = 0;
+                        bucket++;
+                        bucketEnd = frames * (bucket + 1) / buckets;
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Interrupted");
+                }
+            }
+            return new WaveformPeaks(min, max);
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(min.length);
+        out.write(min);
+        out.write(max);
+    }
+
+    static WaveformPeaks read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size <= 0 || size > RESOLUTION) throw new IOException("Bad peak count " + size);
+        byte[] min = new byte[size];
+        byte[] max = new byte[size];
+        in.readFully(min);
+        in.readFully(max);
+        return new WaveformPeaks(min, max);
+    }
+}
@@ -0,0 +1,76 @@
+package com.musicplayer;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws {@link WaveformPeaks} as a mirrored min/max outline, sized by its
+ * parent. Meant to sit behind the seek slider; redrawn only when the peaks
+ * or the size change.
+ */
+class WaveformView extends Canvas {
+
+    private static final Color FILL = Color.web("#3d6e80");
+
+    private WaveformPeaks peaks;
+
+    WaveformView() {
+        widthProperty().addListener(obs -> draw());
+        heightProperty().addListener(obs -> draw());
+        setMouseTransparent(true);
+    }
+
+    void setPeaks(WaveformPeaks peaks) {
+        this.peaks = peaks;
+        draw();
+    }
+
+    @Override
+    public boolean isResizable() {
+        return true;
+    }
+
+    @Override
+    public double prefWidth(double height) {
+        return 0;
+    }
+
+    @Override
+    public double prefHeight(double width) {
+        return 0;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        setWidth(width);
+        setHeight(height);
+    }
+
+    private void draw() {
+        double width = getWidth();
+        double height = getHeight();
+        GraphicsContext g = getGraphicsContext2D();
+        g.clearRect(0, 0, width, height);
+        if (peaks == null || width <= 0 || height <= 0) return;
+
+        double mid = height / 2;
+        int columns = (int) Math.ceil(width);
+        int size = peaks.size();
+        g.setFill(FILL);
+        for (int x = 0; x < columns; x++) {
+            // Each pixel column covers one or more buckets; take their extremes
+            int from = (int) ((long) x * size / columns);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * size / columns));
+            double lo = 0;
+            double hi = 0;
+            for (int i = from; i < to && i < size; i++) {
+                lo = Math.min(lo, peaks.min(i));
+                hi = Math.max(hi, peaks.max(i));
+            }
+            double top = mid - hi * mid;
+            double bottom = mid - lo * mid;
+            g.fillRect(x, top, 1, Math.max(1, bottom - top));
+        }
+    }
+}